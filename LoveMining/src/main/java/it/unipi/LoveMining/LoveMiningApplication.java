@@ -2,8 +2,10 @@ package it.unipi.LoveMining;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class LoveMiningApplication {
 
 	public static void main(String[] args) {
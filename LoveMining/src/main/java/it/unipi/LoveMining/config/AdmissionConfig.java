@@ -0,0 +1,148 @@
+package it.unipi.LoveMining.config;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.repository.support.MongoRepositoryFactoryBean;
+import org.springframework.data.neo4j.repository.support.Neo4jRepositoryFactoryBean;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import it.unipi.LoveMining.controller.AdmissionFilter;
+import it.unipi.LoveMining.controller.RateLimitInterceptor;
+import it.unipi.LoveMining.service.utility.AdaptiveConcurrencyLimit;
+import it.unipi.LoveMining.service.utility.TokenBuckets;
+
+import java.util.Map;
+
+@Configuration
+@ConditionalOnProperty(name = "lovemining.admission.enabled", havingValue = "true")
+// Admission control of the user endpoints (/api/users): a global concurrency limit that adapts to the latency
+// of the MongoDB and Neo4j repositories (503 before the authentication), and per-user token buckets for
+// like, dislike and review (429 before the handler)
+public class AdmissionConfig implements WebMvcConfigurer {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${lovemining.admission.like.per-minute:60}")
+    private double likePerMinute;
+
+    @Value("${lovemining.admission.like.burst:30}")
+    private int likeBurst;
+
+    @Value("${lovemining.admission.dislike.per-minute:60}")
+    private double dislikePerMinute;
+
+    @Value("${lovemining.admission.dislike.burst:30}")
+    private int dislikeBurst;
+
+    @Value("${lovemining.admission.review.per-minute:6}")
+    private double reviewPerMinute;
+
+    @Value("${lovemining.admission.review.burst:3}")
+    private int reviewBurst;
+
+    // Striped maps of the buckets: stripes * keys-per-stripe users remembered
+    @Value("${lovemining.admission.stripes:64}")
+    private int stripes;
+
+    @Value("${lovemining.admission.keys-per-stripe:1024}")
+    private int keysPerStripe;
+
+    public AdmissionConfig(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Bean
+    public AdaptiveConcurrencyLimit admissionLimit(@Value("${lovemining.admission.limit.initial:200}") int initialLimit,
+                                                   @Value("${lovemining.admission.limit.min:20}") int minLimit,
+                                                   @Value("${lovemining.admission.limit.max:1000}") int maxLimit,
+                                                   @Value("${lovemining.admission.limit.tolerance:2.0}") double tolerance) {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(initialLimit, minLimit, maxLimit, tolerance);
+        Gauge.builder("lovemining.admission.limit", limit, AdaptiveConcurrencyLimit::getLimit).register(meterRegistry);
+        Gauge.builder("lovemining.admission.in-flight", limit, AdaptiveConcurrencyLimit::inFlight).register(meterRegistry);
+        FunctionCounter.builder("lovemining.admission.rejected", limit, AdaptiveConcurrencyLimit::rejected)
+                .tag("reason", "overload").register(meterRegistry);
+        return limit;
+    }
+
+    // Before the Spring Security filter chain, on the user endpoints only
+    @Bean
+    public FilterRegistrationBean<AdmissionFilter> admissionFilter(AdaptiveConcurrencyLimit admissionLimit,
+                                                                   @Value("${lovemining.admission.retry-after-seconds:1}") long retryAfterSeconds) {
+        FilterRegistrationBean<AdmissionFilter> registration =
+                new FilterRegistrationBean<>(new AdmissionFilter(admissionLimit, retryAfterSeconds));
+        registration.addUrlPatterns("/api/users/*");
+        registration.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER - 1);
+        return registration;
+    }
+
+    @Bean
+    public RateLimitInterceptor rateLimitInterceptor() {
+        return new RateLimitInterceptor(Map.of(
+                "like", buckets("like", likePerMinute, likeBurst),
+                "dislike", buckets("dislike", dislikePerMinute, dislikeBurst),
+                "review", buckets("review", reviewPerMinute, reviewBurst)));
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(rateLimitInterceptor()).addPathPatterns("/api/users/**");
+    }
+
+    // Latency of the blocking repository calls of the admitted requests, the samples of the adaptive limit
+    // (inside the bulkhead advice: the wait for a permit is not latency of the store). The calls of the
+    // background work (analytics jobs, reconciler, purge, model rebuilds) are not samples: a slow
+    // aggregation must not shed the user traffic. The reactive repositories are skipped, their call only
+    // assembles the publisher.
+    @Bean
+    public static BeanPostProcessor repositoryLatency(ObjectProvider<AdaptiveConcurrencyLimit> admissionLimit) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof RepositoryFactoryBeanSupport<?, ?, ?> factoryBean) {
+                    String store = bean instanceof MongoRepositoryFactoryBean<?, ?, ?> ? "mongodb"
+                            : bean instanceof Neo4jRepositoryFactoryBean<?, ?, ?> ? "neo4j" : null;
+                    if (store != null) {
+                        factoryBean.addRepositoryFactoryCustomizer(factory -> factory.addRepositoryProxyPostProcessor(
+                                (proxyFactory, repositoryInformation) -> proxyFactory.addAdvice(latencyAdvice(store, admissionLimit.getObject()))));
+                    }
+                }
+                return bean;
+            }
+        };
+    }
+
+    private static MethodInterceptor latencyAdvice(String store, AdaptiveConcurrencyLimit admissionLimit) {
+        return invocation -> {
+            if (!admissionLimit.isAdmitted() || Publisher.class.isAssignableFrom(invocation.getMethod().getReturnType())) {
+                return invocation.proceed();
+            }
+            long start = System.nanoTime();
+            try {
+                return invocation.proceed();
+            } finally {
+                admissionLimit.onSample(store, System.nanoTime() - start);
+            }
+        };
+    }
+
+    // lovemining.admission.rejected tagged with the kind of request
+    private TokenBuckets buckets(String kind, double perMinute, int burst) {
+        TokenBuckets buckets = new TokenBuckets(kind, perMinute, burst, stripes, keysPerStripe);
+        FunctionCounter.builder("lovemining.admission.rejected", buckets, TokenBuckets::rejected)
+                .tag("reason", kind).register(meterRegistry);
+        return buckets;
+    }
+}
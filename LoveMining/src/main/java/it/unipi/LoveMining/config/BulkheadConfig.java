@@ -0,0 +1,124 @@
+package it.unipi.LoveMining.config;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.aop.Advisor;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.StaticMethodMatcherPointcut;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Role;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.data.mongodb.repository.support.MongoRepositoryFactoryBean;
+import org.springframework.data.neo4j.repository.support.Neo4jRepositoryFactoryBean;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import it.unipi.LoveMining.service.utility.Bulkhead;
+
+import java.lang.reflect.Method;
+
+@Configuration
+@ConditionalOnProperty(name = "lovemining.bulkhead.enabled", havingValue = "true")
+// Bulkheads in front of the MongoDB and Neo4j repositories, sized on the driver pools: with virtual threads
+// the number of concurrent requests is not bounded by Tomcat, so the excess waits here (with a timeout)
+// instead of in the pools. The @Transactional services take the Neo4j permit before their transaction.
+public class BulkheadConfig {
+
+    @Bean
+    public Bulkhead mongoBulkhead(@Value("${lovemining.bulkhead.mongo.permits:100}") int permits,
+                                  @Value("${lovemining.bulkhead.timeout-ms:2000}") long timeoutMs,
+                                  MeterRegistry meterRegistry) {
+        return bindMetrics(new Bulkhead("mongodb", permits, timeoutMs), meterRegistry);
+    }
+
+    @Bean
+    public Bulkhead neo4jBulkhead(@Value("${lovemining.bulkhead.neo4j.permits:100}") int permits,
+                                  @Value("${lovemining.bulkhead.timeout-ms:2000}") long timeoutMs,
+                                  MeterRegistry meterRegistry) {
+        return bindMetrics(new Bulkhead("neo4j", permits, timeoutMs), meterRegistry);
+    }
+
+    // Adds the bulkhead of the store as the outermost advice of every repository proxy, so that the
+    // permit is taken before the transaction of the repository method (and its connection) is opened
+    @Bean
+    public static BeanPostProcessor repositoryBulkheads(@Qualifier("mongoBulkhead") ObjectProvider<Bulkhead> mongoBulkhead,
+                                                        @Qualifier("neo4jBulkhead") ObjectProvider<Bulkhead> neo4jBulkhead) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof RepositoryFactoryBeanSupport<?, ?, ?> factoryBean) {
+                    ObjectProvider<Bulkhead> store = bean instanceof MongoRepositoryFactoryBean<?, ?, ?> ? mongoBulkhead
+                            : bean instanceof Neo4jRepositoryFactoryBean<?, ?, ?> ? neo4jBulkhead : null;
+                    if (store != null) {
+                        factoryBean.addRepositoryFactoryCustomizer(factory -> factory.addRepositoryProxyPostProcessor(
+                                (proxyFactory, repositoryInformation) -> proxyFactory.addAdvice(0, bulkheadAdvice(store))));
+                    }
+                }
+                return bean;
+            }
+        };
+    }
+
+    // A @Transactional service method (default transaction manager: Neo4j) opens its transaction, and borrows
+    // a connection of the pool, before its first repository call: the permit of the repositories would be
+    // taken too late. This advisor takes it around the method, outside the transaction interceptor (lower
+    // order), and the repository calls inside reuse it (the bulkhead is reentrant). Infrastructure role:
+    // without AspectJ the auto-proxy creator of the transactions applies only the infrastructure advisors.
+    @Bean
+    @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+    public static Advisor transactionalBulkhead(@Qualifier("neo4jBulkhead") ObjectProvider<Bulkhead> neo4jBulkhead) {
+        DefaultPointcutAdvisor advisor = new DefaultPointcutAdvisor(new StaticMethodMatcherPointcut() {
+            @Override
+            public boolean matches(Method method, Class<?> targetClass) {
+                if (!AnnotatedElementUtils.hasAnnotation(targetClass, Service.class)) {
+                    return false;
+                }
+                Method specific = AopUtils.getMostSpecificMethod(method, targetClass);
+                Transactional transactional = AnnotatedElementUtils.findMergedAnnotation(specific, Transactional.class);
+                if (transactional == null) {
+                    transactional = AnnotatedElementUtils.findMergedAnnotation(targetClass, Transactional.class);
+                }
+                // A named transaction manager is not the blocking Neo4j one
+                return transactional != null && transactional.transactionManager().isEmpty();
+            }
+        }, bulkheadAdvice(neo4jBulkhead));
+        advisor.setOrder(Ordered.LOWEST_PRECEDENCE - 1); // the transaction interceptor has the lowest precedence
+        return advisor;
+    }
+
+    // The bulkhead is looked up at the first call: the advisors are created before the other beans
+    private static MethodInterceptor bulkheadAdvice(ObjectProvider<Bulkhead> store) {
+        return invocation -> {
+            Bulkhead bulkhead = store.getObject();
+            bulkhead.acquire();
+            try {
+                return invocation.proceed();
+            } finally {
+                bulkhead.release();
+            }
+        };
+    }
+
+    // lovemining.bulkhead.available / waiting / rejected, tagged with the store
+    private static Bulkhead bindMetrics(Bulkhead bulkhead, MeterRegistry meterRegistry) {
+        Gauge.builder("lovemining.bulkhead.available", bulkhead, Bulkhead::availablePermits)
+                .tag("store", bulkhead.getName()).register(meterRegistry);
+        Gauge.builder("lovemining.bulkhead.waiting", bulkhead, Bulkhead::waiting)
+                .tag("store", bulkhead.getName()).register(meterRegistry);
+        FunctionCounter.builder("lovemining.bulkhead.rejected", bulkhead, Bulkhead::rejected)
+                .tag("store", bulkhead.getName()).register(meterRegistry);
+        return bulkhead;
+    }
+}
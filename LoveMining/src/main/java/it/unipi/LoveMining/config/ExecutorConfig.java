@@ -0,0 +1,75 @@
+package it.unipi.LoveMining.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+public class ExecutorConfig {
+
+    // Executor for the independent MongoDB/Neo4j lookups of a single request, run in parallel.
+    // With virtual threads one per lookup (the bulkheads bound the calls to the databases).
+    @Bean(name = "lookupExecutor")
+    public AsyncTaskExecutor lookupExecutor(@Value("${lovemining.lookup.pool-size:16}") int poolSize,
+                                            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        if (virtualThreads) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("lookup-");
+            executor.setVirtualThreads(true);
+            return executor;
+        }
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(1000);
+        executor.setThreadNamePrefix("lookup-");
+        executor.initialize();
+        return executor;
+    }
+
+    // Executor writing the elements of the streamed (NDJSON) responses of the reactive endpoints
+    @Bean(name = "streamExecutor")
+    public AsyncTaskExecutor streamExecutor(@Value("${lovemining.stream.pool-size:16}") int poolSize,
+                                            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        if (virtualThreads) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("stream-");
+            executor.setVirtualThreads(true);
+            return executor;
+        }
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(1000);
+        executor.setThreadNamePrefix("stream-");
+        executor.initialize();
+        return executor;
+    }
+
+    // Analytics jobs, isolated from the user traffic: few low-priority platform threads (also with virtual
+    // threads enabled), so at most pool-size connections of each database pool; a full queue rejects the job
+    @Bean(name = "analyticsExecutor")
+    public ThreadPoolTaskExecutor analyticsExecutor(@Value("${lovemining.analytics.pool-size:2}") int poolSize,
+                                                    @Value("${lovemining.analytics.queue-capacity:20}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadPriority(Thread.MIN_PRIORITY);
+        executor.setThreadNamePrefix("analytics-");
+        executor.initialize();
+        return executor;
+    }
+
+    // Single thread for the user purge jobs: one job at a time, in submission order
+    @Bean(name = "purgeExecutor")
+    public ThreadPoolTaskExecutor purgeExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setThreadNamePrefix("purge-");
+        executor.initialize();
+        return executor;
+    }
+}
@@ -0,0 +1,16 @@
+package it.unipi.LoveMining.config;
+
+import org.neo4j.driver.MetricsAdapter;
+import org.springframework.boot.autoconfigure.neo4j.ConfigBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class MetricsConfig {
+
+    // Neo4j driver pool metrics (neo4j.driver.connections.*) published through Micrometer
+    @Bean
+    public ConfigBuilderCustomizer neo4jDriverMetrics() {
+        return builder -> builder.withDriverMetrics().withMetricsAdapter(MetricsAdapter.MICROMETER);
+    }
+}
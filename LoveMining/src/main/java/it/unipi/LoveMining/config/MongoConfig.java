@@ -6,31 +6,106 @@ import com.mongodb.ReadPreference;
 import com.mongodb.WriteConcern;
 import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoClients;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.ReactiveMongoDatabaseFactory;
 import org.springframework.data.mongodb.config.AbstractMongoClientConfiguration;
+import org.springframework.data.mongodb.core.SimpleReactiveMongoDatabaseFactory;
 import org.springframework.data.mongodb.core.convert.*; // Import for conversions
 import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
 
+import java.util.concurrent.TimeUnit;
+
 @Configuration
 public class MongoConfig extends AbstractMongoClientConfiguration {
 
+    // Settings contributed by other beans: the Micrometer listeners, latency of every command
+    // (mongodb.driver.commands) and pool usage (mongodb.driver.pool.*), and the ones of the tests
+    private final ObjectProvider<MongoClientSettingsBuilderCustomizer> customizers;
+
+    // Replica set of the VMs, overridden to run against a local instance
+    @Value("${lovemining.mongodb.uri:mongodb://10.1.1.14:27017,10.1.1.15:27017,10.1.1.16:27017/?replicaSet=lsmdb}")
+    private String uri;
+
+    // Default write concern (w1, majority, ...) and journaling, and default read preference (nearest,
+    // primary, secondaryPreferred, ...). The repository methods that need a different routing declare
+    // it with @ReadPreference (login and read-after-write on the primary, analytics on a secondary)
+    @Value("${lovemining.mongodb.write-concern:w1}")
+    private String writeConcern;
+
+    @Value("${lovemining.mongodb.journal:false}")
+    private boolean journal;
+
+    @Value("${lovemining.mongodb.read-preference:nearest}")
+    private String readPreference;
+
+    // Connections per server (the MongoDB bulkhead has the same number of permits), connections kept
+    // open, and how long an operation waits for a free connection
+    @Value("${lovemining.mongodb.pool.max-size:100}")
+    private int poolMaxSize;
+
+    @Value("${lovemining.mongodb.pool.min-size:0}")
+    private int poolMinSize;
+
+    @Value("${lovemining.mongodb.pool.max-wait-ms:120000}")
+    private long poolMaxWaitMs;
+
+    // Timeouts of the driver (0 = no socket read timeout)
+    @Value("${lovemining.mongodb.connect-timeout-ms:10000}")
+    private int connectTimeoutMs;
+
+    @Value("${lovemining.mongodb.socket-timeout-ms:0}")
+    private int socketTimeoutMs;
+
+    @Value("${lovemining.mongodb.server-selection-timeout-ms:30000}")
+    private long serverSelectionTimeoutMs;
+
+    public MongoConfig(ObjectProvider<MongoClientSettingsBuilderCustomizer> customizers) {
+        this.customizers = customizers;
+    }
+
     @Override
     protected String getDatabaseName() { return "LoveMining"; }
 
     @Override
     @Bean
     public MongoClient mongoClient() {
-        String uri = "mongodb://10.1.1.14:27017,10.1.1.15:27017,10.1.1.16:27017/?replicaSet=lsmdb";
+        return MongoClients.create(clientSettings());
+    }
 
-        // Write and Read preferences
-        MongoClientSettings settings = MongoClientSettings.builder().applyConnectionString(new ConnectionString(uri))
-                .writeConcern(WriteConcern.W1.withJournal(false)) // w:1 and j:false
-                .readPreference(ReadPreference.nearest()) // nearest
-                .build();
+    // Reactive client of the /api/reactive endpoints: same settings, its own connection pool
+    @Bean
+    public com.mongodb.reactivestreams.client.MongoClient reactiveMongoClient() {
+        return com.mongodb.reactivestreams.client.MongoClients.create(clientSettings());
+    }
+
+    // Same database of the blocking repositories (the ReactiveMongoTemplate of Spring Boot is built on
+    // it, with the converter below)
+    @Bean
+    public ReactiveMongoDatabaseFactory reactiveMongoDatabaseFactory(com.mongodb.reactivestreams.client.MongoClient reactiveMongoClient) {
+        return new SimpleReactiveMongoDatabaseFactory(reactiveMongoClient, getDatabaseName());
+    }
 
-        return MongoClients.create(settings);
+    private MongoClientSettings clientSettings() {
+        WriteConcern defaultWriteConcern = WriteConcern.valueOf(writeConcern);
+        if (defaultWriteConcern == null) {
+            throw new IllegalArgumentException("Unknown lovemining.mongodb.write-concern: " + writeConcern);
+        }
+        // Write and Read preferences (by default w:1, j:false and nearest)
+        MongoClientSettings.Builder builder = MongoClientSettings.builder().applyConnectionString(new ConnectionString(uri))
+                .writeConcern(defaultWriteConcern.withJournal(journal))
+                .readPreference(ReadPreference.valueOf(readPreference))
+                .applyToConnectionPoolSettings(pool -> pool.maxSize(poolMaxSize).minSize(poolMinSize)
+                        .maxWaitTime(poolMaxWaitMs, TimeUnit.MILLISECONDS))
+                .applyToSocketSettings(socket -> socket.connectTimeout(connectTimeoutMs, TimeUnit.MILLISECONDS)
+                        .readTimeout(socketTimeoutMs, TimeUnit.MILLISECONDS))
+                .applyToClusterSettings(cluster -> cluster.serverSelectionTimeout(serverSelectionTimeoutMs, TimeUnit.MILLISECONDS));
+        customizers.orderedStream().forEach(customizer -> customizer.customize(builder));
+        return builder.build();
     }
 
     // This method overrides the default converter and removes the _class field from the documents saved in Mongo
@@ -0,0 +1,45 @@
+package it.unipi.LoveMining.config;
+
+import org.neo4j.driver.Driver;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.transaction.TransactionManagerCustomizers;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.data.neo4j.core.DatabaseSelectionProvider;
+import org.springframework.data.neo4j.core.transaction.Neo4jTransactionManager;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+// Reactive endpoints (/api/reactive) served by Spring MVC: Mono and Flux results are completed
+// asynchronously, without holding the request thread
+public class ReactiveConfig implements WebMvcConfigurer {
+
+    private final AsyncTaskExecutor streamExecutor;
+
+    public ReactiveConfig(@Qualifier("streamExecutor") AsyncTaskExecutor streamExecutor) {
+        this.streamExecutor = streamExecutor;
+    }
+
+    // With Reactor on the classpath Spring Boot also creates the ReactiveNeo4jTransactionManager
+    // ('reactiveTransactionManager') of the reactive repositories: the blocking one stays the default
+    // of @Transactional
+    @Bean(name = "transactionManager")
+    @Primary
+    public Neo4jTransactionManager transactionManager(Driver driver, DatabaseSelectionProvider databaseSelectionProvider,
+                                                      ObjectProvider<TransactionManagerCustomizers> customizers) {
+        Neo4jTransactionManager transactionManager = Neo4jTransactionManager.with(driver)
+                .withDatabaseSelectionProvider(databaseSelectionProvider)
+                .build();
+        customizers.ifAvailable(customizer -> customizer.customize(transactionManager));
+        return transactionManager;
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(streamExecutor);
+    }
+}
@@ -37,6 +37,7 @@ public class SecurityConfig {
                                 "/swagger-ui.html"
                         ).permitAll()
                         .requestMatchers("/api/admin/**").hasRole("ADMIN")
+                        .requestMatchers("/actuator/**").hasRole("ADMIN") // metrics (Prometheus scrapes with basic auth)
                         .anyRequest().authenticated()
                 )
                 .httpBasic(Customizer.withDefaults());
@@ -1,27 +1,49 @@
 package it.unipi.LoveMining.controller;
 
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.bind.annotation.RequestParam;
 
-import it.unipi.LoveMining.model.mongo.UserDocument;
+import it.unipi.LoveMining.model.dto.AnalyticsJob;
+import it.unipi.LoveMining.model.mongo.PurgeJobDocument;
 import it.unipi.LoveMining.model.mongo.ReviewDocument;
 import it.unipi.LoveMining.service.admin.AdminService;
+import it.unipi.LoveMining.service.admin.AnalyticsJobService;
+import it.unipi.LoveMining.service.profiling.FlightRecorderService;
+import it.unipi.LoveMining.service.user.UserFieldsService;
+import it.unipi.LoveMining.service.utility.VersionService;
 
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Map;
 import java.util.List;
+import java.util.Set;
 import lombok.RequiredArgsConstructor;
 
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
 @RestController
 @RequestMapping("/api/admin")
 @RequiredArgsConstructor
 public class AdminController {
 
     private final AdminService adminService;
+    private final UserFieldsService userFieldsService;
+    private final VersionService versionService;
+    private final FlightRecorderService flightRecorderService;
+    private final AnalyticsJobService analyticsJobService;
 
     // Deletes a user by ID
     @DeleteMapping("/users/{id}")
@@ -30,10 +52,190 @@ public class AdminController {
         return ResponseEntity.ok("[OK] User deleted successfully");
     }
 
-    // Search a user by ID
+    // Starts the asynchronous purge of many users (202 with the job to poll)
+    @PostMapping("/users/purge")
+    public ResponseEntity<?> purgeUsers(@RequestBody List<String> userIds) {
+        try {
+            return ResponseEntity.accepted().body(adminService.submitPurge(userIds));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    // Status and progress of a purge job
+    @GetMapping("/users/purge/{jobId}")
+    public ResponseEntity<PurgeJobDocument> getPurgeJob(@PathVariable String jobId) {
+        PurgeJobDocument job = adminService.getPurgeJob(jobId);
+        if (job != null) {
+            return ResponseEntity.ok(job);
+        } else {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    // Restarts a failed purge job from its checkpoint
+    @PostMapping("/users/purge/{jobId}/resume")
+    public ResponseEntity<?> resumePurgeJob(@PathVariable String jobId) {
+        try {
+            return ResponseEntity.accepted().body(adminService.resumePurge(jobId));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(409).body(e.getMessage());
+        }
+    }
+
+    // Streams both databases and reports (and optionally repairs) the users out of sync
+    @PostMapping("/reconcile")
+    public ResponseEntity<?> reconcileUsers(@RequestParam(defaultValue = "false") boolean repair) {
+        try {
+            return ResponseEntity.ok(adminService.reconcileUsers(repair));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(409).body(e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ResponseEntity.internalServerError().body("Reconciliation interrupted.");
+        }
+    }
+
+    // Drift report of the last reconciliation (manual or scheduled)
+    @GetMapping("/reconcile/report")
+    public ResponseEntity<?> getLastReconcileReport() {
+        Map<String, Object> report = adminService.getLastReconcileReport();
+        if (report == null) {
+            return ResponseEntity.noContent().build();
+        }
+        return ResponseEntity.ok(report);
+    }
+
+    // Moves the cold profile fields of the existing users to profile_details (resumable)
+    @PostMapping("/users/details/migrate")
+    public ResponseEntity<String> migrateProfileDetails(@RequestParam(defaultValue = "1000") int batchSize) {
+        try {
+            long migrated = adminService.migrateProfileDetails(batchSize);
+            return ResponseEntity.ok("[OK] " + migrated + " user profiles split into profile_details");
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    // Moves the DISLIKES edges from Neo4j to the off-graph store
+    @PostMapping("/dislikes/migrate")
+    public ResponseEntity<String> migrateDislikes(@RequestParam(defaultValue = "5000") int batchSize) {
+        try {
+            long moved = adminService.migrateDislikes(batchSize);
+            return ResponseEntity.ok("[OK] " + moved + " dislikes moved to MongoDB");
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    // Loads the city coordinates (cities.csv) on the City nodes of the graph
+    @PostMapping("/cities/coordinates")
+    public ResponseEntity<String> loadCityCoordinates() {
+        long updated = adminService.loadCityCoordinates();
+        return ResponseEntity.ok("[OK] Coordinates loaded on " + updated + " cities");
+    }
+
+    // Writes the interest bitsets of the existing users (needed by the 'bitset' ranking)
+    @PostMapping("/interests/bitsets")
+    public ResponseEntity<String> backfillInterestBits(@RequestParam(defaultValue = "5000") int batchSize) {
+        try {
+            long updated = adminService.backfillInterestBits(batchSize);
+            return ResponseEntity.ok("[OK] Interest bitsets written for " + updated + " users");
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    // Builds the "similar users" index (embeddings + HNSW)
+    @PostMapping("/similar/rebuild")
+    public ResponseEntity<String> rebuildSimilarUsersIndex() {
+        int indexed = adminService.rebuildSimilarUsersIndex();
+        return ResponseEntity.ok("[OK] " + indexed + " users indexed");
+    }
+
+    // Recall@k and latency of the "similar users" index against brute-force ranking
+    @GetMapping("/similar/evaluate")
+    public ResponseEntity<?> evaluateSimilarUsersIndex(@RequestParam(defaultValue = "200") int samples,
+                                                       @RequestParam(defaultValue = "10") int k) {
+        try {
+            return ResponseEntity.ok(adminService.evaluateSimilarUsersIndex(samples, k));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    // Rebuilds the co-like model ("people who liked X also liked Y")
+    @PostMapping("/colike/rebuild")
+    public ResponseEntity<String> rebuildCoLikeModel() {
+        try {
+            int users = adminService.rebuildCoLikeModel();
+            return ResponseEntity.ok("[OK] Co-like neighbours computed for " + users + " users");
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().body("Co-like rebuild failed: " + e.getMessage());
+        }
+    }
+
+    // Starts a bounded JFR recording (profile settings, allocation/lock profiling, LoveMining events)
+    @PostMapping("/jfr/start")
+    public ResponseEntity<?> startRecording(@RequestParam(defaultValue = "60") int seconds,
+                                            @RequestParam(defaultValue = "64") int maxSizeMb) {
+        try {
+            return ResponseEntity.ok(flightRecorderService.start(seconds, maxSizeMb));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(409).body(e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().body("Recording failed to start: " + e.getMessage());
+        }
+    }
+
+    // State and size of the current recording
+    @GetMapping("/jfr/status")
+    public ResponseEntity<Map<String, Object>> getRecordingStatus() {
+        return ResponseEntity.ok(flightRecorderService.status());
+    }
+
+    // Stops the recording and streams the .jfr file (deleted once sent)
+    @PostMapping("/jfr/stop")
+    public ResponseEntity<?> stopRecording() {
+        Path file;
+        try {
+            file = flightRecorderService.stop();
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(409).body(e.getMessage());
+        } catch (IOException e) {
+            return ResponseEntity.internalServerError().body("Recording dump failed: " + e.getMessage());
+        }
+        StreamingResponseBody body = out -> {
+            try {
+                Files.copy(file, out);
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        };
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + file.getFileName() + "\"")
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .body(body);
+    }
+
+    // Search a user by ID ('view' and 'fields' restrict the returned fields, as in /api/users/{id})
     @GetMapping("/user/{id}")
-    public ResponseEntity<UserDocument> getUser(@PathVariable String id) {
-        UserDocument user = adminService.getUserById(id); // Call the service to get the user
+    public ResponseEntity<?> getUser(@PathVariable String id,
+                                     @RequestParam(required = false) String view,
+                                     @RequestParam(required = false) String fields) {
+        Set<String> selected;
+        try {
+            selected = userFieldsService.resolveFields(view, fields);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+
+        // Call the service to get the user (only the selected fields if any)
+        Object user = selected == null ? adminService.getUserById(id) : userFieldsService.getUserFields(id, selected);
 
         // Check if the user exists
         if (user != null) {
@@ -56,66 +258,91 @@ public class AdminController {
         }
     }
 
+    // Analytics are computed by jobs on the analytics executor, never on the request thread.
+    // Submits (or joins) the job of an analytic: 200 with the result when cached, otherwise 202 with the job to poll.
+    @PostMapping("/analytics/jobs")
+    public ResponseEntity<?> submitAnalyticsJob(@RequestParam String analytic, @RequestParam(required = false) String state) {
+        try {
+            AnalyticsJob job = analyticsJobService.submit(analytic, state);
+            return job.getStatus() == AnalyticsJob.Status.DONE ? ResponseEntity.ok(job) : accepted(job);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (TaskRejectedException e) {
+            return analyticsBusy();
+        }
+    }
+
+    // Status of an analytics job, with the result once DONE
+    @GetMapping("/analytics/jobs/{jobId}")
+    public ResponseEntity<AnalyticsJob> getAnalyticsJob(@PathVariable String jobId) {
+        AnalyticsJob job = analyticsJobService.getJob(jobId);
+        if (job != null) {
+            return ResponseEntity.ok(job);
+        } else {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
     //Analytics: Love Points
     @GetMapping("/analytics/love-points")
-    public ResponseEntity<List<Map<String, Object>>> getLovePointsAnalytic(@RequestParam String state) {
-        List<Map<String, Object>> stats = adminService.getLovePointsStats(state);
-        if (stats.isEmpty()) {
-            return ResponseEntity.noContent().build();
-        }
-        return ResponseEntity.ok(stats);
+    public ResponseEntity<?> getLovePointsAnalytic(@RequestParam String state, WebRequest webRequest) {
+        return analytics("love-points", state, webRequest);
     }
 
     //Analytics: Glow-up
     @GetMapping("/analytics/glow-up")
-    public ResponseEntity<List<Map<String, Object>>> getGlowUpAnalytics() {
-
-        List<Map<String, Object>> bestUsers = adminService.getBestGlowUpUsers();
-
-        if (bestUsers.isEmpty()) {
-            return ResponseEntity.noContent().build();
-        }
-
-        return ResponseEntity.ok(bestUsers);
+    public ResponseEntity<?> getGlowUpAnalytics(WebRequest webRequest) {
+        return analytics("glow-up", null, webRequest);
     }
 
     //Analytics: Unhappy Cities
     @GetMapping("/analytics/unhappy-cities")
-    public ResponseEntity<List<Map<String, Object>>> getUnhappyCitiesAnalytics() {
-
-        List<Map<String, Object>> bestCities = adminService.getUnhappyCities();
-
-        if (bestCities.isEmpty()) {
-            return ResponseEntity.noContent().build();
-        }
-
-        return ResponseEntity.ok(bestCities);
+    public ResponseEntity<?> getUnhappyCitiesAnalytics(WebRequest webRequest) {
+        return analytics("unhappy-cities", null, webRequest);
     }
 
     // Analytics: Status by Age Group
     @GetMapping("/analytics/status-by-age-group")
-    public ResponseEntity<List<Map<String, Object>>> getStatusAnalytics() {
-
-        List<Map<String, Object>> stats = adminService.getStatusAnalytics();
-
-        if (stats.isEmpty()) {
-            return ResponseEntity.noContent().build();
-        }
-
-        return ResponseEntity.ok(stats);
+    public ResponseEntity<?> getStatusAnalytics(WebRequest webRequest) {
+        return analytics("status-by-age-group", null, webRequest);
     }
 
     // Analytics: Orientation by Age Group
     @GetMapping("/analytics/orientation-by-age-group")
-    public ResponseEntity<List<Map<String, Object>>> getOrientationAnalytics() {
+    public ResponseEntity<?> getOrientationAnalytics(WebRequest webRequest) {
+        return analytics("orientation-by-age-group", null, webRequest);
+    }
 
-        List<Map<String, Object>> stats = adminService.getOrientationAnalytics();
+    // The result when cached (200, or 204 when empty), otherwise 202 with the job computing it
+    private ResponseEntity<?> analytics(String analytic, String state, WebRequest webRequest) {
+        // Conditional GET: the ETag is the analytics generation (bumped by every write), no aggregation when unchanged
+        String etag = versionService.analyticsTag();
+        if (webRequest.checkNotModified(etag)) {
+            return null; // 304 Not Modified
+        }
 
-        if (stats.isEmpty()) {
+        AnalyticsJob job;
+        try {
+            job = analyticsJobService.submit(analytic, state);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (TaskRejectedException e) {
+            return analyticsBusy();
+        }
+        if (job.getStatus() != AnalyticsJob.Status.DONE) {
+            return accepted(job);
+        }
+        if (job.getResult().isEmpty()) {
             return ResponseEntity.noContent().build();
         }
+        return ResponseEntity.ok().eTag(job.getEtag()).body(job.getResult());
+    }
 
-        return ResponseEntity.ok(stats);
+    private static ResponseEntity<?> accepted(AnalyticsJob job) {
+        return ResponseEntity.accepted().location(URI.create("/api/admin/analytics/jobs/" + job.getId())).body(job);
     }
-}
 
+    private static ResponseEntity<?> analyticsBusy() {
+        return ResponseEntity.status(503).header(HttpHeaders.RETRY_AFTER, "5").body("Too many analytics jobs queued, retry later.");
+    }
+}
@@ -0,0 +1,43 @@
+package it.unipi.LoveMining.controller;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import it.unipi.LoveMining.service.utility.AdaptiveConcurrencyLimit;
+
+import java.io.IOException;
+
+// Global load shedding of the user endpoints: registered before Spring Security, so a request over the
+// adaptive limit is answered with 503 + Retry-After before the authentication (BCrypt and the user lookup)
+public class AdmissionFilter extends OncePerRequestFilter {
+
+    private final AdaptiveConcurrencyLimit limit;
+    private final long retryAfterSeconds;
+
+    public AdmissionFilter(AdaptiveConcurrencyLimit limit, long retryAfterSeconds) {
+        this.limit = limit;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        if (!limit.tryAcquire()) {
+            response.setStatus(503);
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+            response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+            response.getWriter().write("Server overloaded (" + limit.getLimit() + " requests in progress), retry later.");
+            return;
+        }
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            limit.release();
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package it.unipi.LoveMining.controller;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.server.ResponseStatusException;
+
+import it.unipi.LoveMining.service.utility.BulkheadFullException;
+import it.unipi.LoveMining.service.utility.RateLimitExceededException;
+
+@RestControllerAdvice
+// Exceptions not handled by the endpoints
+public class ApiExceptionHandler {
+
+    // A backing store is saturated: the request waited for a connection up to the timeout
+    @ExceptionHandler(BulkheadFullException.class)
+    public ResponseEntity<?> bulkheadFull(BulkheadFullException e) {
+        return ResponseEntity.status(503).header(HttpHeaders.RETRY_AFTER, "1").body(e.getMessage());
+    }
+
+    // The user has no token left for this kind of request (RateLimitInterceptor)
+    @ExceptionHandler(RateLimitExceededException.class)
+    public ResponseEntity<?> rateLimitExceeded(RateLimitExceededException e) {
+        return ResponseEntity.status(429).header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .contentType(MediaType.TEXT_PLAIN).body(e.getMessage());
+    }
+
+    // Checks of the streaming endpoints: the same plain message body of the other endpoints
+    @ExceptionHandler(ResponseStatusException.class)
+    public ResponseEntity<?> responseStatus(ResponseStatusException e) {
+        return ResponseEntity.status(e.getStatusCode()).contentType(MediaType.TEXT_PLAIN).body(e.getReason());
+    }
+}
@@ -0,0 +1,50 @@
+package it.unipi.LoveMining.controller;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import it.unipi.LoveMining.service.utility.RateLimitExceededException;
+import it.unipi.LoveMining.service.utility.TokenBuckets;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Per-user admission of the @RateLimited endpoints: runs after the authentication and before the handler,
+// a user without tokens gets 429 + Retry-After (ApiExceptionHandler) without touching the databases
+public class RateLimitInterceptor implements HandlerInterceptor {
+
+    private final Map<String, TokenBuckets> bucketsByKind;
+
+    public RateLimitInterceptor(Map<String, TokenBuckets> bucketsByKind) {
+        this.bucketsByKind = bucketsByKind;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!(handler instanceof HandlerMethod handlerMethod)) {
+            return true;
+        }
+        RateLimited rateLimited = handlerMethod.getMethodAnnotation(RateLimited.class);
+        if (rateLimited == null) {
+            return true;
+        }
+        TokenBuckets buckets = bucketsByKind.get(rateLimited.value());
+        if (buckets == null) {
+            throw new IllegalStateException("No token buckets configured for '" + rateLimited.value() + "'");
+        }
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null) {
+            return true;
+        }
+        long waitNanos = buckets.tryAcquire(authentication.getName());
+        if (waitNanos > 0) {
+            long retryAfterSeconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999L));
+            throw new RateLimitExceededException(rateLimited.value(), retryAfterSeconds);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,14 @@
+package it.unipi.LoveMining.controller;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+// Endpoint limited by the token bucket of the user for the given kind of request
+// (lovemining.admission.<kind>.per-minute and .burst, see RateLimitInterceptor)
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RateLimited {
+    String value();
+}
@@ -0,0 +1,106 @@
+package it.unipi.LoveMining.controller;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import it.unipi.LoveMining.model.dto.MatchCard;
+import it.unipi.LoveMining.service.user.ReactiveUserService;
+import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import org.springframework.security.core.Authentication;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/reactive/users")
+@RequiredArgsConstructor
+// Reactive variant of the swipe, recommendation and match endpoints of UserController.
+// The request thread is released while MongoDB and Neo4j answer; lists are streamed as NDJSON
+// (one JSON object per line), the next element is read from the database only once the previous
+// one has been written to the client.
+public class ReactiveUserController {
+
+    private final ReactiveUserService reactiveUserService;
+
+    // Streams all the matches of the authenticated user (most recent first) with the profile cards
+    @GetMapping(value = "/matches", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<MatchCard> getMatches(Authentication authentication) {
+        requireUser(authentication, "ADMINs cannot access user matches.");
+
+        return reactiveUserService.getUserByEmail(authentication.getName())
+                .flatMapMany(user -> reactiveUserService.getUserMatches(user.getId()));
+    }
+
+    // Likes
+    @PostMapping("/{id}/like")
+    public Mono<ResponseEntity<String>> likeUser(Authentication authentication, @PathVariable String id) {
+        if (isAdmin(authentication)) return Mono.just(ResponseEntity.status(403).body("ADMINs cannot like users."));
+
+        return reactiveUserService.getUserByEmail(authentication.getName())
+                .flatMap(author -> reactiveUserService.likeUser(author.getId(), id)
+                        .map(ResponseEntity::ok)
+                        .onErrorResume(e -> Mono.just(ResponseEntity.badRequest().body("Error in like: " + e.getMessage()))))
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    // Dislikes
+    @PostMapping("/{id}/dislike")
+    public Mono<ResponseEntity<String>> dislikeUser(Authentication authentication, @PathVariable String id) {
+        if (isAdmin(authentication)) return Mono.just(ResponseEntity.status(403).body("ADMINs cannot dislike users."));
+
+        return reactiveUserService.getUserByEmail(authentication.getName())
+                .flatMap(author -> reactiveUserService.dislikeUser(author.getId(), id)
+                        .thenReturn(ResponseEntity.ok("Dislike send."))
+                        .onErrorResume(e -> Mono.just(ResponseEntity.badRequest().body("Error in dislike: " + e.getMessage()))))
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    // Recommendations with filters, streamed as {"id": ...} lines or, with expand=cards, as profile cards.
+    // Only 'City' and 'State': the 'Radius' search visits the cities in bands and stays on /api/users.
+    @GetMapping(value = "/recommendations/{filters}", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<Object> getRecommendations(
+            Authentication authentication,
+            @RequestParam String locationFilter,
+            @RequestParam int minAge,
+            @RequestParam int maxAge,
+            @RequestParam(required = false) String expand
+    ) {
+        requireUser(authentication, "ADMINs cannot get recommendations.");
+        if (!locationFilter.equals("City") && !locationFilter.equals("State")) { // Expects "City" or "State"
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid filter. Use 'City' or 'State'.");
+        }
+
+        return reactiveUserService.getUserByEmail(authentication.getName()).<Object>flatMapMany(user -> {
+            Flux<String> recommendations = reactiveUserService.getRecommendations(user.getId(), locationFilter, minAge, maxAge);
+
+            // expand=cards: profile cards instead of the bare ids
+            if ("cards".equals(expand)) {
+                return recommendations.collectList()
+                        .flatMapMany(ids -> reactiveUserService.getRecommendationCards(user, ids));
+            }
+            return recommendations.map(recommendation -> Map.of("id", recommendation));
+        });
+    }
+
+    // The status of a stream cannot change once the first line is written: the checks are done before
+    private static void requireUser(Authentication authentication, String adminMessage) {
+        if (isAdmin(authentication)) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, adminMessage);
+        }
+    }
+
+    private static boolean isAdmin(Authentication authentication) {
+        return authentication.getAuthorities().stream()
+                .anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN"));
+    }
+}
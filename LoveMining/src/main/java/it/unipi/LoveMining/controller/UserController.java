@@ -12,12 +12,18 @@ import org.springframework.web.bind.annotation.RequestBody;
 
 import it.unipi.LoveMining.model.mongo.UserDocument;
 import it.unipi.LoveMining.model.mongo.ReviewDocument;
+import it.unipi.LoveMining.service.user.DashboardService;
+import it.unipi.LoveMining.service.user.UserFieldsService;
 import it.unipi.LoveMining.service.user.UserService;
+import it.unipi.LoveMining.service.utility.BulkheadFullException;
+import it.unipi.LoveMining.service.utility.VersionService;
 import lombok.RequiredArgsConstructor;
 
 import org.springframework.security.core.Authentication;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/api/users")
@@ -25,11 +31,24 @@ import java.util.List;
 public class UserController {
 
     private final UserService userService;
+    private final UserFieldsService userFieldsService;
+    private final VersionService versionService;
+    private final DashboardService dashboardService;
 
-    // Retrieves a user by ID
+    // Retrieves a user by ID.
+    // 'view' (card, profile, full) and/or 'fields' (comma separated) restrict the returned fields.
     @GetMapping("/{id}")
-    public ResponseEntity<UserDocument> getUser(@PathVariable String id) {
-        UserDocument user = userService.getUser(id);
+    public ResponseEntity<?> getUser(@PathVariable String id,
+                                     @RequestParam(required = false) String view,
+                                     @RequestParam(required = false) String fields) {
+        Set<String> selected;
+        try {
+            selected = userFieldsService.resolveFields(view, fields);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+
+        Object user = selected == null ? userService.getUser(id) : userFieldsService.getUserFields(id, selected);
         if (user != null) {
             return ResponseEntity.ok(user);
         } else {
@@ -37,9 +56,12 @@ public class UserController {
         }
     }
 
-    // Retrieves the authenticated user's profile
+    // Retrieves the authenticated user's profile ('view' and 'fields' as in getUser).
+    // Conditional GET: 304 if the ETag (version of the document) matches If-None-Match.
     @GetMapping
-    public ResponseEntity<?> getMe(Authentication authentication) {
+    public ResponseEntity<?> getMe(Authentication authentication, WebRequest webRequest,
+                                   @RequestParam(required = false) String view,
+                                   @RequestParam(required = false) String fields) {
         // 1. Check if user is ADMIN
         boolean isAdmin = authentication.getAuthorities().stream()
                 .anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN"));
@@ -48,20 +70,38 @@ public class UserController {
             return ResponseEntity.status(403).body("ADMINs cannot access user profiles.");
         }
 
-        // 2. Retrieve user by Email (Principal in Basic Auth is the username/email)
-        String email = authentication.getName();
-        UserDocument user = userService.getUserByEmail(email);
+        Set<String> selected;
+        try {
+            selected = userFieldsService.resolveFields(view, fields);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+
+        // 2. Versions only: no document load when the client copy is current
+        String email = authentication.getName(); // Principal in Basic Auth is the username/email
+        UserDocument versions = userService.getUserVersionsByEmail(email);
+        if (versions == null) {
+            return ResponseEntity.notFound().build();
+        }
+        String etag = versionService.userTag(versions);
+        if (webRequest.checkNotModified(etag)) {
+            return null; // 304 Not Modified
+        }
+
+        // 3. Retrieve user by Email
+        Object user = selected == null ? userService.getUserProfileByEmail(email)
+                : userFieldsService.getUserFieldsByEmail(email, selected);
 
         if (user != null) {
-            return ResponseEntity.ok(user);
+            return ResponseEntity.ok().eTag(etag).body(user);
         } else {
             return ResponseEntity.notFound().build();
         }
     }
 
-    // Retrieves the matches for the authenticated user
+    // Retrieves the matches for the authenticated user (conditional GET on the matches generation)
     @GetMapping("/matches")
-    public ResponseEntity<?> getMatches(Authentication authentication) {
+    public ResponseEntity<?> getMatches(Authentication authentication, WebRequest webRequest) {
         // 1. Check if user is ADMIN
         boolean isAdmin = authentication.getAuthorities().stream()
                 .anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN"));
@@ -71,13 +111,45 @@ public class UserController {
         }
 
         String email = authentication.getName();
-        UserDocument user = userService.getUserByEmail(email); // Need ID from Mongo Doc first
+        UserDocument user = userService.getUserVersionsByEmail(email); // Need ID (and versions) from Mongo Doc first
         if (user == null) {
             return ResponseEntity.notFound().build();
         }
+        String etag = versionService.matchesTag(user);
+        if (webRequest.checkNotModified(etag)) {
+            return null; // 304 Not Modified
+        }
 
         java.util.Set<it.unipi.LoveMining.model.neo4j.UserNode> matches = userService.getUserMatches(user.getId());
-        return ResponseEntity.ok(matches);
+        return ResponseEntity.ok().eTag(etag).body(matches);
+    }
+
+    // Retrieves a page of matches (most recent first) with the profile cards (conditional GET as /matches)
+    @GetMapping("/matches/page")
+    public ResponseEntity<?> getMatchesPage(Authentication authentication, WebRequest webRequest,
+                                            @RequestParam(defaultValue = "0") int page,
+                                            @RequestParam(defaultValue = "20") int size) {
+        boolean isAdmin = authentication.getAuthorities().stream()
+                .anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN"));
+
+        if (isAdmin) {
+            return ResponseEntity.status(403).body("ADMINs cannot access user matches.");
+        }
+        if (page < 0 || size < 1 || size > 100) {
+            return ResponseEntity.badRequest().body("Page must be >= 0 and size between 1 and 100.");
+        }
+
+        String email = authentication.getName();
+        UserDocument user = userService.getUserVersionsByEmail(email);
+        if (user == null) {
+            return ResponseEntity.notFound().build();
+        }
+        String etag = versionService.matchesTag(user);
+        if (webRequest.checkNotModified(etag)) {
+            return null; // 304 Not Modified
+        }
+
+        return ResponseEntity.ok().eTag(etag).body(userService.getUserMatchesPage(user.getId(), page, size));
     }
 
     // Retrieves the reviews made by the authenticated user
@@ -105,6 +177,38 @@ public class UserController {
         return ResponseEntity.ok(reviews);
     }
 
+    // Profile, reviews, first page of matches and recommendations of the authenticated user in one call
+    // (the lookups run concurrently; a late one is left out and listed in 'missing')
+    @GetMapping("/dashboard")
+    public ResponseEntity<?> getDashboard(Authentication authentication,
+                                          @RequestParam(defaultValue = "City") String locationFilter,
+                                          @RequestParam(defaultValue = "18") int minAge,
+                                          @RequestParam(defaultValue = "99") int maxAge,
+                                          @RequestParam(defaultValue = "20") int matches,
+                                          @RequestParam(required = false) String expand) {
+        boolean isAdmin = authentication.getAuthorities().stream()
+                .anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN"));
+
+        if (isAdmin) {
+            return ResponseEntity.status(403).body("ADMINs cannot access the user dashboard.");
+        }
+        if (!locationFilter.equals("City") && !locationFilter.equals("State")) { // Expects "City" or "State"
+            return ResponseEntity.badRequest().body("Invalid filter. Use 'City' or 'State'.");
+        }
+        if (matches < 1 || matches > 100) {
+            return ResponseEntity.badRequest().body("Matches must be between 1 and 100.");
+        }
+
+        // The principal is resolved once for all the sections
+        UserDocument user = userService.getUserByEmail(authentication.getName());
+        if (user == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        return ResponseEntity.ok(dashboardService.getDashboard(user, locationFilter, minAge, maxAge, matches,
+                "cards".equals(expand)));
+    }
+
     // Update user profile
     @PatchMapping("/me")
     public ResponseEntity<?> updateUser(Authentication authentication,
@@ -125,6 +229,8 @@ public class UserController {
         try {
             userService.updateUser(currentUser.getId(), inputUser);
             return ResponseEntity.ok("User profile updated successfully.");
+        } catch (BulkheadFullException e) {
+            throw e; // 503 (ApiExceptionHandler)
         } catch (Exception e) {
             return ResponseEntity.badRequest().body("Update failed: " + e.getMessage());
         }
@@ -132,6 +238,7 @@ public class UserController {
 
     // Create a review
     @PostMapping("/{id}/review")
+    @RateLimited("review")
     public ResponseEntity<?> createReview(Authentication authentication, @PathVariable String id, @RequestBody ReviewDocument review) {
 
         // 1. Check
@@ -151,6 +258,8 @@ public class UserController {
             // 3. Call logic (Match check + Insert)
             userService.addReview(author.getId(), id, review);
             return ResponseEntity.ok("Review created successfully.");
+        } catch (BulkheadFullException e) {
+            throw e;
         } catch (Exception e) {
             // Errors (es. "Not matched", "User not found")
             return ResponseEntity.badRequest().body("Error creating review: " + e.getMessage());
@@ -159,6 +268,7 @@ public class UserController {
 
     // Likes
     @PostMapping("/{id}/like")
+    @RateLimited("like")
     public ResponseEntity<?> likeUser(Authentication authentication, @PathVariable String id) {
 
         boolean isAdmin = authentication.getAuthorities().stream()
@@ -172,6 +282,8 @@ public class UserController {
         try {
             String result = userService.likeUser(author.getId(), id);
             return ResponseEntity.ok(result);
+        } catch (BulkheadFullException e) {
+            throw e;
         } catch (Exception e) {
             return ResponseEntity.badRequest().body("Error in like: " + e.getMessage());
         }
@@ -179,6 +291,7 @@ public class UserController {
 
     // Dislikes
     @PostMapping("/{id}/dislike")
+    @RateLimited("dislike")
     public ResponseEntity<?> dislikeUser(Authentication authentication, @PathVariable String id) {
 
         boolean isAdmin = authentication.getAuthorities().stream()
@@ -192,38 +305,82 @@ public class UserController {
         try {
             userService.dislikeUser(author.getId(), id);
             return ResponseEntity.ok("Dislike send.");
+        } catch (BulkheadFullException e) {
+            throw e;
         } catch (Exception e) {
             return ResponseEntity.badRequest().body("Error in dislike: " + e.getMessage());
         }
     }
 
+    // Recommendations similar to the users liked
+    @GetMapping("/recommendations/similar")
+    public ResponseEntity<?> getSimilarRecommendations(
+            Authentication authentication,
+            @RequestParam String locationFilter,
+            @RequestParam int minAge,
+            @RequestParam int maxAge
+    ) {
+
+        boolean isAdmin = authentication.getAuthorities().stream()
+                .anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN"));
+        if (isAdmin) return ResponseEntity.status(403).body("ADMINs cannot get recommendations.");
+
+        if (!locationFilter.equals("City") && !locationFilter.equals("State")) { // Expects "City" or "State"
+            return ResponseEntity.badRequest().body("Invalid filter. Use 'City' or 'State'.");
+        }
+
+        String email = authentication.getName();
+        UserDocument user = userService.getUserByEmail(email);
+        if (user == null) return ResponseEntity.notFound().build();
+
+        List<String> recommendations = userService.getSimilarRecommendations(user.getId(), locationFilter, minAge, maxAge);
+
+        if (recommendations.isEmpty()) {
+            return ResponseEntity.noContent().build();
+        }
+
+        return ResponseEntity.ok(recommendations);
+    }
+
     // Recommendations with filters
     @GetMapping("/recommendations/{filters}")
     public ResponseEntity<?> getRecommendations(
             Authentication authentication,
             @RequestParam String locationFilter,
             @RequestParam int minAge,
-            @RequestParam int maxAge
+            @RequestParam int maxAge,
+            @RequestParam(required = false) Double km,
+            @RequestParam(required = false) String expand
     ) {
 
         boolean isAdmin = authentication.getAuthorities().stream()
                 .anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN"));
         if (isAdmin) return ResponseEntity.status(403).body("ADMINs cannot dislike users.");
 
-        if (!locationFilter.equals("City") && !locationFilter.equals("State")) { // Expects "City" or "State"
-            return ResponseEntity.badRequest().body("Invalid filter. Use 'City' or 'State'.");
+        if (!locationFilter.equals("City") && !locationFilter.equals("State") && !locationFilter.equals("Radius")) { // Expects "City", "State" or "Radius"
+            return ResponseEntity.badRequest().body("Invalid filter. Use 'City', 'State' or 'Radius'.");
+        }
+        if (locationFilter.equals("Radius") && (km == null || km <= 0 || km > 500)) {
+            return ResponseEntity.badRequest().body("Radius filter requires 'km' between 0 and 500.");
         }
 
         String email = authentication.getName();
         UserDocument user = userService.getUserByEmail(email);
         if (user == null) return ResponseEntity.notFound().build();
 
-        List<String> recommendations = userService.getRecommendations(user.getId(), locationFilter, minAge, maxAge);
+        List<String> recommendations = locationFilter.equals("Radius")
+                ? userService.getRecommendationsByRadius(user.getId(), user.getCity(), km, minAge, maxAge)
+                : userService.getRecommendations(user.getId(), locationFilter, minAge, maxAge);
 
         if (recommendations.isEmpty()) {
             return ResponseEntity.noContent().build();
         }
 
+        // expand=cards: profile cards instead of the bare ids
+        if ("cards".equals(expand)) {
+            return ResponseEntity.ok(userService.getRecommendationCards(user, recommendations));
+        }
+
         return ResponseEntity.ok(recommendations);
     }
 }
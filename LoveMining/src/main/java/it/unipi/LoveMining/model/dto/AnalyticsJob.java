@@ -0,0 +1,44 @@
+package it.unipi.LoveMining.model.dto;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// One computation of an analytics aggregation, polled by the client until DONE (or FAILED).
+// Updated by the analytics executor while the request threads read it.
+@Data
+@NoArgsConstructor
+public class AnalyticsJob {
+
+    public enum Status { PENDING, RUNNING, DONE, FAILED }
+
+    private String id;
+    private String analytic;
+
+    // 'state' of love-points, null for the other analytics
+    private String state;
+
+    private volatile Status status;
+    private Date submittedAt;
+    private volatile Date completedAt;
+
+    private volatile List<Map<String, Object>> result;
+    private volatile String error;
+
+    // Analytics generation when the computation started (ETag of the result)
+    @JsonIgnore
+    private volatile String etag;
+
+    public AnalyticsJob(String id, String analytic, String state) {
+        this.id = id;
+        this.analytic = analytic;
+        this.state = state;
+        this.status = Status.PENDING;
+        this.submittedAt = new Date();
+    }
+}
@@ -0,0 +1,26 @@
+package it.unipi.LoveMining.model.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import it.unipi.LoveMining.model.mongo.UserDocument;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Everything the app shows when it opens, in one response. The sections whose lookup failed or
+// missed its deadline are null and listed in 'missing'.
+@Data
+@NoArgsConstructor
+public class Dashboard {
+
+    private UserDocument profile;
+
+    private List<UserDocument.ReviewSummary> reviews;
+
+    private List<MatchCard> matches;
+
+    // Recommended ids, or RecommendationCards with expand=cards
+    private List<?> recommendations;
+
+    private List<String> missing = new ArrayList<>();
+}
@@ -0,0 +1,21 @@
+package it.unipi.LoveMining.model.dto;
+
+import java.time.ZonedDateTime;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// One entry of the paginated match list: when the match happened and the matched profile
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MatchCard {
+
+    private String userId;
+
+    // null for the matches created before the MATCHED edges had a timestamp
+    private ZonedDateTime matchedAt;
+
+    private ProfileCard profile;
+}
@@ -0,0 +1,24 @@
+package it.unipi.LoveMining.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Compact public profile of a user, read from the 'users' collection with a projection
+// on these fields only (no credentials, essay or reviews) and a lookup of profile_details
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProfileCard {
+
+    private String id;
+    private Integer age;
+    private String sex;
+    private String orientation;
+    private String status;
+    private String city;
+    private String state;
+    private String bodyType;
+    private Integer height;
+    private String job;
+}
@@ -0,0 +1,27 @@
+package it.unipi.LoveMining.model.dto;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Recommended user with the data shown on the recommendation screen
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RecommendationCard {
+
+    private String id;
+    private Integer age;
+    private String city;
+
+    // First characters of essay0
+    private String essayPreview;
+
+    // Interests in common with the user asking for recommendations
+    private List<String> sharedInterests;
+
+    // Average rating of the reviews received, null if never reviewed
+    private Double averageRating;
+}
@@ -0,0 +1,39 @@
+package it.unipi.LoveMining.model.mongo;
+
+import java.util.Date;
+import java.util.List;
+
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+import org.springframework.data.mongodb.core.mapping.FieldType;
+import org.springframework.data.mongodb.core.mapping.MongoId;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// One document per user holding the users they disliked, kept sorted by target id.
+// Replaces the DISLIKES edges in Neo4j when lovemining.dislikes.store=mongo
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "dislikes")
+public class DislikeDocument {
+
+    // Same id as the UserDocument of the author of the dislikes
+    @MongoId(FieldType.STRING)
+    private String id;
+
+    private List<Entry> entries;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Entry {
+        @Field("target_id")
+        private String targetId;
+
+        @Field("dislike_date")
+        private Date date;
+    }
+}
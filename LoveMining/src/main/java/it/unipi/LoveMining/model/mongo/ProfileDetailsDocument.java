@@ -0,0 +1,46 @@
+package it.unipi.LoveMining.model.mongo;
+
+import java.util.List;
+
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+import org.springframework.data.mongodb.core.mapping.FieldType;
+import org.springframework.data.mongodb.core.mapping.MongoId;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Cold part of the user profile: descriptive fields, essay and reviews made.
+// Kept out of 'users' so that the authentication and swipe lookups only touch the small hot document.
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "profile_details")
+public class ProfileDetailsDocument {
+
+    // Same id as the UserDocument
+    @MongoId(FieldType.STRING)
+    private String id;
+
+    @Field("body_type")
+    private String bodyType;
+
+    private String diet;
+    private String drinks;
+    private String education;
+    private String ethnicity;
+    private Integer height;
+    private Integer income;
+    private String job;
+    private String offspring;
+    private String pets;
+    private String religion;
+    private String smokes;
+    private String speaks;
+
+    private String essay0;
+
+    @Field("reviews_made")
+    private List<UserDocument.ReviewSummary> reviewsMade;
+}
@@ -0,0 +1,49 @@
+package it.unipi.LoveMining.model.mongo;
+
+import java.util.Date;
+import java.util.List;
+
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+import org.springframework.data.mongodb.core.mapping.FieldType;
+import org.springframework.data.mongodb.core.mapping.MongoId;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Asynchronous purge of many users. 'processed' is the checkpoint: the users before it are
+// deleted from both databases, a resumed job restarts from there.
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "purge_jobs")
+public class PurgeJobDocument {
+
+    public enum Status { PENDING, RUNNING, COMPLETED, FAILED }
+
+    @MongoId(FieldType.STRING)
+    private String id;
+
+    private Status status;
+
+    @Field("user_ids")
+    private List<String> userIds;
+
+    private Integer processed;
+
+    // Users of the list that didn't exist
+    @Field("not_found")
+    private Integer notFound;
+
+    @Field("deleted_relationships")
+    private Long deletedRelationships;
+
+    private String error;
+
+    @Field("created_at")
+    private Date createdAt;
+
+    @Field("updated_at")
+    private Date updatedAt;
+}
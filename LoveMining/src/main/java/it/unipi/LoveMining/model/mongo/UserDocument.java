@@ -32,6 +32,8 @@ public class UserDocument {
     private String sex;
     private String orientation;
 
+    // From body_type to speaks, essay0 and reviews_made: cold fields, stored in profile_details
+    // (ProfileDetailsService) and kept here for the API and the users not migrated yet
     @Field("body_type")
     private String bodyType;
 
@@ -54,9 +56,23 @@ public class UserDocument {
 
     private java.util.List<String> interests;
 
+    // Interests as bitset over the ordinals of interessi.csv (internal, not exposed by the APIs)
+    @com.fasterxml.jackson.annotation.JsonIgnore
+    @Field("interest_bits")
+    private long[] interestBits;
+
     @Field("reviews_made")
     private java.util.List<ReviewSummary> reviewsMade;
 
+    // Incremented on every change of the document (ETag of the profile, missing = 0)
+    @com.fasterxml.jackson.annotation.JsonIgnore
+    private Long version;
+
+    // Incremented when the user's matches (or the cards of the matched users) change (ETag of the matches)
+    @com.fasterxml.jackson.annotation.JsonIgnore
+    @Field("matches_generation")
+    private Long matchesGeneration;
+
     @Data
     @NoArgsConstructor
     @AllArgsConstructor
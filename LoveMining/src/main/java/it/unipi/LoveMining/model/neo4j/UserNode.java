@@ -3,12 +3,14 @@ package it.unipi.LoveMining.model.neo4j;
 import org.springframework.data.neo4j.core.schema.Property;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.neo4j.core.schema.Node;
-import org.springframework.data.neo4j.core.schema.Relationship;
 
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+// Scalar-only mapping of the User node: LIVES_IN, HAS_INTEREST and the swipe relationships
+// (LIKES, DISLIKES, MATCHED) are read and written only by the Cypher queries of UserNeo4jRepository,
+// so that findById/save/findMatches never load or diff a user's neighbourhood
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -23,25 +25,7 @@ public class UserNode {
     private String sex;
     private String orientation;
 
-    @lombok.EqualsAndHashCode.Exclude
-    @lombok.ToString.Exclude
-    @Relationship(type = "LIVES_IN", direction = Relationship.Direction.OUTGOING)
-    private CityNode cityNode;
-
-    @lombok.EqualsAndHashCode.Exclude
-    @lombok.ToString.Exclude
-    @Relationship(type = "HAS_INTEREST", direction = Relationship.Direction.OUTGOING)
-    private java.util.Set<InterestNode> interests;
-
-    @com.fasterxml.jackson.annotation.JsonIgnore
-    @lombok.EqualsAndHashCode.Exclude
-    @lombok.ToString.Exclude
-    @Relationship(type = "LIKES", direction = Relationship.Direction.OUTGOING)
-    private java.util.Set<UserNode> likes;
-
+    // Interests as bitset over the ordinals of interessi.csv, scored without traversing Interest nodes
     @com.fasterxml.jackson.annotation.JsonIgnore
-    @lombok.EqualsAndHashCode.Exclude
-    @lombok.ToString.Exclude
-    @Relationship(type = "DISLIKES", direction = Relationship.Direction.OUTGOING)
-    private java.util.Set<UserNode> dislikes;
+    private long[] interestBits;
 }
\ No newline at end of file
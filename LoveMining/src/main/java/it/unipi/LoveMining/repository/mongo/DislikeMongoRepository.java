@@ -0,0 +1,12 @@
+package it.unipi.LoveMining.repository.mongo;
+
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import it.unipi.LoveMining.model.mongo.DislikeDocument;
+
+@Repository
+// Repository interface for the off-graph Dislike documents in MongoDB
+public interface DislikeMongoRepository extends MongoRepository<DislikeDocument, String> {
+
+}
@@ -0,0 +1,76 @@
+package it.unipi.LoveMining.repository.mongo;
+
+import org.springframework.data.mongodb.repository.Aggregation;
+import org.springframework.data.mongodb.repository.Meta;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.mongodb.repository.ReadPreference;
+import org.springframework.data.mongodb.repository.Update;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import it.unipi.LoveMining.model.mongo.ProfileDetailsDocument;
+
+@Repository
+// Repository interface for the cold ProfileDetails documents in MongoDB
+public interface ProfileDetailsMongoRepository extends MongoRepository<ProfileDetailsDocument, String> {
+
+    // Details of the own profile, merged and saved back by the updates: on the primary
+    @Override
+    @ReadPreference("primary")
+    Optional<ProfileDetailsDocument> findById(String id);
+
+    // Authors of a review of the targets (only the ids)
+    @Query(value = "{ 'reviews_made.target_id': { '$in': ?0 } }", fields = "{ '_id': 1 }")
+    List<ProfileDetailsDocument> findAuthorsOfReviewsOn(Collection<String> targetIds);
+
+    @Query("{ 'reviews_made.target_id': { '$in': ?0 } }")
+    @Update("{ '$pull': { 'reviews_made': { 'target_id': { '$in': ?0 } } } }")
+    void removeReviewReferences(Collection<String> targetIds);
+
+    // Analytics: Finds cities with the highest number of unhappy users
+    // (same pipeline of the embedded layout, the city is read from 'users' for the unhappy users only)
+    // On a secondary, with disk use and a time limit (see UserMongoRepository.ANALYTICS_MAX_TIME_MS)
+    @ReadPreference("secondaryPreferred")
+    @Meta(allowDiskUse = true, maxExecutionTimeMs = UserMongoRepository.ANALYTICS_MAX_TIME_MS)
+    @Aggregation(pipeline = {
+            // 1. MATCH: Keep only users who have at least one review with a rating
+            "{ '$match': { 'reviews_made.rating': { '$gt': 0 } } }",
+            // (plus the users not migrated yet, with the reviews still embedded in 'users')
+            "{ '$unionWith': { 'coll': 'users', 'pipeline': [ { '$match': { 'reviews_made.rating': { '$gt': 0 } } } ] } }",
+
+            // 2. PROJECT: Calculate the average rating for each user
+            "{ '$project': { 'userPersonalAvg': { '$avg': '$reviews_made.rating' } } }",
+
+            // 3. MATCH: Filter for "unhappy" users (average rating less than 3)
+            "{ '$match': { 'userPersonalAvg': { '$lt': 3 } } }",
+
+            // 4. LOOKUP: City of the user from the hot document
+            "{ '$lookup': { 'from': 'users', 'localField': '_id', 'foreignField': '_id', 'as': 'user' } }",
+            "{ '$project': { 'userPersonalAvg': 1, 'city': { '$arrayElemAt': ['$user.city', 0] } } }",
+
+            // 5. GROUP: Group by City. Count total unhappy users and split by severity
+            "{ '$group': { " +
+                    "'_id': '$city', " +
+                    "'totalUnhappyUsers': { '$sum': 1 }, " +
+                    "'extremeHatersCount': { '$sum': { '$cond': [ { '$lt': ['$userPersonalAvg', 2] }, 1, 0 ] } }, " +
+                    "'moderateUnhappyCount': { '$sum': { '$cond': [ { '$gte': ['$userPersonalAvg', 2] }, 1, 0 ] } }, " +
+                    "'avgUnhappinessScore': { '$avg': '$userPersonalAvg' } } }",
+
+            // 6. PROJECT: Format output and round the score to 2 decimal places
+            "{ '$project': { " +
+                    "'totalUnhappyUsers': 1, " +
+                    "'extremeHatersCount': 1, " +
+                    "'moderateUnhappyCount': 1, " +
+                    "'avgUnhappinessScore': { '$round': ['$avgUnhappinessScore', 2] } } }",
+
+            // 7. SORT and LIMIT: top 5 cities by number of unhappy users
+            "{ '$sort': { 'totalUnhappyUsers': -1 } }",
+            "{ '$limit': 5 }"
+    })
+    List<Map<String, Object>> findTopUnhappyCities();
+}
@@ -0,0 +1,16 @@
+package it.unipi.LoveMining.repository.mongo;
+
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+import it.unipi.LoveMining.model.mongo.PurgeJobDocument;
+
+@Repository
+// Repository interface for the user purge jobs in MongoDB
+public interface PurgeJobMongoRepository extends MongoRepository<PurgeJobDocument, String> {
+
+    List<PurgeJobDocument> findByStatusIn(Collection<PurgeJobDocument.Status> statuses);
+}
@@ -0,0 +1,18 @@
+package it.unipi.LoveMining.repository.mongo;
+
+import it.unipi.LoveMining.model.mongo.ReviewDocument;
+import org.springframework.data.mongodb.repository.Aggregation;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.Map;
+
+@Repository
+public interface ReactiveReviewMongoRepository extends ReactiveMongoRepository<ReviewDocument, String> {
+
+    // Average rating received by each of the given users
+    @Aggregation(pipeline = { ReviewMongoRepository.MATCH_TARGETS, ReviewMongoRepository.GROUP_AVERAGE_RATING })
+    Flux<Map<String, Object>> findAverageRatings(List<String> targetIds);
+}
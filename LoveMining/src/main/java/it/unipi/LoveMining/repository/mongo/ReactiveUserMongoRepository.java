@@ -0,0 +1,33 @@
+package it.unipi.LoveMining.repository.mongo;
+
+import org.springframework.data.mongodb.repository.Aggregation;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Map;
+
+import it.unipi.LoveMining.model.dto.ProfileCard;
+import it.unipi.LoveMining.model.mongo.UserDocument;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@Repository
+// Reactive repository for User documents in MongoDB (/api/reactive endpoints), same queries of UserMongoRepository
+public interface ReactiveUserMongoRepository extends ReactiveMongoRepository<UserDocument, String> {
+    // On the primary, as UserMongoRepository.findByEmail
+    @org.springframework.data.mongodb.repository.ReadPreference("primary")
+    Mono<UserDocument> findByEmail(String email);
+
+    @org.springframework.data.mongodb.repository.Query("{ '_id': { '$in': ?0 } }")
+    @org.springframework.data.mongodb.repository.Update("{ '$inc': { 'matches_generation': 1 } }")
+    Mono<Long> incrementMatchesGeneration(java.util.Collection<String> ids);
+
+    @Aggregation(pipeline = { UserMongoRepository.MATCH_IDS, UserMongoRepository.LOOKUP_DETAILS,
+            UserMongoRepository.PROFILE_CARD_PROJECTION })
+    Flux<ProfileCard> findByIdIn(java.util.Collection<String> ids);
+
+    @Aggregation(pipeline = { UserMongoRepository.MATCH_IDS, UserMongoRepository.LOOKUP_DETAILS,
+            UserMongoRepository.RECOMMENDATION_CARD_PROJECTION })
+    Flux<Map<String, Object>> findRecommendationCards(List<String> ids, int essayPreviewLength);
+}
@@ -2,7 +2,9 @@ package it.unipi.LoveMining.repository.mongo;
 
 import it.unipi.LoveMining.model.mongo.ReviewDocument;
 import org.springframework.data.mongodb.repository.Aggregation;
+import org.springframework.data.mongodb.repository.Meta;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.ReadPreference;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
@@ -16,6 +18,17 @@ public interface ReviewMongoRepository extends MongoRepository<ReviewDocument, S
 
     void deleteByTargetId(String targetId);
 
+    void deleteByTargetIdIn(java.util.Collection<String> targetIds);
+
+    // Average rating received by each of the given users (shared with ReactiveReviewMongoRepository)
+    String MATCH_TARGETS = "{ $match: { target_id: { $in: ?0 } } }";
+    String GROUP_AVERAGE_RATING = "{ $group: { _id: '$target_id', averageRating: { $avg: '$rating' } } }";
+    @Aggregation(pipeline = { MATCH_TARGETS, GROUP_AVERAGE_RATING })
+    List<Map<String, Object>> findAverageRatings(List<String> targetIds);
+
+    // Analytics (see UserMongoRepository.ANALYTICS_MAX_TIME_MS): on a secondary, with disk use and a time limit
+    @ReadPreference("secondaryPreferred")
+    @Meta(allowDiskUse = true, maxExecutionTimeMs = UserMongoRepository.ANALYTICS_MAX_TIME_MS)
     @Aggregation(pipeline = {
             // 1: GROUP by user
             // Sum ratings and count reviews for Recent (>= ?0) and Past (< ?0) periods.
@@ -7,56 +7,87 @@ import org.springframework.stereotype.Repository;
 import java.util.List;
 import java.util.Map;
 
+import it.unipi.LoveMining.model.dto.ProfileCard;
 import it.unipi.LoveMining.model.mongo.UserDocument;
 
 @Repository
 // Repository interface for User documents in MongoDB
-public interface UserMongoRepository extends MongoRepository<UserDocument, String> {
+public interface UserMongoRepository extends MongoRepository<UserDocument, String>, UserMongoRepositoryCustom {
+    // Login and identity lookups read from the primary: a user who just registered (or changed the
+    // password) must be found, whatever the default read preference of the client
+    @org.springframework.data.mongodb.repository.ReadPreference("primary")
     java.util.Optional<UserDocument> findByEmail(String email);
 
-    @org.springframework.data.mongodb.repository.Query("{ 'reviewsMade.targetId': ?0 }")
-    @org.springframework.data.mongodb.repository.Update("{ '$pull': { 'reviewsMade': { 'targetId': ?0 } } }")
-    void removeReviewReferences(String targetId);
-
-    // Analytics: Finds cities with the highest number of unhappy users
+    // Own profile of the user (read-modify-write of the updates, reviews): on the primary as well
+    @Override
+    @org.springframework.data.mongodb.repository.ReadPreference("primary")
+    java.util.Optional<UserDocument> findById(String id);
+
+    long countByIdIn(java.util.Collection<String> ids);
+
+    // Only the versions of the user (conditional GET without loading the document). On the primary:
+    // a stale version read from a secondary would answer 304 to the client that just wrote
+    @org.springframework.data.mongodb.repository.ReadPreference("primary")
+    @org.springframework.data.mongodb.repository.Query(value = "{ '_id': ?0 }",
+            fields = "{ 'version': 1, 'matches_generation': 1 }")
+    java.util.Optional<UserDocument> findVersionsById(String id);
+
+    @org.springframework.data.mongodb.repository.ReadPreference("primary")
+    @org.springframework.data.mongodb.repository.Query(value = "{ 'Email': ?0 }",
+            fields = "{ 'version': 1, 'matches_generation': 1 }")
+    java.util.Optional<UserDocument> findVersionsByEmail(String email);
+
+    @org.springframework.data.mongodb.repository.Query("{ '_id': { '$in': ?0 } }")
+    @org.springframework.data.mongodb.repository.Update("{ '$inc': { 'matches_generation': 1 } }")
+    void incrementMatchesGeneration(java.util.Collection<String> ids);
+
+    // Stages of the card pipelines, shared with ReactiveUserMongoRepository
+    String MATCH_IDS = "{ '$match': { '_id': { '$in': ?0 } } }";
+    String LOOKUP_DETAILS = "{ '$lookup': { 'from': 'profile_details', 'localField': '_id', 'foreignField': '_id', 'as': 'details' } }";
+
+    // Profile cards of many users in one '$in' query; body type, height and job come from the
+    // cold profile_details document (or from 'users' for the users not migrated yet)
+    String PROFILE_CARD_PROJECTION = "{ '$project': { 'age': 1, 'sex': 1, 'orientation': 1, 'status': 1, 'city': 1, 'state': 1, " +
+            "'bodyType': { '$ifNull': [ { '$arrayElemAt': ['$details.body_type', 0] }, '$body_type' ] }, " +
+            "'height': { '$ifNull': [ { '$arrayElemAt': ['$details.height', 0] }, '$height' ] }, " +
+            "'job': { '$ifNull': [ { '$arrayElemAt': ['$details.job', 0] }, '$job' ] } } }";
+    @Aggregation(pipeline = { MATCH_IDS, LOOKUP_DETAILS, PROFILE_CARD_PROJECTION })
+    List<ProfileCard> findByIdIn(java.util.Collection<String> ids);
+
+    // Users not migrated yet to profile_details (reviews still embedded)
+    @org.springframework.data.mongodb.repository.Query("{ 'reviewsMade.targetId': { '$in': ?0 } }")
+    @org.springframework.data.mongodb.repository.Update("{ '$pull': { 'reviewsMade': { 'targetId': { '$in': ?0 } } }, '$inc': { 'version': 1 } }")
+    void removeReviewReferences(java.util.Collection<String> targetIds);
+
+    @org.springframework.data.mongodb.repository.Query("{ '_id': { '$in': ?0 } }")
+    @org.springframework.data.mongodb.repository.Update("{ '$inc': { 'version': 1 } }")
+    void incrementVersion(java.util.Collection<String> ids);
+
+    // Data of the recommendation cards: only the needed fields and the first ?1 characters of the essay
+    // (the essay is in profile_details, or still in 'users' for the users not migrated yet)
+    String RECOMMENDATION_CARD_PROJECTION = "{ '$project': { 'age': 1, 'city': 1, 'interests': 1, " +
+            "'essayPreview': { '$substrCP': [ { '$ifNull': [ { '$ifNull': [ { '$arrayElemAt': ['$details.essay0', 0] }, " +
+            "'$essay0' ] }, '' ] }, 0, ?1 ] } } }";
+    @Aggregation(pipeline = { MATCH_IDS, LOOKUP_DETAILS, RECOMMENDATION_CARD_PROJECTION })
+    List<Map<String, Object>> findRecommendationCards(List<String> ids, int essayPreviewLength);
+
+    // Analytics aggregations (here and in the other repositories): read from a secondary when one is
+    // available, so they do not compete with the login traffic on the primary, may spill to disk and are
+    // stopped by the server after ANALYTICS_MAX_TIME_MS
+    long ANALYTICS_MAX_TIME_MS = 60_000;
+
+    // Number of users for each interest (document frequency for the IDF weights)
+    @org.springframework.data.mongodb.repository.ReadPreference("secondaryPreferred")
+    @org.springframework.data.mongodb.repository.Meta(allowDiskUse = true, maxExecutionTimeMs = ANALYTICS_MAX_TIME_MS)
     @Aggregation(pipeline = {
-            // 1. MATCH: Keep only users who have at least one review with a rating
-            "{ '$match': { 'reviews_made.rating': { '$gt': 0 } } }",
-
-            // 2. PROJECT: Calculate the average rating for each user
-            "{ '$project': { 'city': 1, 'userPersonalAvg': { '$avg': '$reviews_made.rating' } } }",
-
-            // 3. MATCH: Filter for "unhappy" users (average rating less than 3)
-            "{ '$match': { 'userPersonalAvg': { '$lt': 3 } } }",
-
-            // 4. GROUP: Group by City. Count total unhappy users and split by severity
-            "{ '$group': { " +
-                    "'_id': '$city', " +
-                    "'totalUnhappyUsers': { '$sum': 1 }, " +
-                    "'extremeHatersCount': { '$sum': { '$cond': [ { '$lt': ['$userPersonalAvg', 2] }, 1, 0 ] } }, " +
-                    "'moderateUnhappyCount': { '$sum': { '$cond': [ { '$gte': ['$userPersonalAvg', 2] }, 1, 0 ] } }, " +
-                    "'avgUnhappinessScore': { '$avg': '$userPersonalAvg' } } }",
-
-            // 5. PROJECT: Format output and round the score to 2 decimal places
-            "{ '$project': { " +
-                    "'totalUnhappyUsers': 1, " +
-                    "'extremeHatersCount': 1, " +
-                    "'moderateUnhappyCount': 1, " +
-                    "'avgUnhappinessScore': { '$round': ['$avgUnhappinessScore', 2] } } }",
-
-            // 6. SORT: Order by the highest number of unhappy users (descending)
-            "{ '$sort': { 'totalUnhappyUsers': -1 } }",
-
-            // 7. LIMIT: Return only the top 5 cities
-            "{ '$limit': 5 }"
+            "{ '$unwind': '$interests' }",
+            "{ '$group': { '_id': '$interests', 'count': { '$sum': 1 } } }"
     })
-    List<Map<String, Object>> findTopUnhappyCities();
-
-    default List<Map<String, Object>> findUnhappyCities() {
-        return findTopUnhappyCities();
-    }
+    List<Map<String, Object>> countUsersByInterest();
 
     // Analytics: Groups users into 3 age buckets and calculates the percentage of singles
+    @org.springframework.data.mongodb.repository.ReadPreference("secondaryPreferred")
+    @org.springframework.data.mongodb.repository.Meta(allowDiskUse = true, maxExecutionTimeMs = ANALYTICS_MAX_TIME_MS)
     @Aggregation(pipeline = {
             // 1. MATCH: Filter valid users with a known status
             "{ '$match': { 'status': { '$in': ['available', 'single', 'seeing someone', 'married'] } } }",
@@ -93,6 +124,8 @@ public interface UserMongoRepository extends MongoRepository<UserDocument, Strin
     }
 
     // Analytics: Categorizes users into Groups by Orientation + AgeGroup
+    @org.springframework.data.mongodb.repository.ReadPreference("secondaryPreferred")
+    @org.springframework.data.mongodb.repository.Meta(allowDiskUse = true, maxExecutionTimeMs = ANALYTICS_MAX_TIME_MS)
     @Aggregation(pipeline = {
             // 1. MATCH: Filter valid orientations
             "{ '$match': { 'orientation': { '$in': ['straight', 'gay', 'bisexual'] } } }",
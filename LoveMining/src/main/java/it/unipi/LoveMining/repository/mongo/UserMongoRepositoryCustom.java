@@ -0,0 +1,14 @@
+package it.unipi.LoveMining.repository.mongo;
+
+import java.util.Collection;
+import java.util.Optional;
+
+import it.unipi.LoveMining.model.mongo.UserDocument;
+
+// Custom fragment of UserMongoRepository: reads of a user restricted to some fields (Mongo projection)
+public interface UserMongoRepositoryCustom {
+
+    Optional<UserDocument> findProjectedById(String id, Collection<String> fields);
+
+    Optional<UserDocument> findProjectedByEmail(String email, Collection<String> fields);
+}
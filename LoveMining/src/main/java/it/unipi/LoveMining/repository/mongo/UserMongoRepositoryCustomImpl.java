@@ -0,0 +1,37 @@
+package it.unipi.LoveMining.repository.mongo;
+
+import java.util.Collection;
+import java.util.Optional;
+
+import com.mongodb.ReadPreference;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import it.unipi.LoveMining.model.mongo.UserDocument;
+import lombok.RequiredArgsConstructor;
+
+@RequiredArgsConstructor
+public class UserMongoRepositoryCustomImpl implements UserMongoRepositoryCustom {
+
+    private final MongoTemplate mongoTemplate;
+
+    // 'fields' are property names of UserDocument, mapped to the stored names (e.g. bodyType -> body_type).
+    // Own profile of the user: read from the primary, as UserMongoRepository.findById
+    @Override
+    public Optional<UserDocument> findProjectedById(String id, Collection<String> fields) {
+        return findOne(Criteria.where("_id").is(id), fields);
+    }
+
+    @Override
+    public Optional<UserDocument> findProjectedByEmail(String email, Collection<String> fields) {
+        return findOne(Criteria.where("email").is(email), fields);
+    }
+
+    private Optional<UserDocument> findOne(Criteria criteria, Collection<String> fields) {
+        Query query = new Query(criteria);
+        query.fields().include(fields.toArray(new String[0]));
+        query.withReadPreference(ReadPreference.primary());
+        return Optional.ofNullable(mongoTemplate.findOne(query, UserDocument.class));
+    }
+}
@@ -1,12 +1,24 @@
 package it.unipi.LoveMining.repository.neo4j;
 
 import org.springframework.data.neo4j.repository.Neo4jRepository;
+import org.springframework.data.neo4j.repository.query.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import it.unipi.LoveMining.model.neo4j.CityNode;
 
+import java.util.List;
+
 @Repository
 // Repository interface for City nodes in Neo4j
 public interface CityNeo4jRepository extends Neo4jRepository<CityNode, String> {
 
+    // Loads the coordinates of cities.csv on the existing City nodes (names[i] -> latitudes[i], longitudes[i])
+    @Query("UNWIND range(0, size($names) - 1) AS i " +
+            "MATCH (c:City {name: $names[i]}) " +
+            "SET c.latitude = $latitudes[i], c.longitude = $longitudes[i], " +
+            "    c.location = point({latitude: $latitudes[i], longitude: $longitudes[i]}) " +
+            "RETURN count(c)")
+    Long updateCoordinates(@Param("names") List<String> names, @Param("latitudes") List<Double> latitudes,
+                           @Param("longitudes") List<Double> longitudes);
 }
@@ -0,0 +1,50 @@
+package it.unipi.LoveMining.repository.neo4j;
+
+import it.unipi.LoveMining.model.neo4j.UserNode;
+import org.springframework.data.neo4j.repository.ReactiveNeo4jRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+@Repository
+// Reactive repository for User nodes in Neo4j (/api/reactive endpoints), same Cypher of UserNeo4jRepository.
+// The records are pulled from the server as the subscriber requests them.
+public interface ReactiveUserNeo4jRepository extends ReactiveNeo4jRepository<UserNode, String> {
+
+        @org.springframework.data.neo4j.repository.query.Query(UserNeo4jRepository.HAS_LIKED)
+        Mono<Boolean> hasLiked(String fromId, String toId);
+
+        @org.springframework.data.neo4j.repository.query.Query(UserNeo4jRepository.ARE_MATCHED)
+        Mono<Boolean> areMatched(String userId, String targetId);
+
+        @org.springframework.data.neo4j.repository.query.Query(UserNeo4jRepository.CREATE_LIKE)
+        Mono<Long> createLikeRelationship(String actorId, String targetId);
+
+        @org.springframework.data.neo4j.repository.query.Query(UserNeo4jRepository.CREATE_DISLIKE)
+        Mono<Long> createDislikeRelationship(String actorId, String targetId);
+
+        @org.springframework.data.neo4j.repository.query.Query(UserNeo4jRepository.TRANSFORM_LIKE_TO_MATCH)
+        Mono<Long> transformLikeToMatch(String actorId, String targetId);
+
+        @org.springframework.data.neo4j.repository.query.Query(UserNeo4jRepository.FIND_RECOMMENDATIONS)
+        Flux<String> findRecommendations(@Param("userId") String userId, @Param("filter") String filter,
+                        @Param("minAge") int minAge, @Param("maxAge") int maxAge,
+                        @Param("excludedIds") List<String> excludedIds);
+
+        @org.springframework.data.neo4j.repository.query.Query(UserNeo4jRepository.FIND_RECOMMENDATION_CANDIDATES)
+        Flux<java.util.Map<String, Object>> findRecommendationCandidates(@Param("userId") String userId,
+                        @Param("filter") String filter, @Param("minAge") int minAge, @Param("maxAge") int maxAge,
+                        @Param("excludedIds") List<String> excludedIds, @Param("limit") int limit);
+
+        @org.springframework.data.neo4j.repository.query.Query(UserNeo4jRepository.FIND_RECOMMENDATION_CANDIDATES_AMONG)
+        Flux<java.util.Map<String, Object>> findRecommendationCandidatesAmong(@Param("userId") String userId,
+                        @Param("filter") String filter, @Param("minAge") int minAge, @Param("maxAge") int maxAge,
+                        @Param("excludedIds") List<String> excludedIds, @Param("ids") List<String> ids);
+
+        // Every match, most recent first: the rows are streamed, not read as a page
+        @org.springframework.data.neo4j.repository.query.Query(UserNeo4jRepository.MATCHES_BY_DATE)
+        Flux<java.util.Map<String, Object>> findMatches(@Param("id") String id);
+}
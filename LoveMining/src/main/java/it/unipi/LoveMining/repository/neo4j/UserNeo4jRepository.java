@@ -11,6 +11,19 @@ import java.util.List;
 // Repository interface for User nodes in Neo4j
 public interface UserNeo4jRepository extends Neo4jRepository<UserNode, String> {
 
+        // Registration: creates the User node with LIVES_IN (City -> State) and HAS_INTEREST in one statement
+        @org.springframework.data.neo4j.repository.query.Query("CREATE (u:User {_id: $id, age: $age, sex: $sex, " +
+                "orientation: $orientation, interestBits: $interestBits}) " +
+                "MERGE (s:State {name: $stateName}) " +
+                "MERGE (c:City {name: $cityName}) " +
+                "MERGE (c)-[:LOCATED_IN]->(s) " +
+                "MERGE (u)-[:LIVES_IN]->(c) " +
+                "FOREACH (name IN $interestNames | " +
+                "MERGE (i:Interest {name: name}) " +
+                "MERGE (u)-[:HAS_INTEREST]->(i))")
+        void createUser(String id, Integer age, String sex, String orientation, long[] interestBits,
+                        String cityName, String stateName, java.util.List<String> interestNames);
+
         @org.springframework.data.neo4j.repository.query.Query("MATCH (u:User {_id: $id}) SET u.age = $age, u.sex = $sex, u.orientation = $orientation")
         void updateBasicProfile(String id, Integer age, String sex, String orientation);
 
@@ -25,41 +38,99 @@ public interface UserNeo4jRepository extends Neo4jRepository<UserNode, String> {
         void updateLocation(String id, String cityName, String stateName);
 
         @org.springframework.data.neo4j.repository.query.Query("MATCH (u:User {_id: $id}) " +
+                "SET u.interestBits = $interestBits " +
+                "WITH u " +
                 "OPTIONAL MATCH (u)-[r:HAS_INTEREST]->() DELETE r " +
                 "FOREACH (name IN $interestNames | " +
                 "MERGE (i:Interest {name: name}) " +
                 "MERGE (u)-[:HAS_INTEREST]->(i))")
-        void updateInterests(String id, java.util.List<String> interestNames);
+        void updateInterests(String id, java.util.List<String> interestNames, long[] interestBits);
+
+        // Backfill of the interest bitsets (ids[i] -> bits[i])
+        @org.springframework.data.neo4j.repository.query.Query("UNWIND range(0, size($ids) - 1) AS i " +
+                "MATCH (u:User {_id: $ids[i]}) " +
+                "SET u.interestBits = $bits[i]")
+        void updateInterestBits(@Param("ids") List<String> ids, @Param("bits") List<List<Long>> bits);
+
+        // Reconciler: page of users ordered by _id with the fields synced from MongoDB
+        @org.springframework.data.neo4j.repository.query.Query("MATCH (u:User) WHERE u._id > $after " +
+                "WITH u ORDER BY u._id LIMIT $limit " +
+                "OPTIONAL MATCH (u)-[:LIVES_IN]->(c:City) " +
+                "OPTIONAL MATCH (c)-[:LOCATED_IN]->(s:State) " +
+                "WITH u, head(collect(c.name)) AS city, head(collect(s.name)) AS state " +
+                "OPTIONAL MATCH (u)-[:HAS_INTEREST]->(i:Interest) " +
+                "WITH u, city, state, collect(i.name) AS interests " +
+                "RETURN { id: u._id, age: u.age, sex: u.sex, orientation: u.orientation, city: city, state: state, " +
+                "interests: interests, interestBits: u.interestBits } " +
+                "ORDER BY u._id")
+        List<java.util.Map<String, Object>> findSyncedFieldsPage(@Param("after") String after, @Param("limit") int limit);
+
+        // Reconciler: (re)writes the users from their MongoDB values, missing nodes are created
+        @org.springframework.data.neo4j.repository.query.Query("UNWIND $rows AS row " +
+                "MERGE (u:User {_id: row.id}) " +
+                "SET u.age = row.age, u.sex = row.sex, u.orientation = row.orientation, u.interestBits = row.interestBits " +
+                "WITH u, row " +
+                "OPTIONAL MATCH (u)-[r:LIVES_IN|HAS_INTEREST]->() DELETE r " +
+                "WITH DISTINCT u, row " +
+                "FOREACH (ignored IN CASE WHEN row.city IS NOT NULL AND row.state IS NOT NULL THEN [1] ELSE [] END | " +
+                "MERGE (s:State {name: row.state}) " +
+                "MERGE (c:City {name: row.city}) " +
+                "MERGE (c)-[:LOCATED_IN]->(s) " +
+                "MERGE (u)-[:LIVES_IN]->(c)) " +
+                "FOREACH (name IN coalesce(row.interests, []) | " +
+                "MERGE (i:Interest {name: name}) " +
+                "MERGE (u)-[:HAS_INTEREST]->(i))")
+        void upsertSyncedFields(@Param("rows") List<java.util.Map<String, Object>> rows);
+
+        // Swipe and recommendation queries, shared with ReactiveUserNeo4jRepository
 
         // Check if User 'from' likes 'to'
-        @org.springframework.data.neo4j.repository.query.Query("MATCH (a:User {_id: $fromId})-[r:LIKES]->(b:User {_id: $toId}) RETURN count(r) > 0")
+        String HAS_LIKED = "MATCH (a:User {_id: $fromId})-[r:LIKES]->(b:User {_id: $toId}) RETURN count(r) > 0";
+        @org.springframework.data.neo4j.repository.query.Query(HAS_LIKED)
         boolean hasLiked(String fromId, String toId);
 
         // Check if Matched
-        @org.springframework.data.neo4j.repository.query.Query("MATCH (a:User {_id: $userId})-[:MATCHED]-(b:User {_id: $targetId}) RETURN count(b) > 0")
+        String ARE_MATCHED = "MATCH (a:User {_id: $userId})-[:MATCHED]-(b:User {_id: $targetId}) RETURN count(b) > 0";
+        @org.springframework.data.neo4j.repository.query.Query(ARE_MATCHED)
         boolean areMatched(String userId, String targetId);
 
         // Create LIKES (A -> B)
-        @org.springframework.data.neo4j.repository.query.Query("MATCH (a:User {_id: $actorId}) " +
+        String CREATE_LIKE = "MATCH (a:User {_id: $actorId}) " +
                 "MATCH (b:User {_id: $targetId}) " +
                 "MERGE (a)-[r:LIKES]->(b) " +
-                "RETURN count(r)")
+                "RETURN count(r)";
+        @org.springframework.data.neo4j.repository.query.Query(CREATE_LIKE)
         Long createLikeRelationship(String actorId, String targetId);
 
         // Create DISLIKES (A -> B)
-        @org.springframework.data.neo4j.repository.query.Query("MATCH (a:User {_id: $actorId}) " +
+        String CREATE_DISLIKE = "MATCH (a:User {_id: $actorId}) " +
                 "MATCH (b:User {_id: $targetId}) " +
                 "MERGE (a)-[r:DISLIKES]->(b) " +
-                "RETURN count(r)")
+                "RETURN count(r)";
+        @org.springframework.data.neo4j.repository.query.Query(CREATE_DISLIKE)
         Long createDislikeRelationship(String actorId, String targetId);
 
+        // Reads a batch of DISLIKES edges to move to the off-graph store
+        @org.springframework.data.neo4j.repository.query.Query("MATCH (a:User)-[:DISLIKES]->(b:User) " +
+                "RETURN { actorId: a._id, targetId: b._id } " +
+                "LIMIT $batchSize")
+        List<java.util.Map<String, Object>> findDislikeBatch(@Param("batchSize") int batchSize);
+
+        // Deletes the DISLIKES edges (actorIds[i] -> targetIds[i]) already copied to the off-graph store
+        @org.springframework.data.neo4j.repository.query.Query("UNWIND range(0, size($actorIds) - 1) AS i " +
+                "MATCH (a:User {_id: $actorIds[i]})-[r:DISLIKES]->(b:User {_id: $targetIds[i]}) " +
+                "DELETE r")
+        void deleteDislikes(@Param("actorIds") List<String> actorIds, @Param("targetIds") List<String> targetIds);
+
         // Cancel LIKE of 'target' to 'actor' and create MATCHED
-        @org.springframework.data.neo4j.repository.query.Query("MATCH (a:User {_id: $actorId}) " +
+        String TRANSFORM_LIKE_TO_MATCH = "MATCH (a:User {_id: $actorId}) " +
                 "MATCH (b:User {_id: $targetId}) " +
                 "OPTIONAL MATCH (a)-[r:LIKES]-(b) " +
                 "DELETE r " +
                 "MERGE (a)-[m:MATCHED]-(b) " +
-                "RETURN count(m)")
+                "ON CREATE SET m.matchedAt = datetime() " +
+                "RETURN count(m)";
+        @org.springframework.data.neo4j.repository.query.Query(TRANSFORM_LIKE_TO_MATCH)
         Long transformLikeToMatch(String actorId, String targetId);
 
         /*
@@ -70,7 +141,7 @@ public interface UserNeo4jRepository extends Neo4jRepository<UserNode, String> {
          * - Age range
          * - Ordered by common interests
          */
-        @org.springframework.data.neo4j.repository.query.Query(
+        String FIND_RECOMMENDATIONS =
                         "MATCH (me:User {_id: $userId}) " +
                         "MATCH (me)-[:LIVES_IN]->(myCity:City)-[:LOCATED_IN]->(myState:State) " +
                         "MATCH (candidate:User)-[:LIVES_IN]->(candCity:City)-[:LOCATED_IN]->(candState:State) " +
@@ -79,6 +150,9 @@ public interface UserNeo4jRepository extends Neo4jRepository<UserNode, String> {
                         // Constraint: No existing relationship between me and candidate
                         "AND NOT (me)-[:LIKES|DISLIKES|MATCHED]-(candidate) " +
 
+                        // Constraint: No dislike kept in the off-graph store (empty list when DISLIKES are in the graph)
+                        "AND NOT candidate._id IN $excludedIds " +
+
                         // Constraint: Age Range
                         "AND candidate.age >= $minAge AND candidate.age <= $maxAge " +
 
@@ -109,9 +183,133 @@ public interface UserNeo4jRepository extends Neo4jRepository<UserNode, String> {
                         // Return the top 10 candidates sorted by common interests
                         "RETURN candidate._id " +
                         "ORDER BY commonInterests DESC " +
-                        "LIMIT 10")
+                        "LIMIT 10";
+        @org.springframework.data.neo4j.repository.query.Query(FIND_RECOMMENDATIONS)
         List<String> findRecommendations(@Param("userId") String userId, @Param("filter") String filter,
-                        @Param("minAge") int minAge, @Param("maxAge") int maxAge);
+                        @Param("minAge") int minAge, @Param("maxAge") int maxAge,
+                        @Param("excludedIds") List<String> excludedIds);
+
+        /*
+         * Same filters of findRecommendations, without the ranking: returns the candidates with their
+         * interest bitset, so that the IDF-weighted overlap is computed in memory instead of traversing
+         * the Interest supernodes. $limit bounds the rows read for very large States: the cut is by _id, so
+         * it is deterministic and never touches the Interest nodes. Below $limit the ranking is exact; above
+         * it, the candidates with the highest _ids are left out of the ranking.
+         */
+        String FIND_RECOMMENDATION_CANDIDATES =
+                        "MATCH (me:User {_id: $userId}) " +
+                        "MATCH (me)-[:LIVES_IN]->(myCity:City)-[:LOCATED_IN]->(myState:State) " +
+                        "MATCH (candidate:User)-[:LIVES_IN]->(candCity:City)-[:LOCATED_IN]->(candState:State) " +
+                        "WHERE me._id <> candidate._id " +
+                        "AND NOT (me)-[:LIKES|DISLIKES|MATCHED]-(candidate) " +
+                        "AND NOT candidate._id IN $excludedIds " +
+                        "AND candidate.age >= $minAge AND candidate.age <= $maxAge " +
+                        "AND ( " +
+                        "  ($filter = 'City' AND myCity = candCity) OR " +
+                        "  ($filter = 'State' AND myState = candState) " +
+                        ") " +
+                        "AND ( " +
+                        "  (me.orientation = 'straight' AND candidate.orientation = 'straight' AND me.sex <> candidate.sex) OR " +
+                        "  (me.orientation = 'straight' AND candidate.orientation = 'bisexual' AND me.sex <> candidate.sex) OR " +
+                        "  (me.orientation = 'gay' AND candidate.orientation = 'gay' AND me.sex = candidate.sex) OR " +
+                        "  (me.orientation = 'gay' AND candidate.orientation = 'bisexual' AND me.sex = candidate.sex) OR " +
+                        "  (me.orientation = 'bisexual' AND candidate.orientation = 'gay' AND me.sex = candidate.sex) OR" +
+                        "  (me.orientation = 'bisexual' AND candidate.orientation = 'straight' AND me.sex <> candidate.sex) OR " +
+                        "  (me.orientation = 'bisexual' AND candidate.orientation = 'bisexual')" +
+                        ") " +
+                        "WITH candidate " +
+                        "ORDER BY candidate._id " +
+                        "LIMIT $limit " +
+                        "RETURN { id: candidate._id, interestBits: candidate.interestBits }";
+        @org.springframework.data.neo4j.repository.query.Query(FIND_RECOMMENDATION_CANDIDATES)
+        List<java.util.Map<String, Object>> findRecommendationCandidates(@Param("userId") String userId,
+                        @Param("filter") String filter, @Param("minAge") int minAge, @Param("maxAge") int maxAge,
+                        @Param("excludedIds") List<String> excludedIds, @Param("limit") int limit);
+
+        /*
+         * Same filters of findRecommendationCandidates, on the given users only (the co-like neighbours
+         * of the user, which can be beyond the $limit cut): they are read by _id, not from the State.
+         */
+        String FIND_RECOMMENDATION_CANDIDATES_AMONG =
+                        "MATCH (me:User {_id: $userId}) " +
+                        "MATCH (me)-[:LIVES_IN]->(myCity:City)-[:LOCATED_IN]->(myState:State) " +
+                        "MATCH (candidate:User) WHERE candidate._id IN $ids " +
+                        "MATCH (candidate)-[:LIVES_IN]->(candCity:City)-[:LOCATED_IN]->(candState:State) " +
+                        "WHERE me._id <> candidate._id " +
+                        "AND NOT (me)-[:LIKES|DISLIKES|MATCHED]-(candidate) " +
+                        "AND NOT candidate._id IN $excludedIds " +
+                        "AND candidate.age >= $minAge AND candidate.age <= $maxAge " +
+                        "AND ( " +
+                        "  ($filter = 'City' AND myCity = candCity) OR " +
+                        "  ($filter = 'State' AND myState = candState) " +
+                        ") " +
+                        "AND ( " +
+                        "  (me.orientation = 'straight' AND candidate.orientation = 'straight' AND me.sex <> candidate.sex) OR " +
+                        "  (me.orientation = 'straight' AND candidate.orientation = 'bisexual' AND me.sex <> candidate.sex) OR " +
+                        "  (me.orientation = 'gay' AND candidate.orientation = 'gay' AND me.sex = candidate.sex) OR " +
+                        "  (me.orientation = 'gay' AND candidate.orientation = 'bisexual' AND me.sex = candidate.sex) OR " +
+                        "  (me.orientation = 'bisexual' AND candidate.orientation = 'gay' AND me.sex = candidate.sex) OR" +
+                        "  (me.orientation = 'bisexual' AND candidate.orientation = 'straight' AND me.sex <> candidate.sex) OR " +
+                        "  (me.orientation = 'bisexual' AND candidate.orientation = 'bisexual')" +
+                        ") " +
+                        "RETURN { id: candidate._id, interestBits: candidate.interestBits }";
+        @org.springframework.data.neo4j.repository.query.Query(FIND_RECOMMENDATION_CANDIDATES_AMONG)
+        List<java.util.Map<String, Object>> findRecommendationCandidatesAmong(@Param("userId") String userId,
+                        @Param("filter") String filter, @Param("minAge") int minAge, @Param("maxAge") int maxAge,
+                        @Param("excludedIds") List<String> excludedIds, @Param("ids") List<String> ids);
+
+        /*
+         * Same rules of findRecommendations, but the candidates are searched only in the given cities
+         * (a band of the 'Radius' filter, nearest cities first). Starting from the City nodes avoids
+         * scanning every User of the State.
+         */
+        @org.springframework.data.neo4j.repository.query.Query(
+                        "MATCH (me:User {_id: $userId}) " +
+                        "MATCH (candCity:City) WHERE candCity.name IN $cityNames " +
+                        "MATCH (candidate:User)-[:LIVES_IN]->(candCity) " +
+                        "WHERE me._id <> candidate._id " +
+                        "AND NOT (me)-[:LIKES|DISLIKES|MATCHED]-(candidate) " +
+                        "AND NOT candidate._id IN $excludedIds " +
+                        "AND candidate.age >= $minAge AND candidate.age <= $maxAge " +
+                        "AND ( " +
+                        "  (me.orientation = 'straight' AND candidate.orientation = 'straight' AND me.sex <> candidate.sex) OR " +
+                        "  (me.orientation = 'straight' AND candidate.orientation = 'bisexual' AND me.sex <> candidate.sex) OR " +
+                        "  (me.orientation = 'gay' AND candidate.orientation = 'gay' AND me.sex = candidate.sex) OR " +
+                        "  (me.orientation = 'gay' AND candidate.orientation = 'bisexual' AND me.sex = candidate.sex) OR " +
+                        "  (me.orientation = 'bisexual' AND candidate.orientation = 'gay' AND me.sex = candidate.sex) OR" +
+                        "  (me.orientation = 'bisexual' AND candidate.orientation = 'straight' AND me.sex <> candidate.sex) OR " +
+                        "  (me.orientation = 'bisexual' AND candidate.orientation = 'bisexual')" +
+                        ") " +
+                        "WITH me, candidate " +
+                        "OPTIONAL MATCH (me)-[:HAS_INTEREST]->(i:Interest)<-[:HAS_INTEREST]-(candidate) " +
+                        "WITH candidate, count(i) AS commonInterests " +
+                        "RETURN candidate._id " +
+                        "ORDER BY commonInterests DESC " +
+                        "LIMIT $limit")
+        List<String> findRecommendationsInCities(@Param("userId") String userId,
+                        @Param("cityNames") List<String> cityNames,
+                        @Param("minAge") int minAge, @Param("maxAge") int maxAge,
+                        @Param("excludedIds") List<String> excludedIds, @Param("limit") int limit);
+
+        // Users liked (outgoing LIKES) or matched by the user
+        @org.springframework.data.neo4j.repository.query.Query("MATCH (me:User {_id: $userId})-[r:LIKES|MATCHED]-(o:User) " +
+                "WHERE type(r) = 'MATCHED' OR startNode(r) = me " +
+                "RETURN DISTINCT o._id")
+        List<String> findLikedOrMatchedIds(@Param("userId") String userId);
+
+        // Users with any relationship with the user (excluded from the recommendations)
+        @org.springframework.data.neo4j.repository.query.Query("MATCH (me:User {_id: $userId})-[:LIKES|DISLIKES|MATCHED]-(o:User) " +
+                "RETURN DISTINCT o._id")
+        List<String> findRelatedIds(@Param("userId") String userId);
+
+        // Batch of users (ordered by _id, after $after) with the ids they liked or matched
+        @org.springframework.data.neo4j.repository.query.Query("MATCH (a:User) WHERE a._id > $after " +
+                "WITH a ORDER BY a._id LIMIT $batchSize " +
+                "OPTIONAL MATCH (a)-[r:LIKES|MATCHED]-(b:User) " +
+                "WHERE type(r) = 'MATCHED' OR startNode(r) = a " +
+                "RETURN { id: a._id, liked: collect(b._id) }")
+        List<java.util.Map<String, Object>> findSwipeNeighbourhoods(@Param("after") String after,
+                        @Param("batchSize") int batchSize);
 
         /*
          * ANALYTIC: Love Points (input: State)
@@ -150,7 +348,29 @@ public interface UserNeo4jRepository extends Neo4jRepository<UserNode, String> {
                         "ORDER BY loveRatio DESC")
         List<java.util.Map<String, Object>> getLovePointsAnalytic(@Param("stateName") String stateName);
 
+        // Matches, most recent first (matches without timestamp last)
+        String MATCHES_BY_DATE = "MATCH (u:User {_id: $id})-[r:MATCHED]-(m:User) " +
+                "RETURN { userId: m._id, matchedAt: r.matchedAt } " +
+                "ORDER BY r.matchedAt IS NULL, r.matchedAt DESC, m._id ";
+
+        // Page of matches
+        @org.springframework.data.neo4j.repository.query.Query(MATCHES_BY_DATE + "SKIP $skip LIMIT $limit")
+        List<java.util.Map<String, Object>> findMatchesPage(@Param("id") String id, @Param("skip") long skip,
+                        @Param("limit") int limit);
+
         @org.springframework.data.neo4j.repository.query.Query("MATCH (u:User {_id: $id})-[:MATCHED]-(m:User) RETURN m")
         java.util.List<it.unipi.LoveMining.model.neo4j.UserNode> findMatches(@Param("id") String id);
 
+        @org.springframework.data.neo4j.repository.query.Query("MATCH (u:User {_id: $id})-[:MATCHED]-(m:User) RETURN m._id")
+        List<String> findMatchedIds(@Param("id") String id);
+
+        // Purge: deletes at most $limit relationships of the user (bounded transaction), returns how many
+        @org.springframework.data.neo4j.repository.query.Query("MATCH (u:User {_id: $id})-[r]-() " +
+                "WITH r LIMIT $limit DELETE r RETURN count(r)")
+        long deleteRelationshipsChunk(@Param("id") String id, @Param("limit") int limit);
+
+        // Purge: deletes the node once its relationships are gone
+        @org.springframework.data.neo4j.repository.query.Query("MATCH (u:User {_id: $id}) DETACH DELETE u")
+        void deleteUserNode(@Param("id") String id);
+
 }
@@ -4,13 +4,22 @@ import org.springframework.stereotype.Service;
 import lombok.RequiredArgsConstructor;
 
 import it.unipi.LoveMining.repository.mongo.UserMongoRepository;
+import it.unipi.LoveMining.repository.mongo.ProfileDetailsMongoRepository;
 import it.unipi.LoveMining.repository.mongo.ReviewMongoRepository;
+import it.unipi.LoveMining.repository.neo4j.CityNeo4jRepository;
 import it.unipi.LoveMining.repository.neo4j.UserNeo4jRepository;
 import it.unipi.LoveMining.model.mongo.UserDocument;
+import it.unipi.LoveMining.model.mongo.PurgeJobDocument;
 import it.unipi.LoveMining.model.mongo.ReviewDocument;
+import it.unipi.LoveMining.service.user.CoLikeService;
+import it.unipi.LoveMining.service.user.DislikeStoreService;
+import it.unipi.LoveMining.service.user.InterestWeightService;
+import it.unipi.LoveMining.service.user.ProfileDetailsService;
+import it.unipi.LoveMining.service.user.SimilarUsersService;
+import it.unipi.LoveMining.service.utility.CityGridIndexService;
+import java.util.ArrayList;
 import java.util.Map;
 import java.util.List;
-import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -20,57 +29,121 @@ public class AdminService {
     private final UserMongoRepository userMongoRepository;
     private final UserNeo4jRepository userNeo4jRepository;
     private final ReviewMongoRepository reviewMongoRepository;
-
-    // Deletes a user by ID from both MongoDB (with associated reviews) and Neo4j
+    private final DislikeStoreService dislikeStoreService;
+    private final CityNeo4jRepository cityNeo4jRepository;
+    private final CityGridIndexService cityGridIndexService;
+    private final InterestWeightService interestWeightService;
+    private final SimilarUsersService similarUsersService;
+    private final CoLikeService coLikeService;
+    private final UserPurgeService userPurgeService;
+    private final ConsistencyReconcilerService consistencyReconcilerService;
+    private final ProfileDetailsService profileDetailsService;
+    private final ProfileDetailsMongoRepository profileDetailsMongoRepository;
+
+    // Deletes a user by ID from both MongoDB (with associated reviews) and Neo4j,
+    // with the steps of the purge jobs (graph relationships in bounded chunks)
     public void deleteUser(String id) {
-
-        UserDocument user = userMongoRepository.findById(id) // Retrieve the user
-                .orElseThrow(() -> new IllegalArgumentException("User not found with ID: " + id));
-
-        // Delete form neo4j first
+        if (!userMongoRepository.existsById(id)) {
+            throw new IllegalArgumentException("User not found with ID: " + id);
+        }
         try {
-            if (userNeo4jRepository.existsById(id)) {
-                userNeo4jRepository.deleteById(id);
-            }
+            long relationships = userPurgeService.purgeNow(id);
+            System.out.println("User successfully deleted from both databases: " + id
+                    + " (" + relationships + " relationships)");
         } catch (Exception e) {
-            System.err.println("Could not delete node from Neo4j.");
-            throw new RuntimeException("Deletion failed: Graph Database is unavailable.");
+            System.err.println("Could not delete user " + id + ": " + e.getMessage());
+            throw new RuntimeException("Deletion failed: " + e.getMessage());
+        }
+    }
+
+    // Asynchronous purge of many users
+    public PurgeJobDocument submitPurge(List<String> userIds) {
+        return userPurgeService.submit(userIds);
+    }
+
+    public PurgeJobDocument getPurgeJob(String jobId) {
+        return userPurgeService.getJob(jobId);
+    }
+
+    public PurgeJobDocument resumePurge(String jobId) {
+        return userPurgeService.resume(jobId);
+    }
+
+    // Compares the MongoDB users with the Neo4j User nodes (and repairs the drift if asked)
+    public Map<String, Object> reconcileUsers(boolean repair) throws InterruptedException {
+        return consistencyReconcilerService.reconcile(repair);
+    }
+
+    public Map<String, Object> getLastReconcileReport() {
+        return consistencyReconcilerService.getLastReport();
+    }
+
+    // Moves the DISLIKES edges from Neo4j to the off-graph store
+    public long migrateDislikes(int batchSize) {
+        if (!dislikeStoreService.isOffGraph()) {
+            throw new IllegalStateException("Off-graph dislikes store is disabled (lovemining.dislikes.store=graph).");
+        }
+        if (batchSize < 1 || batchSize > 50000) {
+            throw new IllegalArgumentException("Batch size must be between 1 and 50000.");
         }
+        return dislikeStoreService.migrateFromGraph(batchSize);
+    }
 
-        // Delete from MongoDB
-        // 1. Delete Reviews MADE by the user
-        if (user.getReviewsMade() != null && !user.getReviewsMade().isEmpty()) {
-            try {
-                // Extract the list of Review IDs from the user's summary list
-                List<String> reviewIdsToDelete = user.getReviewsMade().stream()
-                        .map(UserDocument.ReviewSummary::getReviewId).collect(Collectors.toList());
-
-                // Delete all these reviews from the Review Collection in one go
-                if (!reviewIdsToDelete.isEmpty()) {
-                    reviewMongoRepository.deleteAllById(reviewIdsToDelete);
-                }
-            } catch (Exception e) {
-                System.err.println("Warning: Failed to delete some reviews made by user: " + e.getMessage());
-            }
+    // Moves the cold profile fields (essay, descriptive fields, reviews) to profile_details
+    public long migrateProfileDetails(int batchSize) {
+        if (batchSize < 1 || batchSize > 50000) {
+            throw new IllegalArgumentException("Batch size must be between 1 and 50000.");
         }
+        return profileDetailsService.migrate(batchSize);
+    }
 
-        // 2. Delete Reviews RECEIVED by the user (and update references)
-        try {
-            reviewMongoRepository.deleteByTargetId(id);
-            // Remove references from authors' "reviewsMade" lists
-            userMongoRepository.removeReviewReferences(id);
-        } catch (Exception e) {
-            System.err.println("Warning: Failed to clean up received reviews: " + e.getMessage());
+    // Loads the coordinates of the reference file cities.csv on the City nodes
+    public long loadCityCoordinates() {
+        List<String> names = new ArrayList<>();
+        List<Double> latitudes = new ArrayList<>();
+        List<Double> longitudes = new ArrayList<>();
+        for (CityGridIndexService.City city : cityGridIndexService.getAllCities()) {
+            names.add(city.name());
+            latitudes.add(city.latitude());
+            longitudes.add(city.longitude());
+        }
+        if (names.isEmpty()) {
+            return 0;
+        }
+        return cityNeo4jRepository.updateCoordinates(names, latitudes, longitudes);
+    }
+
+    // Writes the interest bitsets of the existing users and refreshes the IDF weights
+    public long backfillInterestBits(int batchSize) {
+        if (batchSize < 1 || batchSize > 50000) {
+            throw new IllegalArgumentException("Batch size must be between 1 and 50000.");
+        }
+        long updated = interestWeightService.backfillBitsets(batchSize);
+        interestWeightService.refreshWeights();
+        return updated;
+    }
+
+    // Builds the "similar users" embeddings and HNSW index
+    public int rebuildSimilarUsersIndex() {
+        return similarUsersService.rebuild();
+    }
+
+    // Recall and latency of the HNSW search against the exact ranking
+    public Map<String, Object> evaluateSimilarUsersIndex(int samples, int k) {
+        if (samples < 1 || k < 1 || k > 100) {
+            throw new IllegalArgumentException("Samples must be positive and k between 1 and 100.");
         }
+        return similarUsersService.evaluate(samples, k);
+    }
 
-        // 3. Delete the User Document
-        userMongoRepository.deleteById(id);
-        System.out.println("User successfully deleted from both databases: " + id);
+    // Rebuilds the co-like (collaborative filtering) model
+    public int rebuildCoLikeModel() throws Exception {
+        return coLikeService.rebuild();
     }
 
     // Retrieves a user by their ID from MongoDB
     public UserDocument getUserById(String id) {
-        return userMongoRepository.findById(id).orElse(null);
+        return profileDetailsService.withDetails(userMongoRepository.findById(id).orElse(null));
     }
 
     // Retrieves a review by its ID from MongoDB
@@ -90,7 +163,7 @@ public class AdminService {
 
     //Analytics: Unhappy Cities
     public List<Map<String, Object>> getUnhappyCities() {
-        return userMongoRepository.findUnhappyCities();
+        return profileDetailsMongoRepository.findTopUnhappyCities();
     }
 
     // Analytics: Status by Age Group
@@ -0,0 +1,139 @@
+package it.unipi.LoveMining.service.admin;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import it.unipi.LoveMining.model.dto.AnalyticsJob;
+import it.unipi.LoveMining.service.utility.VersionService;
+import lombok.RequiredArgsConstructor;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Service
+@RequiredArgsConstructor
+// Service class for the analytics jobs: the aggregations run on the small low-priority analytics executor
+// instead of the request threads (at most pool-size connections of each database pool), identical requests
+// share the computation in flight and the results are cached for a TTL
+public class AnalyticsJobService {
+
+    private final AdminService adminService;
+    private final VersionService versionService;
+    private final MeterRegistry meterRegistry;
+
+    @Qualifier("analyticsExecutor")
+    private final AsyncTaskExecutor analyticsExecutor;
+
+    // How long a result is served without computing it again
+    @Value("${lovemining.analytics.cache-ttl-ms:300000}")
+    private long cacheTtlMs;
+
+    public static final Set<String> ANALYTICS = Set.of("love-points", "glow-up", "unhappy-cities",
+            "status-by-age-group", "orientation-by-age-group");
+
+    // Last job of every parameter set: in flight, or completed and cached until the TTL
+    private final Map<String, AnalyticsJob> jobsByKey = new ConcurrentHashMap<>();
+    // Jobs that can be polled (evicted with the TTL)
+    private final Map<String, AnalyticsJob> jobsById = new ConcurrentHashMap<>();
+
+    // Returns the job computing the analytic: the one in flight or cached for the same parameters,
+    // otherwise a new job queued on the analytics executor (TaskRejectedException when the queue is full)
+    public AnalyticsJob submit(String analytic, String state) {
+        if (!ANALYTICS.contains(analytic)) {
+            throw new IllegalArgumentException("Unknown analytic. Use one of " + ANALYTICS + ".");
+        }
+        if (analytic.equals("love-points") == (state == null || state.isBlank())) {
+            throw new IllegalArgumentException("The 'state' parameter is required by love-points only.");
+        }
+        String key = analytic.equals("love-points") ? analytic + "?state=" + state : analytic;
+
+        AnalyticsJob[] created = new AnalyticsJob[1];
+        AnalyticsJob job = jobsByKey.compute(key, (k, current) -> {
+            if (current != null && isReusable(current)) {
+                return current;
+            }
+            created[0] = new AnalyticsJob(new org.bson.types.ObjectId().toHexString(), analytic,
+                    analytic.equals("love-points") ? state : null);
+            return created[0];
+        });
+        if (created[0] == null) {
+            count(analytic, job.getStatus() == AnalyticsJob.Status.DONE ? "cached" : "collapsed");
+            return job;
+        }
+
+        jobsById.put(job.getId(), job);
+        try {
+            analyticsExecutor.execute(() -> run(job));
+        } catch (TaskRejectedException e) {
+            jobsByKey.remove(key, job);
+            jobsById.remove(job.getId());
+            count(analytic, "rejected");
+            throw e;
+        }
+        count(analytic, "submitted");
+        return job;
+    }
+
+    public AnalyticsJob getJob(String id) {
+        return jobsById.get(id);
+    }
+
+    // Drops the expired results and the failed jobs
+    @Scheduled(fixedDelayString = "${lovemining.analytics.cache-ttl-ms:300000}")
+    public void evictExpired() {
+        jobsByKey.values().removeIf(this::isExpired);
+        jobsById.values().removeIf(this::isExpired);
+    }
+
+    private void run(AnalyticsJob job) {
+        job.setStatus(AnalyticsJob.Status.RUNNING);
+        job.setEtag(versionService.analyticsTag());
+        try {
+            job.setResult(compute(job.getAnalytic(), job.getState()));
+            job.setCompletedAt(new Date());
+            job.setStatus(AnalyticsJob.Status.DONE);
+        } catch (Exception e) {
+            System.err.println("ERROR in analytics job " + job.getId() + " (" + job.getAnalytic() + "): " + e.getMessage());
+            job.setError(e.getMessage());
+            job.setCompletedAt(new Date());
+            job.setStatus(AnalyticsJob.Status.FAILED);
+        }
+    }
+
+    private List<Map<String, Object>> compute(String analytic, String state) {
+        return switch (analytic) {
+            case "love-points" -> adminService.getLovePointsStats(state);
+            case "glow-up" -> adminService.getBestGlowUpUsers();
+            case "unhappy-cities" -> adminService.getUnhappyCities();
+            case "status-by-age-group" -> adminService.getStatusAnalytics();
+            case "orientation-by-age-group" -> adminService.getOrientationAnalytics();
+            default -> throw new IllegalArgumentException("Unknown analytic: " + analytic);
+        };
+    }
+
+    // Jobs in flight and results within the TTL are shared, a failed job is computed again
+    private boolean isReusable(AnalyticsJob job) {
+        return switch (job.getStatus()) {
+            case PENDING, RUNNING -> true;
+            case DONE -> !isExpired(job);
+            case FAILED -> false;
+        };
+    }
+
+    private boolean isExpired(AnalyticsJob job) {
+        Date completedAt = job.getCompletedAt();
+        return completedAt != null && completedAt.getTime() + cacheTtlMs < System.currentTimeMillis();
+    }
+
+    private void count(String analytic, String outcome) {
+        meterRegistry.counter("lovemining.analytics.jobs", "analytic", analytic, "outcome", outcome).increment();
+    }
+}
@@ -0,0 +1,321 @@
+package it.unipi.LoveMining.service.admin;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import it.unipi.LoveMining.model.mongo.PurgeJobDocument;
+import it.unipi.LoveMining.model.mongo.UserDocument;
+import it.unipi.LoveMining.repository.neo4j.UserNeo4jRepository;
+import it.unipi.LoveMining.service.user.InterestWeightService;
+import lombok.RequiredArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+@Service
+@RequiredArgsConstructor
+// Service class for the consistency between the MongoDB users and the Neo4j User nodes.
+// Both sides are streamed ordered by _id (Mongo cursor, paged Cypher scan) and merge-joined,
+// so the memory used doesn't depend on the number of users. MongoDB is the source of truth.
+public class ConsistencyReconcilerService {
+
+    private final MongoTemplate mongoTemplate;
+    private final UserNeo4jRepository userNeo4jRepository;
+
+    // Users read per Cypher page and repairs per write batch
+    @Value("${lovemining.reconciler.page-size:500}")
+    private int pageSize;
+
+    // Pause after every page, to limit the load on the production databases
+    @Value("${lovemining.reconciler.pause-ms:50}")
+    private long pauseMs;
+
+    // Relationships deleted by every Neo4j transaction when an orphan node is removed (same chunks of the purge)
+    @Value("${lovemining.purge.relationship-chunk:1000}")
+    private int relationshipChunk;
+
+    // Whether the scheduled runs repair the drift or only report it
+    @Value("${lovemining.reconciler.repair:false}")
+    private boolean scheduledRepair;
+
+    private static final int MAX_SAMPLES = 20;
+
+    private static final List<String> SYNCED_FIELDS = List.of("age", "sex", "orientation", "city", "state",
+            "interests", "interestBits");
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile Map<String, Object> lastReport;
+
+    // Fields of a user that are kept in both databases
+    private record Synced(String id, Integer age, String sex, String orientation, String city, String state,
+                          Set<String> interests, long[] interestBits) {
+
+        long fingerprint() {
+            // FNV-1a over a canonical form of the fields
+            String canonical = age + "|" + sex + "|" + orientation + "|" + city + "|" + state + "|"
+                    + String.join(",", interests) + "|" + Arrays.toString(interestBits);
+            long hash = 0xcbf29ce484222325L;
+            for (int i = 0; i < canonical.length(); i++) {
+                hash ^= canonical.charAt(i);
+                hash *= 0x100000001b3L;
+            }
+            return hash;
+        }
+
+        Map<String, Object> toRow() {
+            Map<String, Object> row = new HashMap<>();
+            row.put("id", id);
+            row.put("age", age);
+            row.put("sex", sex);
+            row.put("orientation", orientation);
+            row.put("city", city);
+            row.put("state", state);
+            row.put("interests", new ArrayList<>(interests));
+            row.put("interestBits", Arrays.stream(interestBits).boxed().toList());
+            return row;
+        }
+    }
+
+    private static class Report {
+        long mongoUsers;
+        long graphUsers;
+        long missingInGraph;
+        long orphanNodes;
+        long drifted;
+        long repaired;
+        final Map<String, Long> driftByField = new LinkedHashMap<>();
+        final List<String> samples = new ArrayList<>();
+
+        void sample(String line) {
+            if (samples.size() < MAX_SAMPLES) samples.add(line);
+        }
+    }
+
+    @Scheduled(cron = "${lovemining.reconciler.cron:-}")
+    public void scheduledRun() {
+        try {
+            reconcile(scheduledRepair);
+        } catch (Exception e) {
+            System.err.println("ERROR reconciling MongoDB and Neo4j users: " + e.getMessage());
+        }
+    }
+
+    public Map<String, Object> getLastReport() {
+        return lastReport;
+    }
+
+    // Scans both databases and returns the drift report. With 'repair' the missing nodes are created,
+    // the drifted ones rewritten from MongoDB and the orphan ones deleted, in batches.
+    public Map<String, Object> reconcile(boolean repair) throws InterruptedException {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("A reconciliation is already running.");
+        }
+        long start = System.currentTimeMillis();
+        Report report = new Report();
+        List<Map<String, Object>> upserts = new ArrayList<>();
+        List<String> orphans = new ArrayList<>();
+
+        Query query = new Query().with(Sort.by("_id")).cursorBatchSize(pageSize);
+        query.fields().include(SYNCED_FIELDS.toArray(new String[0]));
+        try (Stream<UserDocument> stream = mongoTemplate.stream(query, UserDocument.class)) {
+            Iterator<UserDocument> mongo = stream.iterator();
+            GraphScan graph = new GraphScan();
+
+            Synced left = mongo.hasNext() ? fromMongo(mongo.next()) : null;
+            Synced right = graph.next();
+            while (left != null || right != null) {
+                int order = left == null ? 1 : right == null ? -1 : left.id().compareTo(right.id());
+                if (order < 0) {
+                    // In MongoDB only: missing node
+                    report.missingInGraph++;
+                    report.sample("missing node: " + left.id());
+                    upserts.add(left.toRow());
+                } else if (order > 0) {
+                    // In Neo4j only: orphan node
+                    report.orphanNodes++;
+                    report.sample("orphan node: " + right.id());
+                    orphans.add(right.id());
+                } else if (left.fingerprint() != right.fingerprint()) {
+                    List<String> fields = diff(left, right);
+                    if (!fields.isEmpty()) {
+                        report.drifted++;
+                        fields.forEach(field -> report.driftByField.merge(field, 1L, Long::sum));
+                        report.sample("drift " + left.id() + ": " + fields);
+                        upserts.add(left.toRow());
+                    }
+                }
+                if (order <= 0) {
+                    report.mongoUsers++;
+                    left = mongo.hasNext() ? fromMongo(mongo.next()) : null;
+                }
+                if (order >= 0) {
+                    report.graphUsers++;
+                    right = graph.next();
+                }
+
+                if (repair && upserts.size() >= pageSize) {
+                    report.repaired += flushUpserts(upserts);
+                }
+                if (repair && orphans.size() >= pageSize) {
+                    report.repaired += flushOrphans(orphans);
+                }
+            }
+            if (repair) {
+                report.repaired += flushUpserts(upserts) + flushOrphans(orphans);
+            }
+        } finally {
+            running.set(false);
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("repair", repair);
+        result.put("mongoUsers", report.mongoUsers);
+        result.put("graphUsers", report.graphUsers);
+        result.put("missingInGraph", report.missingInGraph);
+        result.put("orphanNodes", report.orphanNodes);
+        result.put("drifted", report.drifted);
+        result.put("driftByField", report.driftByField);
+        result.put("repaired", report.repaired);
+        result.put("samples", report.samples);
+        result.put("durationMs", System.currentTimeMillis() - start);
+        lastReport = result;
+        System.out.println("Reconciliation done: " + result);
+        return result;
+    }
+
+    // Paged Cypher scan ordered by _id, one page in memory at a time
+    private class GraphScan {
+        private List<Map<String, Object>> page = List.of();
+        private int index;
+        private String after = "";
+        private boolean done;
+
+        Synced next() throws InterruptedException {
+            if (index == page.size()) {
+                if (done) return null;
+                if (pauseMs > 0 && !page.isEmpty()) Thread.sleep(pauseMs);
+                page = userNeo4jRepository.findSyncedFieldsPage(after, pageSize);
+                index = 0;
+                done = page.size() < pageSize;
+                if (page.isEmpty()) return null;
+                after = (String) page.get(page.size() - 1).get("id");
+            }
+            return fromGraph(page.get(index++));
+        }
+    }
+
+    // The users to repair are read again from MongoDB right before the write: the ones deleted during the
+    // scan are skipped (no orphan node re-created), the ones updated are written with the current fields,
+    // and the ones of a purge job not completed yet are left to the purge (no LIVES_IN/HAS_INTEREST re-created)
+    private int flushUpserts(List<Map<String, Object>> upserts) {
+        if (upserts.isEmpty()) return 0;
+        List<String> ids = upserts.stream().map(row -> (String) row.get("id")).toList();
+        upserts.clear();
+
+        Set<String> purging = new HashSet<>();
+        Query jobs = new Query(Criteria.where("status").in(PurgeJobDocument.Status.PENDING, PurgeJobDocument.Status.RUNNING,
+                PurgeJobDocument.Status.FAILED).and("userIds").in(ids));
+        jobs.fields().include("userIds");
+        for (PurgeJobDocument job : mongoTemplate.find(jobs, PurgeJobDocument.class)) {
+            purging.addAll(job.getUserIds());
+        }
+
+        Query current = new Query(Criteria.where("_id").in(ids));
+        current.fields().include(SYNCED_FIELDS.toArray(new String[0]));
+        List<Map<String, Object>> rows = new ArrayList<>(ids.size());
+        for (UserDocument user : mongoTemplate.find(current, UserDocument.class)) {
+            if (!purging.contains(user.getId())) {
+                rows.add(fromMongo(user).toRow());
+            }
+        }
+        if (!rows.isEmpty()) {
+            userNeo4jRepository.upsertSyncedFields(rows);
+        }
+        return rows.size();
+    }
+
+    // The orphans are checked again right before the deletion (users registered during the scan), then
+    // deleted like the purged users: relationships in bounded chunks, then the node
+    private int flushOrphans(List<String> orphans) {
+        if (orphans.isEmpty()) return 0;
+        Query existing = new Query(Criteria.where("_id").in(orphans));
+        existing.fields().include("_id");
+        Set<String> nowInMongo = new HashSet<>();
+        for (UserDocument user : mongoTemplate.find(existing, UserDocument.class)) {
+            nowInMongo.add(user.getId());
+        }
+        List<String> ids = orphans.stream().filter(id -> !nowInMongo.contains(id)).toList();
+        Set<String> partnerIds = new HashSet<>();
+        for (String id : ids) {
+            partnerIds.addAll(userNeo4jRepository.findMatchedIds(id));
+            long deleted;
+            do {
+                deleted = userNeo4jRepository.deleteRelationshipsChunk(id, relationshipChunk);
+            } while (deleted > 0);
+            userNeo4jRepository.deleteUserNode(id);
+        }
+        // The matches of the partners change
+        partnerIds.removeAll(ids);
+        if (!partnerIds.isEmpty()) {
+            mongoTemplate.updateMulti(new Query(Criteria.where("_id").in(partnerIds)),
+                    new Update().inc("matches_generation", 1), UserDocument.class);
+        }
+        orphans.clear();
+        return ids.size();
+    }
+
+    private static List<String> diff(Synced mongo, Synced graph) {
+        List<String> fields = new ArrayList<>(SYNCED_FIELDS.size());
+        if (!Objects.equals(mongo.age(), graph.age())) fields.add("age");
+        if (!Objects.equals(mongo.sex(), graph.sex())) fields.add("sex");
+        if (!Objects.equals(mongo.orientation(), graph.orientation())) fields.add("orientation");
+        if (!Objects.equals(mongo.city(), graph.city())) fields.add("city");
+        if (!Objects.equals(mongo.state(), graph.state())) fields.add("state");
+        if (!mongo.interests().equals(graph.interests())) fields.add("interests");
+        if (!Arrays.equals(mongo.interestBits(), graph.interestBits())) fields.add("interestBits");
+        return fields;
+    }
+
+    private static Synced fromMongo(UserDocument user) {
+        return new Synced(user.getId(), user.getAge(), user.getSex(), user.getOrientation(), user.getCity(),
+                user.getState(), interestSet(user.getInterests()), bits(user.getInterestBits()));
+    }
+
+    private static Synced fromGraph(Map<String, Object> row) {
+        Number age = (Number) row.get("age");
+        return new Synced((String) row.get("id"), age != null ? age.intValue() : null, (String) row.get("sex"),
+                (String) row.get("orientation"), (String) row.get("city"), (String) row.get("state"),
+                interestSet(row.get("interests")), bits(InterestWeightService.toBits(row.get("interestBits"))));
+    }
+
+    private static Set<String> interestSet(Object interests) {
+        Set<String> names = new TreeSet<>();
+        if (interests instanceof List<?> list) {
+            for (Object name : list) {
+                if (name != null) names.add((String) name);
+            }
+        }
+        return names;
+    }
+
+    private static long[] bits(long[] bits) {
+        return bits != null ? bits : new long[0];
+    }
+}
@@ -0,0 +1,79 @@
+package it.unipi.LoveMining.service.admin;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.neo4j.core.Neo4jClient;
+import org.springframework.stereotype.Service;
+
+import lombok.RequiredArgsConstructor;
+
+import java.util.List;
+
+@Service
+@RequiredArgsConstructor
+// Service class for the indexes the repository queries rely on. The plans of the queries are checked
+// against these indexes by QueryPlanTests (./mvnw -Pquery-plans test).
+public class SchemaIndexService {
+
+    private final MongoTemplate mongoTemplate;
+    private final Neo4jClient neo4jClient;
+
+    // Creates the missing indexes when the application starts (existing indexes are left untouched)
+    @Value("${lovemining.indexes.ensure-on-startup:true}")
+    private boolean ensureOnStartup;
+
+    // Neo4j: every MATCH/MERGE on a User starts from its _id, the other labels from their name
+    private static final List<String> NEO4J_INDEXES = List.of(
+            "CREATE INDEX user_id_index IF NOT EXISTS FOR (u:User) ON (u._id)",
+            "CREATE INDEX city_name_index IF NOT EXISTS FOR (c:City) ON (c.name)",
+            "CREATE INDEX state_name_index IF NOT EXISTS FOR (s:State) ON (s.name)",
+            "CREATE INDEX interest_name_index IF NOT EXISTS FOR (i:Interest) ON (i.name)");
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureOnStartup() {
+        if (!ensureOnStartup) {
+            return;
+        }
+        try {
+            ensureIndexes();
+        } catch (Exception e) {
+            System.err.println("ERROR creating the indexes: " + e.getMessage());
+        }
+    }
+
+    public void ensureIndexes() {
+        // users: login and conditional GET by email
+        ensure("users", new Index().on("Email", Sort.Direction.ASC));
+        // users: analytics, covered queries (the pipelines project only these fields)
+        ensure("users", new Index().on("status", Sort.Direction.ASC).on("age", Sort.Direction.ASC));
+        ensure("users", new Index().on("orientation", Sort.Direction.ASC).on("age", Sort.Direction.ASC));
+        // users not migrated yet to profile_details (reviews still embedded)
+        ensure("users", new Index().on("reviews_made.rating", Sort.Direction.ASC).on("city", Sort.Direction.ASC));
+        ensure("users", new Index().on("reviews_made.target_id", Sort.Direction.ASC));
+
+        // profile_details: unhappy cities and cleanup of the reviews written on purged users
+        ensure("profile_details", new Index().on("reviews_made.rating", Sort.Direction.ASC));
+        ensure("profile_details", new Index().on("reviews_made.target_id", Sort.Direction.ASC));
+
+        // reviews: average ratings of the recommendation cards and purge by target
+        ensure("reviews", new Index().on("target_id", Sort.Direction.ASC));
+
+        // dislikes (off-graph store): cleanup of the dislikes received by purged users
+        ensure("dislikes", new Index().on("entries.target_id", Sort.Direction.ASC));
+
+        // purge_jobs: jobs to resume at startup
+        ensure("purge_jobs", new Index().on("status", Sort.Direction.ASC));
+
+        for (String statement : NEO4J_INDEXES) {
+            neo4jClient.query(statement).run();
+        }
+    }
+
+    private void ensure(String collection, Index index) {
+        mongoTemplate.indexOps(collection).ensureIndex(index);
+    }
+}
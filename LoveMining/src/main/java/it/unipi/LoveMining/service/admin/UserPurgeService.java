@@ -0,0 +1,181 @@
+package it.unipi.LoveMining.service.admin;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import it.unipi.LoveMining.model.mongo.PurgeJobDocument;
+import it.unipi.LoveMining.repository.mongo.PurgeJobMongoRepository;
+import it.unipi.LoveMining.repository.mongo.ReviewMongoRepository;
+import it.unipi.LoveMining.repository.mongo.UserMongoRepository;
+import it.unipi.LoveMining.repository.neo4j.UserNeo4jRepository;
+import it.unipi.LoveMining.service.user.DislikeStoreService;
+import it.unipi.LoveMining.service.user.ProfileDetailsService;
+import it.unipi.LoveMining.service.utility.VersionService;
+import lombok.RequiredArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+@Service
+@RequiredArgsConstructor
+// Service class for the purge of users from both databases: graph relationships deleted in bounded
+// chunks, MongoDB cleanup in bulk per batch of users, progress checkpointed in 'purge_jobs'
+public class UserPurgeService {
+
+    private final PurgeJobMongoRepository purgeJobMongoRepository;
+    private final UserMongoRepository userMongoRepository;
+    private final UserNeo4jRepository userNeo4jRepository;
+    private final ReviewMongoRepository reviewMongoRepository;
+    private final ProfileDetailsService profileDetailsService;
+    private final DislikeStoreService dislikeStoreService;
+    private final VersionService versionService;
+
+    @Qualifier("purgeExecutor")
+    private final Executor purgeExecutor;
+
+    // Relationships deleted by every Neo4j transaction
+    @Value("${lovemining.purge.relationship-chunk:1000}")
+    private int relationshipChunk;
+
+    // Users purged between two checkpoints
+    @Value("${lovemining.purge.batch-size:100}")
+    private int batchSize;
+
+    private static final int MAX_USERS_PER_JOB = 100000;
+
+    private record BatchResult(int notFound, long relationships) {
+    }
+
+    // Creates the job and queues it on the purge executor
+    public PurgeJobDocument submit(List<String> userIds) {
+        if (userIds == null || userIds.isEmpty()) {
+            throw new IllegalArgumentException("At least one user ID is required.");
+        }
+        List<String> ids = new ArrayList<>(new LinkedHashSet<>(userIds));
+        if (ids.size() > MAX_USERS_PER_JOB) {
+            throw new IllegalArgumentException("At most " + MAX_USERS_PER_JOB + " users per job.");
+        }
+        Date now = new Date();
+        PurgeJobDocument job = purgeJobMongoRepository.save(new PurgeJobDocument(
+                new org.bson.types.ObjectId().toHexString(), PurgeJobDocument.Status.PENDING, ids,
+                0, 0, 0L, null, now, now));
+        purgeExecutor.execute(() -> run(job.getId()));
+        return job;
+    }
+
+    public PurgeJobDocument getJob(String id) {
+        return purgeJobMongoRepository.findById(id).orElse(null);
+    }
+
+    // Restarts a failed job from its checkpoint
+    public PurgeJobDocument resume(String id) {
+        PurgeJobDocument job = purgeJobMongoRepository.findById(id)
+                .orElseThrow(() -> new IllegalArgumentException("Purge job not found with ID: " + id));
+        if (job.getStatus() != PurgeJobDocument.Status.FAILED) {
+            throw new IllegalStateException("Only failed jobs can be resumed (status: " + job.getStatus() + ").");
+        }
+        job.setStatus(PurgeJobDocument.Status.PENDING);
+        job.setUpdatedAt(new Date());
+        purgeJobMongoRepository.save(job);
+        purgeExecutor.execute(() -> run(id));
+        return job;
+    }
+
+    // Restarts the jobs interrupted by a shutdown
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeInterrupted() {
+        try {
+            for (PurgeJobDocument job : purgeJobMongoRepository.findByStatusIn(
+                    List.of(PurgeJobDocument.Status.PENDING, PurgeJobDocument.Status.RUNNING))) {
+                purgeExecutor.execute(() -> run(job.getId()));
+            }
+        } catch (Exception e) {
+            System.err.println("ERROR resuming purge jobs: " + e.getMessage());
+        }
+    }
+
+    // Synchronous purge of one user, same steps of the jobs. Returns the deleted relationships.
+    public long purgeNow(String id) {
+        return purgeBatch(List.of(id)).relationships();
+    }
+
+    private void run(String jobId) {
+        PurgeJobDocument job = purgeJobMongoRepository.findById(jobId).orElse(null);
+        if (job == null || job.getStatus() == PurgeJobDocument.Status.COMPLETED) {
+            return;
+        }
+        job.setStatus(PurgeJobDocument.Status.RUNNING);
+        job.setError(null);
+        save(job);
+        try {
+            List<String> ids = job.getUserIds();
+            while (job.getProcessed() < ids.size()) {
+                int end = Math.min(ids.size(), job.getProcessed() + batchSize);
+                BatchResult result = purgeBatch(ids.subList(job.getProcessed(), end));
+                job.setProcessed(end);
+                job.setNotFound(job.getNotFound() + result.notFound());
+                job.setDeletedRelationships(job.getDeletedRelationships() + result.relationships());
+                save(job); // checkpoint
+            }
+            job.setStatus(PurgeJobDocument.Status.COMPLETED);
+            System.out.println("Purge job " + jobId + " completed: " + ids.size() + " users");
+        } catch (Exception e) {
+            System.err.println("ERROR in purge job " + jobId + " after " + job.getProcessed() + " users: " + e.getMessage());
+            job.setStatus(PurgeJobDocument.Status.FAILED);
+            job.setError(e.getMessage());
+        }
+        save(job);
+    }
+
+    // Every step is idempotent: a batch interrupted halfway is simply run again
+    private BatchResult purgeBatch(List<String> ids) {
+        int notFound = ids.size() - (int) userMongoRepository.countByIdIn(ids);
+
+        // 1. Neo4j first: relationships in chunks of bounded transactions, then the node.
+        //    The partners are read before, their matches change.
+        Set<String> partnerIds = new HashSet<>();
+        long relationships = 0;
+        for (String id : ids) {
+            partnerIds.addAll(userNeo4jRepository.findMatchedIds(id));
+            long deleted;
+            do {
+                deleted = userNeo4jRepository.deleteRelationshipsChunk(id, relationshipChunk);
+                relationships += deleted;
+            } while (deleted > 0);
+            userNeo4jRepository.deleteUserNode(id);
+        }
+
+        // 2. MongoDB, one bulk operation per step for the whole batch
+        List<String> reviewIds = profileDetailsService.findReviewIdsMadeBy(ids);
+        if (!reviewIds.isEmpty()) {
+            reviewMongoRepository.deleteAllById(reviewIds); // reviews MADE
+        }
+        reviewMongoRepository.deleteByTargetIdIn(ids); // reviews RECEIVED
+        profileDetailsService.removeReviewReferences(ids); // references in the authors' "reviewsMade"
+        if (dislikeStoreService.isOffGraph()) {
+            ids.forEach(dislikeStoreService::removeUser);
+        }
+        profileDetailsService.deleteAll(ids);
+        userMongoRepository.deleteAllById(ids);
+
+        partnerIds.removeAll(ids);
+        if (!partnerIds.isEmpty()) {
+            userMongoRepository.incrementMatchesGeneration(partnerIds);
+        }
+        versionService.bumpAnalytics();
+        return new BatchResult(notFound, relationships);
+    }
+
+    private void save(PurgeJobDocument job) {
+        job.setUpdatedAt(new Date());
+        purgeJobMongoRepository.save(job);
+    }
+}
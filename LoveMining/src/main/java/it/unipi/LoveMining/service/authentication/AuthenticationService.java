@@ -4,16 +4,13 @@ import org.springframework.stereotype.Service;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
 import it.unipi.LoveMining.model.mongo.UserDocument;
-import it.unipi.LoveMining.model.neo4j.CityNode;
-import it.unipi.LoveMining.model.neo4j.InterestNode;
-import it.unipi.LoveMining.model.neo4j.StateNode;
-import it.unipi.LoveMining.model.neo4j.UserNode;
 import it.unipi.LoveMining.repository.mongo.UserMongoRepository;
-import it.unipi.LoveMining.repository.neo4j.CityNeo4jRepository;
-import it.unipi.LoveMining.repository.neo4j.InterestNeo4jRepository;
-import it.unipi.LoveMining.repository.neo4j.StateNeo4jRepository;
 import it.unipi.LoveMining.repository.neo4j.UserNeo4jRepository;
 import it.unipi.LoveMining.service.utility.InterestExtractorService; // Interests
+import it.unipi.LoveMining.service.utility.VersionService;
+import it.unipi.LoveMining.service.user.ProfileDetailsService;
+import it.unipi.LoveMining.service.profiling.DualWriteEvent;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 
 import java.util.ArrayList;
@@ -27,11 +24,11 @@ public class AuthenticationService {
 
     private final UserMongoRepository userMongoRepository;
     private final UserNeo4jRepository userNeo4jRepository;
-    private final InterestNeo4jRepository interestNeo4jRepository;
-    private final CityNeo4jRepository cityNeo4jRepository;
-    private final StateNeo4jRepository stateNeo4jRepository;
     private final PasswordEncoder passwordEncoder;
     private final InterestExtractorService interestExtractorService;
+    private final VersionService versionService;
+    private final ProfileDetailsService profileDetailsService;
+    private final MeterRegistry meterRegistry;
 
     // Registers a new user in both MongoDB and Neo4j databases
     public UserDocument registerUser(UserDocument user) {
@@ -93,57 +90,35 @@ public class AuthenticationService {
             totalInterests.addAll(extractedInterests);
         }
         user.setInterests(new ArrayList<>(totalInterests));
+        user.setInterestBits(interestExtractorService.encodeInterests(totalInterests));
 
         user.setPassword(passwordEncoder.encode(user.getPassword())); // password Bcrypt
         user.setId(new org.bson.types.ObjectId().toHexString()); // id mongo assign
 
         // MongoDB
-        UserDocument savedUser = userMongoRepository.save(user);
+        UserDocument savedUser = profileDetailsService.save(user); // hot document + profile_details
 
         // Sync to Neo4j
+        DualWriteEvent syncEvent = new DualWriteEvent();
+        syncEvent.operation = "register";
+        syncEvent.begin();
         try {
-            UserNode userNode = new UserNode();
-            userNode.setId(savedUser.getId());
-            userNode.setAge(savedUser.getAge());
-            userNode.setSex(savedUser.getSex());
-            userNode.setOrientation(savedUser.getOrientation());
-
-            // Handle Interests
-            if (savedUser.getInterests() != null) {
-                Set<InterestNode> interestNodes = new HashSet<>();
-                for (String interestName : savedUser.getInterests()) {
-                    InterestNode interestNode = interestNeo4jRepository.findById(interestName)
-                            .orElse(new InterestNode(interestName));
-                    interestNodes.add(interestNode);
-                }
-                userNode.setInterests(interestNodes);
-            }
-
-            // Handle City and State
-            if (savedUser.getCity() != null && !savedUser.getCity().isEmpty()) {
-                CityNode cityNode = cityNeo4jRepository.findById(savedUser.getCity())
-                        .orElse(new CityNode(savedUser.getCity(), null));
-
-                if (savedUser.getState() != null && !savedUser.getState().isEmpty()) {
-                    StateNode stateNode = stateNeo4jRepository.findById(savedUser.getState())
-                            .orElse(new StateNode(savedUser.getState()));
-
-                    stateNode = stateNeo4jRepository.save(stateNode);
-                    cityNode.setState(stateNode);
-                }
-
-                cityNode = cityNeo4jRepository.save(cityNode);
-                userNode.setCityNode(cityNode);
-            }
-
-            userNeo4jRepository.save(userNode);
-
+            // One statement: User node with its scalar fields, LIVES_IN and HAS_INTEREST
+            userNeo4jRepository.createUser(savedUser.getId(), savedUser.getAge(), savedUser.getSex(),
+                    savedUser.getOrientation(), savedUser.getInterestBits(), savedUser.getCity(),
+                    savedUser.getState(), savedUser.getInterests());
         } catch (Exception e) {
             // Rollback
             System.err.println("Rollback: Neo4j sync failed. Deleting user from MongoDB. Error: " + e.getMessage());
+            meterRegistry.counter("lovemining.dual_write.failures", "operation", "register").increment();
+            syncEvent.commit();
             userMongoRepository.deleteById(savedUser.getId());
+            profileDetailsService.delete(savedUser.getId());
             throw new RuntimeException("Registration failed due to database synchronization error. Please try again.");
         }
+        syncEvent.succeeded = true;
+        syncEvent.commit();
+        versionService.bumpAnalytics();
         return savedUser;
     }
 }
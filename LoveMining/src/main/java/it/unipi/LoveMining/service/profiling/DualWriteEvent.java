@@ -0,0 +1,21 @@
+package it.unipi.LoveMining.service.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+// JFR event of the Neo4j synchronization of a MongoDB write (registration, profile update)
+@Name("lovemining.DualWrite")
+@Label("Dual Write Sync")
+@Category({"LoveMining", "Consistency"})
+@Description("Synchronization of a user write from MongoDB to Neo4j")
+public class DualWriteEvent extends Event {
+
+    @Label("Operation")
+    public String operation;
+
+    @Label("Succeeded")
+    public boolean succeeded;
+}
@@ -0,0 +1,92 @@
+package it.unipi.LoveMining.service.profiling;
+
+import org.springframework.stereotype.Service;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Service
+// Service class for the on-demand JFR recordings (one at a time, bounded in duration and size):
+// 'profile' settings with allocation and lock profiling plus the LoveMining events
+public class FlightRecorderService {
+
+    private static final Duration MAX_DURATION = Duration.ofMinutes(30);
+    private static final long MAX_SIZE_BYTES = 512L * 1024 * 1024;
+
+    private Recording recording;
+
+    public synchronized Map<String, Object> start(int seconds, int maxSizeMb) throws IOException, ParseException {
+        if (recording != null && recording.getState() == RecordingState.RUNNING) {
+            throw new IllegalStateException("A recording is already running.");
+        }
+        Duration duration = Duration.ofSeconds(seconds);
+        long maxSize = (long) maxSizeMb * 1024 * 1024;
+        if (seconds < 1 || duration.compareTo(MAX_DURATION) > 0 || maxSizeMb < 1 || maxSize > MAX_SIZE_BYTES) {
+            throw new IllegalArgumentException("Duration must be between 1 s and " + MAX_DURATION.toMinutes()
+                    + " min, size between 1 and " + MAX_SIZE_BYTES / (1024 * 1024) + " MB.");
+        }
+        closeRecording();
+
+        Recording next = new Recording(Configuration.getConfiguration("profile"));
+        next.setName("lovemining");
+        // Allocation and lock profiling
+        next.enable("jdk.ObjectAllocationSample").with("throttle", "300/s");
+        next.enable("jdk.JavaMonitorEnter").withThreshold(Duration.ofMillis(5));
+        next.enable("jdk.ThreadPark").withThreshold(Duration.ofMillis(5));
+        next.enable(InterestExtractionEvent.class);
+        next.enable(RecommendationRankingEvent.class);
+        next.enable(SwipeEvent.class);
+        next.enable(DualWriteEvent.class);
+        // Bounded: stops by itself after the duration, the disk buffer never exceeds maxSize
+        next.setDuration(duration);
+        next.setMaxSize(maxSize);
+        next.setToDisk(true);
+        next.start();
+        recording = next;
+        return status();
+    }
+
+    // Stops the recording (if still running) and returns the file to stream. The caller deletes it.
+    public synchronized Path stop() throws IOException {
+        if (recording == null) {
+            throw new IllegalStateException("No recording started.");
+        }
+        if (recording.getState() == RecordingState.RUNNING) {
+            recording.stop();
+        }
+        Path file = Files.createTempFile("lovemining-", ".jfr");
+        recording.dump(file);
+        closeRecording();
+        return file;
+    }
+
+    public synchronized Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        if (recording == null) {
+            status.put("state", "NONE");
+            return status;
+        }
+        status.put("state", recording.getState().name());
+        status.put("startTime", recording.getStartTime());
+        status.put("duration", recording.getDuration());
+        status.put("maxSize", recording.getMaxSize());
+        status.put("size", recording.getSize());
+        return status;
+    }
+
+    private void closeRecording() {
+        if (recording != null) {
+            recording.close();
+            recording = null;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package it.unipi.LoveMining.service.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+// JFR event of InterestExtractorService.extractInterestsFromText
+@Name("lovemining.InterestExtraction")
+@Label("Interest Extraction")
+@Category({"LoveMining", "Profile"})
+@Description("Extraction of the interests from an essay")
+public class InterestExtractionEvent extends Event {
+
+    @Label("Text Length")
+    public int textLength;
+
+    @Label("Variants Checked")
+    public int variantsChecked;
+
+    @Label("Variant Hits")
+    public int variantHits;
+
+    @Label("Interests Found")
+    public int interestsFound;
+}
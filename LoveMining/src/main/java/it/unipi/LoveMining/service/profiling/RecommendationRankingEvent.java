@@ -0,0 +1,29 @@
+package it.unipi.LoveMining.service.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+// JFR event of the recommendation paths of UserService
+@Name("lovemining.RecommendationRanking")
+@Label("Recommendation Ranking")
+@Category({"LoveMining", "Recommendations"})
+@Description("Candidate selection and ranking of the recommendations of a user")
+public class RecommendationRankingEvent extends Event {
+
+    // graph, bitset (with or without co-like blending) or radius
+    @Label("Ranking")
+    public String ranking;
+
+    @Label("Filter")
+    public String filter;
+
+    // Candidates scored in memory (-1 when the graph ranks them)
+    @Label("Candidates")
+    public int candidates;
+
+    @Label("Results")
+    public int results;
+}
@@ -0,0 +1,23 @@
+package it.unipi.LoveMining.service.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+// JFR event of UserService.likeUser and dislikeUser
+@Name("lovemining.Swipe")
+@Label("Swipe")
+@Category({"LoveMining", "Swipes"})
+@Description("Like or dislike of a user")
+public class SwipeEvent extends Event {
+
+    // like, match, already_matched, dislike, error or cancelled
+    @Label("Outcome")
+    public String outcome;
+
+    // Database calls made by the swipe
+    @Label("Round Trips")
+    public int roundTrips;
+}
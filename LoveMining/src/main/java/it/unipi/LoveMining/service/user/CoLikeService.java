@@ -0,0 +1,288 @@
+package it.unipi.LoveMining.service.user;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import it.unipi.LoveMining.repository.neo4j.UserNeo4jRepository;
+import lombok.RequiredArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.IntStream;
+
+@Service
+@RequiredArgsConstructor
+// Service class for the item-to-item co-like recommendations ("people who liked X also liked Y")
+public class CoLikeService {
+
+    private final UserNeo4jRepository userNeo4jRepository;
+    private final InterestWeightService interestWeightService;
+
+    // Weight of the co-like score blended with the interest score (0 = disabled)
+    @Value("${lovemining.recommendations.colike-weight:0.0}")
+    private double coLikeWeight;
+
+    // Neighbours kept for every user
+    @Value("${lovemining.colike.top-k:50}")
+    private int topK;
+
+    // Best co-like neighbours of the user read as candidates besides the graph ones
+    @Value("${lovemining.recommendations.colike-candidates:500}")
+    private int coLikeCandidates;
+
+    // Parallelism of the fork-join pool used by the build
+    @Value("${lovemining.colike.parallelism:4}")
+    private int parallelism;
+
+    private static final int BATCH_SIZE = 5000;
+
+    // Immutable model of one build (int indexes instead of ids, CSR arrays)
+    private record Model(Map<String, Integer> indexById, String[] idByIndex,
+                         int[] likedOffsets, int[] liked,
+                         int[][] neighbours, float[][] similarities) {
+    }
+
+    private volatile Model model;
+
+    // One build at a time (a lock instead of synchronized: the build blocks on Neo4j and would pin
+    // the carrier of a virtual thread)
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+
+    public double getWeight() {
+        return coLikeWeight;
+    }
+
+    public boolean isEnabled() {
+        return coLikeWeight > 0;
+    }
+
+    // Why the co-like score is not blended in the ranking (logged when it changes)
+    private volatile String blendingDisabledReason;
+
+    // The co-like score is blended only in the bitset ranking, once the interest bitsets are backfilled:
+    // the graph ranking keeps the order of its query, and without the bitsets every interest score would
+    // be 0 (a ranking by co-likes only)
+    public boolean isBlended(String ranking) {
+        if (!isEnabled()) {
+            return false;
+        }
+        String reason = !"bitset".equalsIgnoreCase(ranking)
+                ? "it needs lovemining.recommendations.ranking=bitset (ranking=" + ranking + " keeps the order of the graph query)"
+                : !interestWeightService.isBitsetsReady()
+                ? "the interest bitsets are not backfilled yet (POST /api/admin/interests/bitsets)"
+                : null;
+        if (reason != null && !reason.equals(blendingDisabledReason)) {
+            System.err.println("WARNING co-like blending disabled: " + reason);
+        }
+        blendingDisabledReason = reason;
+        return reason == null;
+    }
+
+    // Background refresh of the model when the blending is enabled
+    @Scheduled(initialDelayString = "${lovemining.colike.initial-delay-ms:120000}",
+            fixedDelayString = "${lovemining.colike.refresh-ms:3600000}")
+    public void scheduledRebuild() {
+        if (!isEnabled()) {
+            return;
+        }
+        try {
+            rebuild();
+        } catch (Exception e) {
+            System.err.println("ERROR rebuilding co-like model: " + e.getMessage());
+        }
+    }
+
+    // Reads the LIKES/MATCHED edges and computes the top-K co-like neighbours of every user.
+    // Returns the number of users with at least one neighbour.
+    public int rebuild() throws Exception {
+        rebuildLock.lock();
+        try {
+            return build();
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    private int build() throws Exception {
+        // 1. Edges from the graph: liker -> liked users, ids mapped to dense int indexes
+        Map<String, Integer> indexById = new HashMap<>();
+        List<String> ids = new ArrayList<>();
+        List<int[]> likedByLiker = new ArrayList<>();
+        String after = "";
+        while (true) {
+            List<Map<String, Object>> batch = userNeo4jRepository.findSwipeNeighbourhoods(after, BATCH_SIZE);
+            if (batch.isEmpty()) break;
+            for (Map<String, Object> row : batch) {
+                String likerId = (String) row.get("id");
+                if (likerId.compareTo(after) > 0) after = likerId;
+                int liker = indexOf(likerId, indexById, ids, likedByLiker);
+                @SuppressWarnings("unchecked")
+                List<String> likedIds = (List<String>) row.get("liked");
+                int[] likedIndexes = new int[likedIds.size()];
+                for (int i = 0; i < likedIndexes.length; i++) {
+                    likedIndexes[i] = indexOf(likedIds.get(i), indexById, ids, likedByLiker);
+                }
+                likedByLiker.set(liker, likedIndexes);
+            }
+        }
+        int users = ids.size();
+
+        // 2. CSR arrays: likes (liker -> liked) and the transposed likers (liked -> likers)
+        int[] likedOffsets = new int[users + 1];
+        int[] likerCount = new int[users];
+        for (int u = 0; u < users; u++) {
+            int[] likedIndexes = likedByLiker.get(u);
+            likedOffsets[u + 1] = likedOffsets[u] + (likedIndexes == null ? 0 : likedIndexes.length);
+            if (likedIndexes != null) for (int item : likedIndexes) likerCount[item]++;
+        }
+        int[] liked = new int[likedOffsets[users]];
+        int[] likersOffsets = new int[users + 1];
+        for (int u = 0; u < users; u++) likersOffsets[u + 1] = likersOffsets[u] + likerCount[u];
+        int[] likers = new int[likersOffsets[users]];
+        int[] fill = likersOffsets.clone();
+        for (int u = 0; u < users; u++) {
+            int[] likedIndexes = likedByLiker.get(u);
+            if (likedIndexes == null) continue;
+            System.arraycopy(likedIndexes, 0, liked, likedOffsets[u], likedIndexes.length);
+            for (int item : likedIndexes) likers[fill[item]++] = u;
+        }
+
+        // 3. Top-K cosine neighbours of every liked user, items split over the fork-join pool
+        int[][] neighbours = new int[users][];
+        float[][] similarities = new float[users][];
+        ThreadLocal<int[]> counters = ThreadLocal.withInitial(() -> new int[users]);
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, parallelism));
+        try {
+            pool.submit(() -> IntStream.range(0, users).parallel().forEach(item -> {
+                int[] counts = counters.get();
+                int[] touched = new int[64];
+                int touchedSize = 0;
+                for (int l = likersOffsets[item]; l < likersOffsets[item + 1]; l++) {
+                    int liker = likers[l];
+                    for (int k = likedOffsets[liker]; k < likedOffsets[liker + 1]; k++) {
+                        int other = liked[k];
+                        if (other == item) continue;
+                        if (counts[other]++ == 0) {
+                            if (touchedSize == touched.length) touched = Arrays.copyOf(touched, touchedSize * 2);
+                            touched[touchedSize++] = other;
+                        }
+                    }
+                }
+                selectTopK(item, counts, touched, touchedSize, likerCount, neighbours, similarities);
+                for (int t = 0; t < touchedSize; t++) counts[touched[t]] = 0;
+            })).get();
+        } finally {
+            pool.shutdown();
+        }
+
+        model = new Model(indexById, ids.toArray(new String[0]), likedOffsets, liked, neighbours, similarities);
+        int withNeighbours = 0;
+        for (int[] n : neighbours) if (n.length > 0) withNeighbours++;
+        System.out.println("Co-like model built: " + users + " users, " + withNeighbours + " with neighbours");
+        return withNeighbours;
+    }
+
+    // Co-like scores of the candidates for the user: sum of the similarities between the users
+    // he liked and each candidate. Empty when the model is not built or the user liked nobody.
+    public Map<String, Double> score(String userId) {
+        Map<String, Double> scores = new HashMap<>();
+        Model current = model;
+        if (current == null) return scores;
+        Integer user = current.indexById().get(userId);
+        if (user == null) return scores;
+        for (int k = current.likedOffsets()[user]; k < current.likedOffsets()[user + 1]; k++) {
+            int item = current.liked()[k];
+            int[] itemNeighbours = current.neighbours()[item];
+            float[] itemSimilarities = current.similarities()[item];
+            for (int n = 0; n < itemNeighbours.length; n++) {
+                scores.merge(current.idByIndex()[itemNeighbours[n]], (double) itemSimilarities[n], Double::sum);
+            }
+        }
+        return scores;
+    }
+
+    // Ids with the best co-like scores (ties by id): the graph cuts its candidates by _id, so a neighbour
+    // beyond the cut would never be ranked (users with thin essays are ranked by co-likes only)
+    public List<String> topScored(Map<String, Double> scores) {
+        return scores.entrySet().stream()
+                .sorted(Map.Entry.<String, Double>comparingByValue().reversed()
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .limit(coLikeCandidates)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    // Keeps the topK neighbours by cosine similarity count / sqrt(likers(item) * likers(other))
+    private void selectTopK(int item, int[] counts, int[] touched, int touchedSize, int[] likerCount,
+                            int[][] neighbours, float[][] similarities) {
+        int size = Math.min(topK, touchedSize);
+        int[] bestItems = new int[size];
+        float[] bestScores = new float[size];
+        int filled = 0;
+        for (int t = 0; t < touchedSize; t++) {
+            int other = touched[t];
+            float similarity = (float) (counts[other] / Math.sqrt((double) likerCount[item] * likerCount[other]));
+            if (filled < size) {
+                bestItems[filled] = other;
+                bestScores[filled++] = similarity;
+                siftUp(bestItems, bestScores, filled - 1);
+            } else if (size > 0 && similarity > bestScores[0]) {
+                bestItems[0] = other;
+                bestScores[0] = similarity;
+                siftDown(bestItems, bestScores, size);
+            }
+        }
+        neighbours[item] = bestItems;
+        similarities[item] = bestScores;
+    }
+
+    // Min-heap on the similarity (primitive arrays, no boxing)
+    private static void siftUp(int[] items, float[] scores, int i) {
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (scores[parent] <= scores[i]) break;
+            swap(items, scores, i, parent);
+            i = parent;
+        }
+    }
+
+    private static void siftDown(int[] items, float[] scores, int size) {
+        int i = 0;
+        while (true) {
+            int left = 2 * i + 1;
+            int right = left + 1;
+            int smallest = i;
+            if (left < size && scores[left] < scores[smallest]) smallest = left;
+            if (right < size && scores[right] < scores[smallest]) smallest = right;
+            if (smallest == i) return;
+            swap(items, scores, i, smallest);
+            i = smallest;
+        }
+    }
+
+    private static void swap(int[] items, float[] scores, int a, int b) {
+        int item = items[a];
+        items[a] = items[b];
+        items[b] = item;
+        float score = scores[a];
+        scores[a] = scores[b];
+        scores[b] = score;
+    }
+
+    private static int indexOf(String id, Map<String, Integer> indexById, List<String> ids, List<int[]> likedByLiker) {
+        Integer index = indexById.get(id);
+        if (index == null) {
+            index = ids.size();
+            indexById.put(id, index);
+            ids.add(id);
+            likedByLiker.add(null);
+        }
+        return index;
+    }
+}
@@ -0,0 +1,108 @@
+package it.unipi.LoveMining.service.user;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import it.unipi.LoveMining.model.dto.Dashboard;
+import it.unipi.LoveMining.model.dto.MatchCard;
+import it.unipi.LoveMining.model.mongo.UserDocument;
+import lombok.RequiredArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+@Service
+@RequiredArgsConstructor
+// Service class for the dashboard loaded when the app opens: profile (with the reviews), first page of
+// matches and recommendations of one user. The lookups are forked together and joined within the request:
+// every branch has its own deadline, and the branches still running when the request ends are cancelled.
+// A branch never forks on lookupExecutor itself: waiting for its own pool could deadlock it.
+public class DashboardService {
+
+    private final UserService userService;
+    private final MeterRegistry meterRegistry;
+
+    @Qualifier("lookupExecutor")
+    private final AsyncTaskExecutor lookupExecutor;
+
+    // Deadlines of the branches, counted from the fork
+    @Value("${lovemining.dashboard.profile-timeout-ms:1000}")
+    private long profileTimeoutMs;
+
+    @Value("${lovemining.dashboard.matches-timeout-ms:1000}")
+    private long matchesTimeoutMs;
+
+    @Value("${lovemining.dashboard.recommendations-timeout-ms:2000}")
+    private long recommendationsTimeoutMs;
+
+    public Dashboard getDashboard(UserDocument user, String filter, int minAge, int maxAge, int matchesSize,
+                                  boolean cards) {
+        String id = user.getId();
+        List<Future<?>> branches = new ArrayList<>(3);
+        long start = System.nanoTime();
+        try {
+            // 1. Fork: the three lookups start together
+            Future<UserDocument> profile = fork(branches, () -> userService.getUser(id));
+            Future<List<MatchCard>> matches = fork(branches, () -> userService.getUserMatchesPage(id, 0, matchesSize));
+            Future<List<?>> recommendations = fork(branches, () -> {
+                List<String> ids = userService.getRecommendations(id, filter, minAge, maxAge);
+                // The card lookups run on this branch thread (interrupted by the cancel at the deadline)
+                return cards ? userService.getRecommendationCardsInline(user, ids) : ids;
+            });
+
+            // 2. Join: a late or failed branch leaves its section empty, the others are still returned
+            Dashboard dashboard = new Dashboard();
+            UserDocument full = join(profile, "profile", start, profileTimeoutMs, dashboard);
+            if (full != null) {
+                dashboard.setProfile(full);
+                // The reviews made are part of the profile: no separate lookup
+                dashboard.setReviews(full.getReviewsMade() != null ? full.getReviewsMade() : Collections.emptyList());
+            } else {
+                dashboard.getMissing().add("reviews");
+            }
+            dashboard.setMatches(join(matches, "matches", start, matchesTimeoutMs, dashboard));
+            dashboard.setRecommendations(join(recommendations, "recommendations", start, recommendationsTimeoutMs, dashboard));
+            return dashboard;
+        } finally {
+            // No branch outlives the request (no-op for the completed ones)
+            for (Future<?> branch : branches) {
+                branch.cancel(true);
+            }
+        }
+    }
+
+    private <T> Future<T> fork(List<Future<?>> branches, Callable<T> task) {
+        Future<T> branch = lookupExecutor.submit(task);
+        branches.add(branch);
+        return branch;
+    }
+
+    // Result of the branch, or null (branch listed as missing) when it failed or missed its deadline
+    private <T> T join(Future<T> branch, String name, long start, long timeoutMs, Dashboard dashboard) {
+        long remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMs) - (System.nanoTime() - start);
+        String outcome;
+        try {
+            return branch.get(Math.max(0, remaining), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            outcome = "timeout";
+        } catch (ExecutionException e) {
+            outcome = "error";
+            System.err.println("ERROR in dashboard " + name + ": " + e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            outcome = "interrupted";
+        }
+        meterRegistry.counter("lovemining.dashboard.missing", "section", name, "outcome", outcome).increment();
+        dashboard.getMissing().add(name);
+        return null;
+    }
+}
@@ -0,0 +1,221 @@
+package it.unipi.LoveMining.service.user;
+
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import it.unipi.LoveMining.model.mongo.DislikeDocument;
+import it.unipi.LoveMining.repository.mongo.DislikeMongoRepository;
+import it.unipi.LoveMining.repository.neo4j.UserNeo4jRepository;
+import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+@Service
+@RequiredArgsConstructor
+// Service class for the off-graph DISLIKES store (one sorted document per user in MongoDB)
+public class DislikeStoreService {
+
+    private final MongoTemplate mongoTemplate;
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+    private final DislikeMongoRepository dislikeMongoRepository;
+    private final UserNeo4jRepository userNeo4jRepository;
+
+    // 'graph' keeps DISLIKES edges in Neo4j, 'mongo' moves them to the 'dislikes' collection
+    @Value("${lovemining.dislikes.store:graph}")
+    private String store;
+
+    // Days after which a dislike expires and the user becomes recommendable again (0 = never)
+    @Value("${lovemining.dislikes.ttl-days:0}")
+    private int ttlDays;
+
+    public boolean isOffGraph() {
+        return "mongo".equalsIgnoreCase(store);
+    }
+
+    // MongoDB commands sent by addDislike and addDislikeReactive (counted in the swipe events)
+    public static final int ADD_DISLIKE_CALLS = 2;
+
+    // Adds (or refreshes) the dislike 'actor -> target', keeping the entries sorted by target id
+    public void addDislike(String actorId, String targetId) {
+        Query query = new Query(Criteria.where("_id").is(actorId));
+
+        // 1. Remove a previous dislike on the same target (a new dislike restarts its expiry)
+        mongoTemplate.upsert(query, pullEntry(targetId), DislikeDocument.class);
+
+        // 2. Insert the new entry in its sorted position
+        mongoTemplate.updateFirst(query, pushEntry(targetId), DislikeDocument.class);
+    }
+
+    // Same as addDislike, on the reactive driver
+    public Mono<Void> addDislikeReactive(String actorId, String targetId) {
+        Query query = new Query(Criteria.where("_id").is(actorId));
+        return reactiveMongoTemplate.upsert(query, pullEntry(targetId), DislikeDocument.class)
+                .then(reactiveMongoTemplate.updateFirst(query, pushEntry(targetId), DislikeDocument.class))
+                .then();
+    }
+
+    // Ids excluded from the recommendations of the user: who he disliked and who disliked him
+    public List<String> getExcludedIds(String userId) {
+        if (!isOffGraph()) {
+            return Collections.emptyList();
+        }
+        Date cutoff = expiryCutoff();
+        Set<String> excluded = new HashSet<>();
+
+        // 1. Users disliked by the user (sorted array read in one document)
+        dislikeMongoRepository.findById(userId).ifPresent(doc -> addActiveTargets(doc, cutoff, excluded));
+
+        // 2. Users who disliked the user (multikey index on entries.target_id, only _id is read)
+        for (DislikeDocument doc : mongoTemplate.find(dislikedByQuery(userId, cutoff), DislikeDocument.class)) {
+            excluded.add(doc.getId());
+        }
+        return new ArrayList<>(excluded);
+    }
+
+    // Same as getExcludedIds, on the reactive driver (the two reads run concurrently)
+    public Mono<List<String>> getExcludedIdsReactive(String userId) {
+        if (!isOffGraph()) {
+            return Mono.just(Collections.emptyList());
+        }
+        Date cutoff = expiryCutoff();
+        Mono<Set<String>> disliked = reactiveMongoTemplate.findById(userId, DislikeDocument.class)
+                .map(doc -> {
+                    Set<String> targets = new HashSet<>();
+                    addActiveTargets(doc, cutoff, targets);
+                    return targets;
+                })
+                .defaultIfEmpty(Collections.emptySet());
+        Mono<List<String>> dislikedBy = reactiveMongoTemplate.find(dislikedByQuery(userId, cutoff), DislikeDocument.class)
+                .map(DislikeDocument::getId)
+                .collectList();
+        return Mono.zip(disliked, dislikedBy, (targets, actors) -> {
+            Set<String> excluded = new HashSet<>(targets);
+            excluded.addAll(actors);
+            return new ArrayList<>(excluded);
+        });
+    }
+
+    // Removes every dislike made or received by a deleted user
+    public void removeUser(String userId) {
+        dislikeMongoRepository.deleteById(userId);
+        mongoTemplate.updateMulti(new Query(Criteria.where("entries.target_id").is(userId)),
+                new Update().pull("entries", new Document("target_id", userId)), DislikeDocument.class);
+    }
+
+    // Moves the DISLIKES edges from Neo4j to MongoDB in batches, returns the number of moved edges.
+    // Every batch is first written to MongoDB (idempotent) and only then deleted from the graph,
+    // so an interrupted migration can simply be started again.
+    public long migrateFromGraph(int batchSize) {
+        mongoTemplate.indexOps(DislikeDocument.class).ensureIndex(new Index().on("entries.target_id", Sort.Direction.ASC));
+
+        long moved = 0;
+        while (true) {
+            List<Map<String, Object>> batch = userNeo4jRepository.findDislikeBatch(batchSize);
+            if (batch.isEmpty()) {
+                break;
+            }
+
+            // Group the batch by author
+            Map<String, List<String>> byActor = new LinkedHashMap<>();
+            List<String> actorIds = new ArrayList<>(batch.size());
+            List<String> targetIds = new ArrayList<>(batch.size());
+            for (Map<String, Object> edge : batch) {
+                String actorId = (String) edge.get("actorId");
+                String targetId = (String) edge.get("targetId");
+                byActor.computeIfAbsent(actorId, k -> new ArrayList<>()).add(targetId);
+                actorIds.add(actorId);
+                targetIds.add(targetId);
+            }
+
+            // Edges in the graph have no date: the migration time starts their expiry
+            Date now = new Date();
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.ORDERED, DislikeDocument.class);
+            for (Map.Entry<String, List<String>> group : byActor.entrySet()) {
+                Query query = new Query(Criteria.where("_id").is(group.getKey()));
+                List<DislikeDocument.Entry> entries = new ArrayList<>();
+                for (String targetId : group.getValue()) {
+                    entries.add(new DislikeDocument.Entry(targetId, now));
+                }
+                bulk.upsert(query, new Update().pull("entries",
+                        new Document("target_id", new Document("$in", group.getValue()))));
+                Update push = new Update();
+                push.push("entries").sort(Sort.by("target_id")).each(entries.toArray());
+                bulk.updateOne(query, push);
+            }
+            bulk.execute();
+
+            userNeo4jRepository.deleteDislikes(actorIds, targetIds);
+            moved += batch.size();
+            System.out.println("Dislikes migration: " + moved + " edges moved to MongoDB");
+        }
+        return moved;
+    }
+
+    // Drops the expired entries so that old dislikes become eligible again
+    @Scheduled(cron = "${lovemining.dislikes.purge-cron:0 0 4 * * *}")
+    public void purgeExpired() {
+        if (!isOffGraph() || ttlDays <= 0) {
+            return;
+        }
+        Date cutoff = expiryCutoff();
+        mongoTemplate.updateMulti(new Query(Criteria.where("entries.dislike_date").lt(cutoff)),
+                new Update().pull("entries", new Document("dislike_date", new Document("$lt", cutoff))),
+                DislikeDocument.class);
+    }
+
+    private static Update pullEntry(String targetId) {
+        return new Update().pull("entries", new Document("target_id", targetId));
+    }
+
+    private static Update pushEntry(String targetId) {
+        Update push = new Update();
+        push.push("entries").sort(Sort.by("target_id")).each(new DislikeDocument.Entry(targetId, new Date()));
+        return push;
+    }
+
+    // Dislikes not expired yet
+    private static void addActiveTargets(DislikeDocument doc, Date cutoff, Set<String> excluded) {
+        if (doc.getEntries() == null) {
+            return;
+        }
+        for (DislikeDocument.Entry entry : doc.getEntries()) {
+            if (entry.getDate() == null || !entry.getDate().before(cutoff)) {
+                excluded.add(entry.getTargetId());
+            }
+        }
+    }
+
+    private static Query dislikedByQuery(String userId, Date cutoff) {
+        Query reverse = new Query(Criteria.where("entries").elemMatch(
+                Criteria.where("target_id").is(userId).and("dislike_date").gte(cutoff)));
+        reverse.fields().include("_id");
+        return reverse;
+    }
+
+    private Date expiryCutoff() {
+        if (ttlDays <= 0) {
+            return new Date(0);
+        }
+        return Date.from(Instant.now().minus(Duration.ofDays(ttlDays)));
+    }
+}
@@ -0,0 +1,158 @@
+package it.unipi.LoveMining.service.user;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import it.unipi.LoveMining.model.mongo.UserDocument;
+import it.unipi.LoveMining.repository.mongo.UserMongoRepository;
+import it.unipi.LoveMining.repository.neo4j.UserNeo4jRepository;
+import it.unipi.LoveMining.service.utility.InterestExtractorService;
+import lombok.RequiredArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+@Service
+@RequiredArgsConstructor
+// Service class for the IDF weights of the interests and the bitset overlap score
+public class InterestWeightService {
+
+    private final UserMongoRepository userMongoRepository;
+    private final UserNeo4jRepository userNeo4jRepository;
+    private final MongoTemplate mongoTemplate;
+    private final InterestExtractorService interestExtractorService;
+
+    // IDF weight by interest ordinal, null until the first refresh (every shared interest counts 1)
+    private volatile double[] weights;
+
+    // true once every user has its interest bitset (new users get it when created). Until then it is
+    // checked again at most once a minute: the query reads 'users' until the first user without bitset.
+    private volatile boolean bitsetsReady;
+    private volatile long bitsetsCheckedAt;
+    private static final long BITSETS_CHECK_INTERVAL_MS = 60_000;
+
+    // Recomputes the IDF table: weight = ln(users / (1 + users with the interest))
+    @Scheduled(initialDelayString = "${lovemining.interests.idf-initial-delay-ms:60000}",
+            fixedDelayString = "${lovemining.interests.idf-refresh-ms:3600000}")
+    public void refreshWeights() {
+        try {
+            long totalUsers = userMongoRepository.count();
+            double[] table = new double[interestExtractorService.getInterestCount()];
+            Arrays.fill(table, Math.log((double) totalUsers + 1));
+
+            for (Map<String, Object> row : userMongoRepository.countUsersByInterest()) {
+                int ordinal = interestExtractorService.getOrdinal((String) row.get("_id"));
+                if (ordinal < 0) continue;
+                long usersWithInterest = ((Number) row.get("count")).longValue();
+                table[ordinal] = Math.max(0.0, Math.log((double) totalUsers / (1 + usersWithInterest)));
+            }
+            weights = table;
+        } catch (Exception e) {
+            System.err.println("ERROR refreshing interest IDF weights: " + e.getMessage());
+        }
+    }
+
+    // Computes the bitsets of the existing users from their 'interests' and writes them to both
+    // databases, in batches ordered by _id. Returns the number of updated users.
+    public long backfillBitsets(int batchSize) {
+        long updated = 0;
+        String lastId = null;
+        while (true) {
+            Query query = new Query();
+            if (lastId != null) {
+                query.addCriteria(Criteria.where("_id").gt(lastId));
+            }
+            query.with(Sort.by("_id")).limit(batchSize);
+            query.fields().include("interests");
+            List<UserDocument> users = mongoTemplate.find(query, UserDocument.class);
+            if (users.isEmpty()) {
+                break;
+            }
+
+            List<String> ids = new ArrayList<>(users.size());
+            List<List<Long>> bitsets = new ArrayList<>(users.size());
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, UserDocument.class);
+            for (UserDocument user : users) {
+                List<Long> bits = Arrays.stream(interestExtractorService.encodeInterests(user.getInterests()))
+                        .boxed().toList();
+                bulk.updateOne(new Query(Criteria.where("_id").is(user.getId())), new Update().set("interest_bits", bits));
+                ids.add(user.getId());
+                bitsets.add(bits);
+            }
+            bulk.execute();
+            userNeo4jRepository.updateInterestBits(ids, bitsets);
+
+            updated += users.size();
+            lastId = users.get(users.size() - 1).getId();
+        }
+        bitsetsReady = true;
+        return updated;
+    }
+
+    // Whether the interest bitsets are backfilled: without them every bitset score is 0
+    public boolean isBitsetsReady() {
+        long now = System.currentTimeMillis();
+        if (!bitsetsReady && now - bitsetsCheckedAt > BITSETS_CHECK_INTERVAL_MS) {
+            bitsetsCheckedAt = now;
+            try {
+                bitsetsReady = !mongoTemplate.exists(new Query(Criteria.where("interest_bits").exists(false)), UserDocument.class);
+            } catch (Exception e) {
+                System.err.println("ERROR checking the interest bitsets: " + e.getMessage());
+            }
+        }
+        return bitsetsReady;
+    }
+
+    // IDF weight of the interest (1 until the first refresh)
+    public double getWeight(int ordinal) {
+        double[] table = weights;
+        return table != null && ordinal < table.length ? table[ordinal] : 1.0;
+    }
+
+    // Weighted overlap of two interest bitsets (sum of the IDF weights of the shared bits)
+    public double score(long[] mine, long[] theirs) {
+        if (mine == null || theirs == null) {
+            return 0.0;
+        }
+        double[] table = weights;
+        double score = 0.0;
+        int words = Math.min(mine.length, theirs.length);
+        for (int w = 0; w < words; w++) {
+            long common = mine[w] & theirs[w];
+            if (common == 0) continue;
+            if (table == null) {
+                score += Long.bitCount(common);
+                continue;
+            }
+            while (common != 0) {
+                int ordinal = (w << 6) + Long.numberOfTrailingZeros(common);
+                score += ordinal < table.length ? table[ordinal] : 1.0;
+                common &= common - 1;
+            }
+        }
+        return score;
+    }
+
+    // Bitset read from a Neo4j/Mongo value (long[] or list of numbers)
+    public static long[] toBits(Object value) {
+        if (value instanceof long[] bits) {
+            return bits;
+        }
+        if (value instanceof List<?> list) {
+            long[] bits = new long[list.size()];
+            for (int i = 0; i < bits.length; i++) {
+                bits[i] = ((Number) list.get(i)).longValue();
+            }
+            return bits;
+        }
+        return null;
+    }
+}
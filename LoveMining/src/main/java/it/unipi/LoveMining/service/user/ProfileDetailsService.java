@@ -0,0 +1,184 @@
+package it.unipi.LoveMining.service.user;
+
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import it.unipi.LoveMining.model.mongo.ProfileDetailsDocument;
+import it.unipi.LoveMining.model.mongo.UserDocument;
+import it.unipi.LoveMining.repository.mongo.ProfileDetailsMongoRepository;
+import it.unipi.LoveMining.repository.mongo.UserMongoRepository;
+import lombok.RequiredArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+@Service
+@RequiredArgsConstructor
+// Service class for the cold part of the profile (profile_details): the hot 'users' document keeps
+// credentials, matching fields and interests, the details are loaded only by the endpoints needing them
+public class ProfileDetailsService {
+
+    private final UserMongoRepository userMongoRepository;
+    private final ProfileDetailsMongoRepository profileDetailsMongoRepository;
+    private final MongoTemplate mongoTemplate;
+
+    // Stored names of the cold fields (the same in 'users' before the migration and in 'profile_details')
+    private static final List<String> COLD_FIELDS = List.of("body_type", "diet", "drinks", "education",
+            "ethnicity", "height", "income", "job", "offspring", "pets", "religion", "smokes", "speaks",
+            "essay0", "reviews_made");
+
+    // Property names of the cold fields in UserDocument
+    public static final Set<String> COLD_PROPERTIES = Set.of("bodyType", "diet", "drinks", "education",
+            "ethnicity", "height", "income", "job", "offspring", "pets", "religion", "smokes", "speaks",
+            "essay0", "reviewsMade");
+
+    // Full profile: the hot document plus its details (users not migrated yet keep the embedded values)
+    public UserDocument withDetails(UserDocument user) {
+        if (user != null) {
+            profileDetailsMongoRepository.findById(user.getId()).ifPresent(details -> applyDetails(details, user));
+        }
+        return user;
+    }
+
+    // Only the requested cold fields of the details (sparse fieldsets)
+    public UserDocument withDetails(UserDocument user, Collection<String> properties) {
+        List<String> cold = properties.stream().filter(COLD_PROPERTIES::contains).toList();
+        if (user == null || cold.isEmpty()) {
+            return user;
+        }
+        Query query = new Query(Criteria.where("_id").is(user.getId()));
+        query.fields().include(cold.toArray(new String[0]));
+        ProfileDetailsDocument details = mongoTemplate.findOne(query, ProfileDetailsDocument.class);
+        if (details != null) {
+            applyDetails(details, user);
+        }
+        return user;
+    }
+
+    // Saves a full profile split in the two documents: the details first, then the hot document
+    // without the cold fields. Returns the saved user with the details.
+    public UserDocument save(UserDocument user) {
+        ProfileDetailsDocument details = toDetails(user);
+        profileDetailsMongoRepository.save(details);
+        clearDetails(user);
+        UserDocument saved = userMongoRepository.save(user);
+        applyDetails(details, saved);
+        return saved;
+    }
+
+    public void delete(String id) {
+        profileDetailsMongoRepository.deleteById(id);
+    }
+
+    public void deleteAll(Collection<String> ids) {
+        profileDetailsMongoRepository.deleteAllById(ids);
+    }
+
+    // Ids of the reviews made by the users (both layouts)
+    public List<String> findReviewIdsMadeBy(Collection<String> ids) {
+        Query query = new Query(Criteria.where("_id").in(ids));
+        query.fields().include("reviews_made.review_id");
+        List<String> reviewIds = new ArrayList<>();
+        for (String collection : List.of("profile_details", "users")) {
+            for (Document user : mongoTemplate.find(query, Document.class, collection)) {
+                List<Document> reviews = user.getList("reviews_made", Document.class);
+                if (reviews == null) continue;
+                for (Document review : reviews) {
+                    reviewIds.add(review.getString("review_id"));
+                }
+            }
+        }
+        return reviewIds;
+    }
+
+    // Removes the reviews on the targets from the reviews made by their authors (both layouts)
+    public void removeReviewReferences(Collection<String> targetIds) {
+        List<String> authorIds = profileDetailsMongoRepository.findAuthorsOfReviewsOn(targetIds).stream()
+                .map(ProfileDetailsDocument::getId).toList();
+        profileDetailsMongoRepository.removeReviewReferences(targetIds);
+        if (!authorIds.isEmpty()) {
+            userMongoRepository.incrementVersion(authorIds); // their profiles changed (ETag)
+        }
+        userMongoRepository.removeReviewReferences(targetIds);
+    }
+
+    // Moves the cold fields of the existing users to profile_details, in batches ordered by _id.
+    // Only the users still holding cold fields are read: an interrupted run is resumed by running it again.
+    // Returns the number of migrated users.
+    public long migrate(int batchSize) {
+        Criteria legacy = new Criteria().orOperator(COLD_FIELDS.stream()
+                .map(field -> Criteria.where(field).exists(true)).toArray(Criteria[]::new));
+        long migrated = 0;
+        Object lastId = null;
+        while (true) {
+            Query query = new Query(lastId == null ? legacy
+                    : new Criteria().andOperator(Criteria.where("_id").gt(lastId), legacy));
+            query.with(Sort.by("_id")).limit(batchSize);
+            query.fields().include(COLD_FIELDS.toArray(new String[0]));
+            List<Document> users = mongoTemplate.find(query, Document.class, "users");
+            if (users.isEmpty()) {
+                break;
+            }
+
+            BulkOperations details = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, "profile_details");
+            BulkOperations hot = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, "users");
+            for (Document user : users) {
+                Query byId = new Query(Criteria.where("_id").is(user.get("_id")));
+                Update copy = new Update();
+                Update remove = new Update();
+                for (String field : COLD_FIELDS) {
+                    if (user.containsKey(field)) {
+                        copy.set(field, user.get(field));
+                        remove.unset(field);
+                    }
+                }
+                details.upsert(byId, copy);
+                hot.updateOne(byId, remove);
+            }
+            // Details first: a failure in between leaves copies only, completed by the next run
+            details.execute();
+            hot.execute();
+
+            migrated += users.size();
+            lastId = users.get(users.size() - 1).get("_id");
+        }
+        return migrated;
+    }
+
+    private static ProfileDetailsDocument toDetails(UserDocument user) {
+        return new ProfileDetailsDocument(user.getId(), user.getBodyType(), user.getDiet(), user.getDrinks(),
+                user.getEducation(), user.getEthnicity(), user.getHeight(), user.getIncome(), user.getJob(),
+                user.getOffspring(), user.getPets(), user.getReligion(), user.getSmokes(), user.getSpeaks(),
+                user.getEssay0(), user.getReviewsMade());
+    }
+
+    private static void applyDetails(ProfileDetailsDocument details, UserDocument user) {
+        user.setBodyType(details.getBodyType());
+        user.setDiet(details.getDiet());
+        user.setDrinks(details.getDrinks());
+        user.setEducation(details.getEducation());
+        user.setEthnicity(details.getEthnicity());
+        user.setHeight(details.getHeight());
+        user.setIncome(details.getIncome());
+        user.setJob(details.getJob());
+        user.setOffspring(details.getOffspring());
+        user.setPets(details.getPets());
+        user.setReligion(details.getReligion());
+        user.setSmokes(details.getSmokes());
+        user.setSpeaks(details.getSpeaks());
+        user.setEssay0(details.getEssay0());
+        user.setReviewsMade(details.getReviewsMade());
+    }
+
+    private static void clearDetails(UserDocument user) {
+        applyDetails(new ProfileDetailsDocument(), user);
+    }
+}
@@ -0,0 +1,141 @@
+package it.unipi.LoveMining.service.user;
+
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import it.unipi.LoveMining.model.mongo.UserDocument;
+import it.unipi.LoveMining.service.utility.InterestExtractorService;
+import lombok.RequiredArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Service
+@RequiredArgsConstructor
+// Service class for the validation of a profile update and its merge into the stored user
+// (no database access: UserService syncs the result to both databases)
+public class ProfileUpdateService {
+
+    private final InterestExtractorService interestExtractorService;
+    private final PasswordEncoder passwordEncoder;
+
+    // What changed in the graph-side fields of the user
+    public record ProfileChanges(boolean basicInfo, boolean interests, boolean location) {
+    }
+
+    // Validates the non-null values of inputUser and copies them on userDoc
+    public ProfileChanges merge(UserDocument userDoc, UserDocument inputUser) throws Exception {
+        // Flags to track what needs to be synced to Neo4j
+        boolean updateBasicInfo = false;
+        boolean updateInterests = false;
+        boolean updateLocation = false;
+
+        // Validation (Age, Sex, Orientation, Status)
+        // Use inputUser as the source of "new" values
+        Integer newAge = inputUser.getAge();
+        String newSex = inputUser.getSex();
+        String newOrientation = inputUser.getOrientation();
+
+        if (newAge != null) { // age validation
+            if (newAge < 18 || newAge > 100)
+                throw new Exception("Age must be between 18 and 100");
+            userDoc.setAge(newAge);
+            updateBasicInfo = true;
+        }
+
+        if (newSex != null) { // sex validation
+            if (!newSex.equalsIgnoreCase("m") && !newSex.equalsIgnoreCase("f"))
+                throw new Exception("Sex must be 'm' or 'f'");
+            userDoc.setSex(newSex);
+            updateBasicInfo = true;
+        }
+
+        if (newOrientation != null) { // orientation validation
+            if (!newOrientation.equalsIgnoreCase("straight") &&
+                    !newOrientation.equalsIgnoreCase("gay") &&
+                    !newOrientation.equalsIgnoreCase("bisexual"))
+                throw new Exception("Orientation must be 'straight', 'gay', or 'bisexual'");
+            userDoc.setOrientation(newOrientation);
+            updateBasicInfo = true;
+        }
+
+        if (inputUser.getStatus() != null) { // status validation
+            if (!inputUser.getStatus().equalsIgnoreCase("available") &&
+                    !inputUser.getStatus().equalsIgnoreCase("single") &&
+                    !inputUser.getStatus().equalsIgnoreCase("seeing someone") &&
+                    !inputUser.getStatus().equalsIgnoreCase("married") &&
+                    !inputUser.getStatus().equalsIgnoreCase("unknown"))
+                throw new Exception("Status must be 'available', 'single', 'seeing someone', 'married' or 'unknown'");
+            userDoc.setStatus(inputUser.getStatus().toLowerCase().trim());
+        }
+
+        // Password update
+        if (inputUser.getPassword() != null && !inputUser.getPassword().isEmpty()) {
+            if (inputUser.getPassword().length() < 4) {
+                throw new Exception("New password must be at least 4 characters long.");
+            }
+            userDoc.setPassword(passwordEncoder.encode(inputUser.getPassword()));
+        }
+
+        // Simple Fields Update (Mongo only)
+        if (inputUser.getBodyType() != null)
+            userDoc.setBodyType(inputUser.getBodyType());
+        if (inputUser.getDiet() != null)
+            userDoc.setDiet(inputUser.getDiet());
+        if (inputUser.getDrinks() != null)
+            userDoc.setDrinks(inputUser.getDrinks());
+        if (inputUser.getEducation() != null)
+            userDoc.setEducation(inputUser.getEducation());
+        if (inputUser.getEthnicity() != null)
+            userDoc.setEthnicity(inputUser.getEthnicity());
+        if (inputUser.getHeight() != null)
+            userDoc.setHeight(inputUser.getHeight());
+        if (inputUser.getIncome() != null)
+            userDoc.setIncome(inputUser.getIncome());
+        if (inputUser.getJob() != null)
+            userDoc.setJob(inputUser.getJob());
+        if (inputUser.getOffspring() != null)
+            userDoc.setOffspring(inputUser.getOffspring());
+        if (inputUser.getPets() != null)
+            userDoc.setPets(inputUser.getPets());
+        if (inputUser.getSmokes() != null)
+            userDoc.setSmokes(inputUser.getSmokes());
+        if (inputUser.getSpeaks() != null)
+            userDoc.setSpeaks(inputUser.getSpeaks());
+
+        // Essay & Interest Matching Logic
+        String newEssay = inputUser.getEssay0();
+        if (newEssay != null && !newEssay.trim().isEmpty()) {
+            userDoc.setEssay0(newEssay); // Essay
+
+            // Extract new interests
+            List<String> foundInterests = new ArrayList<>(
+                    interestExtractorService.extractInterestsFromText(newEssay));
+
+            userDoc.setInterests(foundInterests);
+            userDoc.setInterestBits(interestExtractorService.encodeInterests(foundInterests));
+            updateInterests = true;
+        }
+
+        // City & State Logic
+        String newCity = inputUser.getCity();
+        String newState = inputUser.getState();
+        boolean cityChanged = newCity != null && !newCity.trim().isEmpty();
+        boolean stateChanged = newState != null && !newState.trim().isEmpty();
+
+        if (cityChanged || stateChanged) {
+            String targetCityName = cityChanged ? newCity : userDoc.getCity();
+            String targetStateName = stateChanged ? newState : userDoc.getState();
+
+            if (targetCityName == null || targetStateName == null) {
+                throw new Exception("City and State must be both present to update location.");
+            }
+
+            userDoc.setCity(targetCityName);
+            userDoc.setState(targetStateName);
+            updateLocation = true;
+        }
+
+        return new ProfileChanges(updateBasicInfo, updateInterests, updateLocation);
+    }
+}
@@ -0,0 +1,187 @@
+package it.unipi.LoveMining.service.user;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import it.unipi.LoveMining.model.dto.MatchCard;
+import it.unipi.LoveMining.model.dto.RecommendationCard;
+import it.unipi.LoveMining.model.mongo.UserDocument;
+import it.unipi.LoveMining.repository.mongo.ReactiveReviewMongoRepository;
+import it.unipi.LoveMining.repository.mongo.ReactiveUserMongoRepository;
+import it.unipi.LoveMining.repository.neo4j.ReactiveUserNeo4jRepository;
+import it.unipi.LoveMining.service.profiling.RecommendationRankingEvent;
+import it.unipi.LoveMining.service.profiling.SwipeEvent;
+import it.unipi.LoveMining.service.utility.VersionService;
+import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+@Service
+@RequiredArgsConstructor
+// Service class for the reactive variant of the swipe, recommendation and match endpoints:
+// same rules and outcomes of UserService, on the reactive MongoDB and Neo4j drivers
+public class ReactiveUserService {
+
+    private final ReactiveUserMongoRepository reactiveUserMongoRepository;
+    private final ReactiveReviewMongoRepository reactiveReviewMongoRepository;
+    private final ReactiveUserNeo4jRepository reactiveUserNeo4jRepository;
+    private final DislikeStoreService dislikeStoreService;
+    private final InterestWeightService interestWeightService;
+    private final SimilarUsersService similarUsersService;
+    private final CoLikeService coLikeService;
+    private final VersionService versionService;
+    private final UserService userService;
+
+    // Matches joined with their profile cards per batch: one MongoDB '$in' query every batch of rows
+    private static final int MATCHES_BATCH_SIZE = 50;
+
+    // Same ranking settings of UserService
+    @Value("${lovemining.recommendations.ranking:graph}")
+    private String ranking;
+
+    @Value("${lovemining.recommendations.candidate-limit:5000}")
+    private int candidateLimit;
+
+    // Hot document of the user (id, interests and interest bitset)
+    public Mono<UserDocument> getUserByEmail(String email) {
+        return reactiveUserMongoRepository.findByEmail(email);
+    }
+
+    // Likes a User: the Neo4j statements run in one reactive transaction, as in UserService.likeUser
+    @Transactional("reactiveTransactionManager")
+    public Mono<String> likeUser(String actorId, String targetId) {
+        if (actorId.equals(targetId)) {
+            return Mono.error(new Exception("Cannot like himself."));
+        }
+        // Every database call is counted when it is subscribed, the event is committed however the swipe ends
+        SwipeEvent event = new SwipeEvent();
+        event.begin();
+        String[] outcome = {"error"};
+        return reactiveUserNeo4jRepository.areMatched(actorId, targetId).doOnSubscribe(s -> event.roundTrips++).flatMap(matched -> {
+            if (matched) {
+                outcome[0] = "already_matched";
+                return Mono.just("Already matched.");
+            }
+            return reactiveUserNeo4jRepository.hasLiked(targetId, actorId).doOnSubscribe(s -> event.roundTrips++).flatMap(targetLikesActor -> {
+                if (targetLikesActor) {
+                    // MATCH!
+                    return reactiveUserNeo4jRepository.transformLikeToMatch(actorId, targetId).doOnSubscribe(s -> event.roundTrips++)
+                            .then(reactiveUserMongoRepository.incrementMatchesGeneration(List.of(actorId, targetId))
+                                    .doOnSubscribe(s -> event.roundTrips++))
+                            .then(Mono.fromCallable(() -> {
+                                versionService.bumpAnalytics();
+                                similarUsersService.onSwipe(actorId);
+                                similarUsersService.onSwipe(targetId);
+                                outcome[0] = "match";
+                                return "It's a Match!";
+                            }));
+                }
+                return reactiveUserNeo4jRepository.createLikeRelationship(actorId, targetId).doOnSubscribe(s -> event.roundTrips++)
+                        .then(Mono.fromCallable(() -> {
+                            versionService.bumpAnalytics();
+                            similarUsersService.onSwipe(actorId);
+                            outcome[0] = "like";
+                            return "Like send.";
+                        }));
+            });
+        }).doFinally(signal -> userService.countSwipe(event, signal == SignalType.CANCEL ? "cancelled" : outcome[0]));
+    }
+
+    // Dislikes a User (graph edge or off-graph store, as in UserService.dislikeUser)
+    @Transactional("reactiveTransactionManager")
+    public Mono<Void> dislikeUser(String actorId, String targetId) {
+        if (actorId.equals(targetId)) {
+            return Mono.error(new Exception("Cannot dislike himself."));
+        }
+        SwipeEvent event = new SwipeEvent();
+        event.begin();
+        String[] outcome = {"error"};
+        Mono<?> write = dislikeStoreService.isOffGraph()
+                ? dislikeStoreService.addDislikeReactive(actorId, targetId)
+                        .doOnSubscribe(s -> event.roundTrips += DislikeStoreService.ADD_DISLIKE_CALLS)
+                : reactiveUserNeo4jRepository.createDislikeRelationship(actorId, targetId).doOnSubscribe(s -> event.roundTrips++);
+        return write.then(Mono.fromRunnable(() -> outcome[0] = "dislike"))
+                .doFinally(signal -> userService.countSwipe(event, signal == SignalType.CANCEL ? "cancelled" : outcome[0]))
+                .then();
+    }
+
+    // Recommendations with filters on location ('City' or 'State') and age (same rankings of UserService)
+    public Flux<String> getRecommendations(String userId, String filter, int minAge, int maxAge) {
+        RecommendationRankingEvent event = new RecommendationRankingEvent();
+        event.begin();
+        event.filter = filter;
+        return dislikeStoreService.getExcludedIdsReactive(userId).flatMap(excludedIds -> {
+            if (!"bitset".equalsIgnoreCase(ranking)) {
+                return reactiveUserNeo4jRepository.findRecommendations(userId, filter, minAge, maxAge, excludedIds)
+                        .collectList()
+                        .doOnNext(recommendations -> {
+                            event.ranking = "graph";
+                            event.candidates = -1;
+                            event.results = recommendations.size();
+                            event.commit();
+                        });
+            }
+
+            // In-memory ranking: the interest bitset of the user and the candidates are read concurrently
+            Mono<Optional<long[]>> myBits = reactiveUserMongoRepository.findById(userId)
+                    .map(me -> Optional.ofNullable(me.getInterestBits()))
+                    .defaultIfEmpty(Optional.empty());
+            // The co-like neighbours pass the same filters and join the candidates
+            boolean blended = coLikeService.isBlended(ranking);
+            Map<String, Double> coLikeScores = blended ? coLikeService.score(userId) : Collections.emptyMap();
+            double weight = blended ? coLikeService.getWeight() : 0.0;
+            Mono<List<Map<String, Object>>> candidates = reactiveUserNeo4jRepository.findRecommendationCandidates(
+                    userId, filter, minAge, maxAge, excludedIds, candidateLimit).collectList();
+            if (!coLikeScores.isEmpty()) {
+                candidates = Mono.zip(candidates, reactiveUserNeo4jRepository.findRecommendationCandidatesAmong(
+                                userId, filter, minAge, maxAge, excludedIds, coLikeService.topScored(coLikeScores))
+                                .collectList())
+                        .map(loaded -> UserService.mergeCandidates(loaded.getT1(), loaded.getT2()));
+            }
+            return Mono.zip(myBits, candidates).map(loaded -> {
+                List<String> recommendations = UserService.rankCandidates(loaded.getT2(), loaded.getT1().orElse(null),
+                        interestWeightService, coLikeScores, weight, UserService.RECOMMENDATIONS_LIMIT);
+
+                event.ranking = weight > 0 ? "bitset+colike" : "bitset";
+                event.candidates = loaded.getT2().size();
+                event.results = recommendations.size();
+                event.commit();
+                return recommendations;
+            });
+        }).flatMapIterable(recommendations -> recommendations);
+    }
+
+    // Expands recommended ids into cards: the two MongoDB aggregations are subscribed together
+    public Flux<RecommendationCard> getRecommendationCards(UserDocument me, List<String> ids) {
+        if (ids.isEmpty()) {
+            return Flux.empty();
+        }
+        return Mono.zip(
+                reactiveUserMongoRepository.findRecommendationCards(ids, UserService.ESSAY_PREVIEW_LENGTH).collectList(),
+                reactiveReviewMongoRepository.findAverageRatings(ids).collectList())
+                .flatMapIterable(loaded -> UserService.toRecommendationCards(me, ids, loaded.getT1(), loaded.getT2()));
+    }
+
+    // Every match with its profile card, most recent first. The rows are pulled from Neo4j as the client
+    // reads the stream; every batch of rows costs one MongoDB '$in' query for the cards.
+    public Flux<MatchCard> getUserMatches(String id) {
+        return reactiveUserNeo4jRepository.findMatches(id)
+                .buffer(MATCHES_BATCH_SIZE)
+                .concatMap(rows -> {
+                    List<String> ids = new ArrayList<>(rows.size());
+                    for (Map<String, Object> row : rows) {
+                        ids.add((String) row.get("userId"));
+                    }
+                    return reactiveUserMongoRepository.findByIdIn(ids).collectList()
+                            .flatMapIterable(cards -> UserService.toMatchCards(rows, cards));
+                }, 1);
+    }
+}
@@ -0,0 +1,391 @@
+package it.unipi.LoveMining.service.user;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import it.unipi.LoveMining.model.mongo.UserDocument;
+import it.unipi.LoveMining.repository.neo4j.UserNeo4jRepository;
+import it.unipi.LoveMining.service.utility.HnswIndex;
+import it.unipi.LoveMining.service.utility.InterestExtractorService;
+import lombok.RequiredArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+@Service
+@RequiredArgsConstructor
+// Service class for the "similar to who you liked" recommendations (user embeddings + HNSW index)
+public class SimilarUsersService {
+
+    private final MongoTemplate mongoTemplate;
+    private final UserNeo4jRepository userNeo4jRepository;
+    private final InterestExtractorService interestExtractorService;
+    private final InterestWeightService interestWeightService;
+    private final DislikeStoreService dislikeStoreService;
+
+    @Value("${lovemining.similar.dimensions:64}")
+    private int dimensions;
+
+    // Weight of the co-like part (mean interests of the liked users) in the embedding
+    @Value("${lovemining.similar.co-like-weight:0.5}")
+    private double coLikeWeight;
+
+    @Value("${lovemining.similar.hnsw-m:16}")
+    private int hnswM;
+
+    @Value("${lovemining.similar.ef-construction:100}")
+    private int efConstruction;
+
+    @Value("${lovemining.similar.ef-search:64}")
+    private int efSearch;
+
+    private static final int MAX_EF = 4096;
+    private static final int BATCH_SIZE = 5000;
+    private static final long SEED = 42L;
+
+    private record Profile(String id, Integer age, String sex, String orientation, String city, String state) {
+    }
+
+    // Index and data of one build; replaced as a whole by rebuild()
+    private static class Snapshot {
+        HnswIndex index;
+        float[][] projection;
+        final Map<String, float[]> contentByUser = new ConcurrentHashMap<>();
+        final Map<String, Integer> nodeByUser = new ConcurrentHashMap<>();
+        final Map<Integer, Profile> profileByNode = new ConcurrentHashMap<>();
+    }
+
+    private volatile Snapshot snapshot;
+
+    // Users whose embedding changed since the last incremental refresh
+    private final Set<String> dirtyUsers = ConcurrentHashMap.newKeySet();
+
+    // Builds and refreshes one at a time (not synchronized, as in CoLikeService)
+    private final ReentrantLock indexLock = new ReentrantLock();
+
+    public boolean isReady() {
+        return snapshot != null;
+    }
+
+    // Offline build: content vectors from the IDF-weighted interests (random projection to
+    // 'dimensions'), then one embedding per user mixing his content with the content of the users
+    // he liked or matched. Returns the number of indexed users.
+    public int rebuild() {
+        indexLock.lock();
+        try {
+            return build();
+        } finally {
+            indexLock.unlock();
+        }
+    }
+
+    private int build() {
+        Snapshot next = new Snapshot();
+        next.projection = randomProjection(interestExtractorService.getInterestCount(), dimensions);
+        next.index = new HnswIndex(dimensions, hnswM, efConstruction, SEED);
+        Map<String, Profile> profiles = new LinkedHashMap<>();
+
+        // 1. Content vectors and profiles from MongoDB (projected, in _id order)
+        String lastId = null;
+        while (true) {
+            List<UserDocument> users = mongoTemplate.find(profileQuery(lastId), UserDocument.class);
+            if (users.isEmpty()) break;
+            for (UserDocument user : users) {
+                profiles.put(user.getId(), toProfile(user));
+                next.contentByUser.put(user.getId(), contentVector(next.projection, user.getInterestBits()));
+            }
+            lastId = users.get(users.size() - 1).getId();
+        }
+
+        // 2. Co-like part from the LIKES/MATCHED neighbourhoods, then insertion in the index
+        String after = "";
+        while (true) {
+            List<Map<String, Object>> batch = userNeo4jRepository.findSwipeNeighbourhoods(after, BATCH_SIZE);
+            if (batch.isEmpty()) break;
+            for (Map<String, Object> row : batch) {
+                String userId = (String) row.get("id");
+                if (userId.compareTo(after) > 0) after = userId;
+                Profile profile = profiles.get(userId);
+                if (profile == null) continue;
+                @SuppressWarnings("unchecked")
+                List<String> liked = (List<String>) row.get("liked");
+                float[] embedding = embedding(next, userId, liked);
+                if (embedding != null) {
+                    insert(next, profile, embedding);
+                }
+            }
+        }
+
+        snapshot = next;
+        dirtyUsers.clear();
+        System.out.println("Similar users index built: " + next.nodeByUser.size() + " users");
+        return next.nodeByUser.size();
+    }
+
+    // Called on every like/match: the embedding of the actor is recomputed at the next refresh
+    public void onSwipe(String actorId) {
+        if (snapshot != null) {
+            dirtyUsers.add(actorId);
+        }
+    }
+
+    // Incremental refresh: the dirty users are re-embedded and re-inserted, the old node is marked deleted
+    @Scheduled(fixedDelayString = "${lovemining.similar.refresh-ms:30000}")
+    public void refreshDirty() {
+        indexLock.lock();
+        try {
+            refresh();
+        } finally {
+            indexLock.unlock();
+        }
+    }
+
+    private void refresh() {
+        Snapshot current = snapshot;
+        if (current == null || dirtyUsers.isEmpty()) {
+            return;
+        }
+        List<String> userIds = new ArrayList<>(dirtyUsers);
+        dirtyUsers.removeAll(userIds);
+        try {
+            Query query = new Query(Criteria.where("_id").in(userIds));
+            includeProfileFields(query);
+            for (UserDocument user : mongoTemplate.find(query, UserDocument.class)) {
+                current.contentByUser.put(user.getId(), contentVector(current.projection, user.getInterestBits()));
+                float[] embedding = embedding(current, user.getId(), userNeo4jRepository.findLikedOrMatchedIds(user.getId()));
+                if (embedding == null) continue;
+                Integer previous = current.nodeByUser.get(user.getId());
+                insert(current, toProfile(user), embedding);
+                if (previous != null) {
+                    current.index.markDeleted(previous);
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("ERROR refreshing similar users index: " + e.getMessage());
+            dirtyUsers.addAll(userIds);
+        }
+    }
+
+    // Users similar to the ones liked or matched by the user, filtered by the rules of findRecommendations
+    public List<String> findSimilarToLiked(String userId, String filter, int minAge, int maxAge, int limit) {
+        Snapshot current = snapshot;
+        if (current == null) {
+            return List.of();
+        }
+        Integer myNode = current.nodeByUser.get(userId);
+        if (myNode == null) {
+            return List.of();
+        }
+        Profile me = current.profileByNode.get(myNode);
+
+        // Query vector: mean embedding of the liked users (own embedding when nobody was liked yet)
+        float[] query = new float[dimensions];
+        int count = 0;
+        for (String likedId : userNeo4jRepository.findLikedOrMatchedIds(userId)) {
+            Integer node = current.nodeByUser.get(likedId);
+            if (node == null) continue;
+            add(query, current.index.getVector(node), 1.0);
+            count++;
+        }
+        if (count == 0 || !normalize(query)) {
+            query = current.index.getVector(myNode);
+        }
+
+        Set<String> excluded = new HashSet<>(userNeo4jRepository.findRelatedIds(userId));
+        excluded.addAll(dislikeStoreService.getExcludedIds(userId));
+        excluded.add(userId);
+
+        List<String> recommendations = new ArrayList<>();
+        for (HnswIndex.Result result : current.index.search(query, limit, efSearch, MAX_EF, node -> {
+            Profile candidate = current.profileByNode.get(node);
+            return candidate != null && !excluded.contains(candidate.id())
+                    && candidate.age() != null && candidate.age() >= minAge && candidate.age() <= maxAge
+                    && sameLocation(filter, me, candidate)
+                    && isCompatible(me, candidate);
+        })) {
+            recommendations.add(current.profileByNode.get(result.node()).id());
+        }
+        return recommendations;
+    }
+
+    // Recall@k and latency of the HNSW search against the exact brute-force ranking,
+    // on 'samples' random indexed users used as queries
+    public Map<String, Object> evaluate(int samples, int k) {
+        Snapshot current = snapshot;
+        Map<String, Object> report = new LinkedHashMap<>();
+        if (current == null) {
+            report.put("error", "Index not built");
+            return report;
+        }
+        List<Integer> nodes = new ArrayList<>(current.nodeByUser.values());
+        Random random = new Random(SEED);
+        long[] annNanos = new long[Math.min(samples, nodes.size())];
+        long[] exactNanos = new long[annNanos.length];
+        double recallSum = 0.0;
+
+        for (int s = 0; s < annNanos.length; s++) {
+            int queryNode = nodes.get(random.nextInt(nodes.size()));
+            float[] query = current.index.getVector(queryNode);
+
+            long start = System.nanoTime();
+            List<HnswIndex.Result> ann = current.index.search(query, k, efSearch, MAX_EF, node -> node != queryNode);
+            annNanos[s] = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            List<HnswIndex.Result> exact = current.index.bruteForce(query, k, node -> node != queryNode);
+            exactNanos[s] = System.nanoTime() - start;
+
+            Set<Integer> exactNodes = new HashSet<>();
+            for (HnswIndex.Result result : exact) exactNodes.add(result.node());
+            int hits = 0;
+            for (HnswIndex.Result result : ann) if (exactNodes.contains(result.node())) hits++;
+            recallSum += exact.isEmpty() ? 1.0 : (double) hits / exact.size();
+        }
+
+        report.put("indexedUsers", current.nodeByUser.size());
+        report.put("samples", annNanos.length);
+        report.put("k", k);
+        report.put("efSearch", efSearch);
+        report.put("recall", annNanos.length == 0 ? 0.0 : recallSum / annNanos.length);
+        report.put("annAvgMicros", average(annNanos) / 1000);
+        report.put("annP99Micros", percentile(annNanos, 0.99) / 1000);
+        report.put("exactAvgMicros", average(exactNanos) / 1000);
+        report.put("exactP99Micros", percentile(exactNanos, 0.99) / 1000);
+        return report;
+    }
+
+    private void insert(Snapshot target, Profile profile, float[] embedding) {
+        int node = target.index.add(embedding);
+        target.profileByNode.put(node, profile);
+        target.nodeByUser.put(profile.id(), node);
+    }
+
+    // normalize( normalize(content) + w * normalize(mean content of the liked users) ), null if both are empty
+    private float[] embedding(Snapshot source, String userId, List<String> liked) {
+        float[] embedding = new float[dimensions];
+        float[] own = source.contentByUser.get(userId);
+        if (own != null) {
+            float[] copy = Arrays.copyOf(own, own.length);
+            if (normalize(copy)) add(embedding, copy, 1.0);
+        }
+        if (liked != null && !liked.isEmpty()) {
+            float[] coLike = new float[dimensions];
+            for (String likedId : liked) {
+                float[] content = source.contentByUser.get(likedId);
+                if (content != null) add(coLike, content, 1.0);
+            }
+            if (normalize(coLike)) add(embedding, coLike, coLikeWeight);
+        }
+        return normalize(embedding) ? embedding : null;
+    }
+
+    private float[] contentVector(float[][] projection, long[] bits) {
+        float[] vector = new float[dimensions];
+        if (bits == null) return vector;
+        for (int w = 0; w < bits.length; w++) {
+            long word = bits[w];
+            while (word != 0) {
+                int ordinal = (w << 6) + Long.numberOfTrailingZeros(word);
+                if (ordinal < projection.length) {
+                    add(vector, projection[ordinal], interestWeightService.getWeight(ordinal));
+                }
+                word &= word - 1;
+            }
+        }
+        return vector;
+    }
+
+    private static float[][] randomProjection(int rows, int dimensions) {
+        Random random = new Random(SEED);
+        float[][] projection = new float[rows][dimensions];
+        double scale = 1.0 / Math.sqrt(dimensions);
+        for (float[] row : projection) {
+            for (int d = 0; d < dimensions; d++) {
+                row[d] = (float) (random.nextGaussian() * scale);
+            }
+        }
+        return projection;
+    }
+
+    private static void add(float[] target, float[] source, double weight) {
+        for (int i = 0; i < target.length; i++) {
+            target[i] += (float) (source[i] * weight);
+        }
+    }
+
+    private static boolean normalize(float[] vector) {
+        double norm = 0.0;
+        for (float value : vector) norm += value * value;
+        if (norm == 0.0) return false;
+        float inverse = (float) (1.0 / Math.sqrt(norm));
+        for (int i = 0; i < vector.length; i++) vector[i] *= inverse;
+        return true;
+    }
+
+    private static boolean sameLocation(String filter, Profile me, Profile candidate) {
+        if ("City".equals(filter)) return me.city() != null && me.city().equals(candidate.city());
+        if ("State".equals(filter)) return me.state() != null && me.state().equals(candidate.state());
+        return false;
+    }
+
+    // Same Sex & Orientation rules of the recommendation queries
+    private static boolean isCompatible(Profile me, Profile candidate) {
+        if (me.sex() == null || candidate.sex() == null) return false;
+        boolean sameSex = me.sex().equals(candidate.sex());
+        String mine = me.orientation();
+        String theirs = candidate.orientation();
+        if ("straight".equals(mine)) {
+            return !sameSex && ("straight".equals(theirs) || "bisexual".equals(theirs));
+        }
+        if ("gay".equals(mine)) {
+            return sameSex && ("gay".equals(theirs) || "bisexual".equals(theirs));
+        }
+        if ("bisexual".equals(mine)) {
+            return ("gay".equals(theirs) && sameSex) || ("straight".equals(theirs) && !sameSex)
+                    || "bisexual".equals(theirs);
+        }
+        return false;
+    }
+
+    private static Query profileQuery(String lastId) {
+        Query query = new Query();
+        if (lastId != null) {
+            query.addCriteria(Criteria.where("_id").gt(lastId));
+        }
+        query.with(Sort.by("_id")).limit(BATCH_SIZE);
+        includeProfileFields(query);
+        return query;
+    }
+
+    private static void includeProfileFields(Query query) {
+        query.fields().include("age", "sex", "orientation", "city", "state", "interestBits");
+    }
+
+    private static Profile toProfile(UserDocument user) {
+        return new Profile(user.getId(), user.getAge(), user.getSex(), user.getOrientation(), user.getCity(), user.getState());
+    }
+
+    private static double average(long[] values) {
+        return values.length == 0 ? 0.0 : Arrays.stream(values).average().orElse(0.0);
+    }
+
+    private static double percentile(long[] values, double percentile) {
+        if (values.length == 0) return 0.0;
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(percentile * sorted.length) - 1)];
+    }
+}
@@ -0,0 +1,98 @@
+package it.unipi.LoveMining.service.user;
+
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import it.unipi.LoveMining.model.mongo.UserDocument;
+import it.unipi.LoveMining.repository.mongo.UserMongoRepository;
+import lombok.RequiredArgsConstructor;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+@Service
+@RequiredArgsConstructor
+// Service class for the sparse fieldsets of the user profile ('fields=' and 'view=' parameters):
+// only the requested fields are read from MongoDB and returned
+public class UserFieldsService {
+
+    private final UserMongoRepository userMongoRepository;
+    private final ObjectMapper objectMapper;
+    private final ProfileDetailsService profileDetailsService;
+
+    // Fields that can be requested (JSON names of UserDocument, the password hash is never selectable)
+    private static final Set<String> SELECTABLE_FIELDS = Set.of(
+            "id", "email", "isAdmin", "age", "status", "sex", "orientation", "bodyType", "diet", "drinks",
+            "education", "ethnicity", "height", "income", "job", "offspring", "pets", "religion", "smokes",
+            "speaks", "city", "state", "essay0", "interests", "reviewsMade");
+
+    // Predefined views ('full' = the whole document, as without parameters)
+    private static final Map<String, List<String>> VIEWS = Map.of(
+            "card", List.of("id", "age", "sex", "orientation", "city", "state"),
+            "profile", List.of("id", "age", "status", "sex", "orientation", "bodyType", "diet", "drinks",
+                    "education", "ethnicity", "height", "income", "job", "offspring", "pets", "religion",
+                    "smokes", "speaks", "city", "state", "essay0", "interests"));
+
+    private static final String FULL_VIEW = "full";
+
+    // Fields selected by the parameters, null when the whole document is requested.
+    // 'fields' (comma separated) is added to the fields of the view.
+    public Set<String> resolveFields(String view, String fields) {
+        Set<String> selected = new LinkedHashSet<>();
+        if (view != null && !view.isBlank()) {
+            if (view.equals(FULL_VIEW)) {
+                return null;
+            }
+            List<String> viewFields = VIEWS.get(view);
+            if (viewFields == null) {
+                throw new IllegalArgumentException("Unknown view: " + view + ". Use card, profile or full");
+            }
+            selected.addAll(viewFields);
+        }
+        if (fields != null && !fields.isBlank()) {
+            for (String field : fields.split(",")) {
+                String name = field.trim();
+                if (name.isEmpty()) continue;
+                if (!SELECTABLE_FIELDS.contains(name)) {
+                    throw new IllegalArgumentException("Unknown field: " + name);
+                }
+                selected.add(name);
+            }
+        }
+        if (selected.isEmpty()) {
+            return null;
+        }
+        selected.add("id");
+        return selected;
+    }
+
+    // Requested fields of a user by ID, null if the user doesn't exist
+    public Map<String, Object> getUserFields(String id, Set<String> fields) {
+        return toMap(userMongoRepository.findProjectedById(id, fields), fields);
+    }
+
+    // Requested fields of a user by Email, null if the user doesn't exist
+    public Map<String, Object> getUserFieldsByEmail(String email, Set<String> fields) {
+        return toMap(userMongoRepository.findProjectedByEmail(email, fields), fields);
+    }
+
+    // Only the requested fields are serialized (the others are null in the projected document).
+    // The cold fields requested are read from profile_details with the same projection.
+    private Map<String, Object> toMap(Optional<UserDocument> user, Set<String> fields) {
+        if (user.isEmpty()) {
+            return null;
+        }
+        Map<String, Object> all = objectMapper.convertValue(profileDetailsService.withDetails(user.get(), fields),
+                objectMapper.getTypeFactory().constructMapType(Map.class, String.class, Object.class));
+        Map<String, Object> result = new LinkedHashMap<>();
+        for (String field : fields) {
+            result.put(field, all.get(field));
+        }
+        return result;
+    }
+}
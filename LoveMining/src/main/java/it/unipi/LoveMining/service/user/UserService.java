@@ -2,10 +2,16 @@ package it.unipi.LoveMining.service.user;
 
 import org.springframework.stereotype.Service;
 
+import it.unipi.LoveMining.model.dto.MatchCard;
+import it.unipi.LoveMining.model.dto.ProfileCard;
+import it.unipi.LoveMining.model.dto.RecommendationCard;
 import it.unipi.LoveMining.model.mongo.ReviewDocument;
 import it.unipi.LoveMining.model.mongo.UserDocument;
 import it.unipi.LoveMining.repository.mongo.ReviewMongoRepository;
 import it.unipi.LoveMining.repository.mongo.UserMongoRepository;
+import it.unipi.LoveMining.service.profiling.DualWriteEvent;
+import it.unipi.LoveMining.service.profiling.RecommendationRankingEvent;
+import it.unipi.LoveMining.service.profiling.SwipeEvent;
 import lombok.RequiredArgsConstructor;
 
 import java.time.LocalDateTime;
@@ -19,24 +25,90 @@ public class UserService {
     private final UserMongoRepository userMongoRepository;
     private final ReviewMongoRepository reviewMongoRepository;
     private final it.unipi.LoveMining.repository.neo4j.UserNeo4jRepository userNeo4jRepository;
-    private final it.unipi.LoveMining.service.utility.InterestExtractorService interestExtractorService;
-    private final org.springframework.security.crypto.password.PasswordEncoder passwordEncoder;
-
-    // Retrieves a user by their ID from MongoDB
+    private final DislikeStoreService dislikeStoreService;
+    private final it.unipi.LoveMining.service.utility.CityGridIndexService cityGridIndexService;
+    private final InterestWeightService interestWeightService;
+    private final SimilarUsersService similarUsersService;
+    private final CoLikeService coLikeService;
+    private final it.unipi.LoveMining.service.utility.VersionService versionService;
+    private final ProfileDetailsService profileDetailsService;
+    private final ProfileUpdateService profileUpdateService;
+    private final io.micrometer.core.instrument.MeterRegistry meterRegistry;
+
+    // Executor of the parallel lookups (recommendation cards)
+    @org.springframework.beans.factory.annotation.Qualifier("lookupExecutor")
+    private final java.util.concurrent.Executor lookupExecutor;
+
+    static final int ESSAY_PREVIEW_LENGTH = 200;
+
+    // Same size of the 'LIMIT 10' of findRecommendations
+    static final int RECOMMENDATIONS_LIMIT = 10;
+
+    // 'graph' counts the shared Interest nodes in Cypher, 'bitset' scores the IDF-weighted interest bitsets
+    @org.springframework.beans.factory.annotation.Value("${lovemining.recommendations.ranking:graph}")
+    private String ranking;
+
+    // Max candidates read from the graph for the bitset ranking
+    @org.springframework.beans.factory.annotation.Value("${lovemining.recommendations.candidate-limit:5000}")
+    private int candidateLimit;
+
+    // Retrieves a user by their ID from MongoDB (full profile: hot document and details)
     public UserDocument getUser(String id) {
-        return userMongoRepository.findById(id).orElse(null);
+        return profileDetailsService.withDetails(userMongoRepository.findById(id).orElse(null));
+    }
+
+    // Retrieves the full profile of a user by their Email
+    public UserDocument getUserProfileByEmail(String email) {
+        return profileDetailsService.withDetails(getUserByEmail(email));
     }
 
-    // Retrieves a user by their Email from MongoDB
+    // Retrieves a user by their Email from MongoDB (hot document only: id, credentials, matching fields)
     public UserDocument getUserByEmail(String email) {
         return userMongoRepository.findByEmail(email).orElse(null);
     }
 
+    // Retrieves only the versions of a user (conditional GETs)
+    public UserDocument getUserVersions(String id) {
+        return userMongoRepository.findVersionsById(id).orElse(null);
+    }
+
+    public UserDocument getUserVersionsByEmail(String email) {
+        return userMongoRepository.findVersionsByEmail(email).orElse(null);
+    }
+
     // Retrieves matches (UserNodes) from Neo4j for a given User ID
     public java.util.Set<it.unipi.LoveMining.model.neo4j.UserNode> getUserMatches(String id) {
         return new java.util.HashSet<>(userNeo4jRepository.findMatches(id));
     }
 
+    // Retrieves a page of matches with their profile cards:
+    // one Neo4j query for the page and one MongoDB '$in' query for the cards
+    public List<MatchCard> getUserMatchesPage(String id, int page, int size) {
+        List<java.util.Map<String, Object>> rows = userNeo4jRepository.findMatchesPage(id, (long) page * size, size);
+
+        List<String> ids = new java.util.ArrayList<>(rows.size());
+        for (java.util.Map<String, Object> row : rows) {
+            ids.add((String) row.get("userId"));
+        }
+        List<ProfileCard> cards = ids.isEmpty() ? java.util.Collections.emptyList() : userMongoRepository.findByIdIn(ids);
+        return toMatchCards(rows, cards);
+    }
+
+    // Joins the match rows of Neo4j with the profile cards of MongoDB, in the order of the rows
+    public static List<MatchCard> toMatchCards(List<java.util.Map<String, Object>> rows, List<ProfileCard> profileCards) {
+        java.util.Map<String, ProfileCard> cards = new java.util.HashMap<>();
+        for (ProfileCard card : profileCards) {
+            cards.put(card.getId(), card);
+        }
+
+        List<MatchCard> matches = new java.util.ArrayList<>(rows.size());
+        for (java.util.Map<String, Object> row : rows) {
+            String userId = (String) row.get("userId");
+            matches.add(new MatchCard(userId, (java.time.ZonedDateTime) row.get("matchedAt"), cards.get(userId)));
+        }
+        return matches;
+    }
+
     // Retrieves reviews made by the user from MongoDB
     public java.util.List<UserDocument.ReviewSummary> getUserReviews(String id) {
         UserDocument user = getUser(id);
@@ -59,134 +131,49 @@ public class UserService {
             throw new Exception("User node not found in Graph");
         }
 
-        // Flags to track what needs to be synced to Neo4j
-        boolean updateBasicInfo = false;
-        boolean updateInterests = false;
-        boolean updateLocation = false;
-
-        // Validation (Age, Sex, Orientation, Status)
-        // Use inputUser as the source of "new" values
-        Integer newAge = inputUser.getAge();
-        String newSex = inputUser.getSex();
-        String newOrientation = inputUser.getOrientation();
-
-        if (newAge != null) { // age validation
-            if (newAge < 18 || newAge > 100)
-                throw new Exception("Age must be between 18 and 100");
-            userDoc.setAge(newAge);
-            updateBasicInfo = true;
-        }
-
-        if (newSex != null) { // sex validation
-            if (!newSex.equalsIgnoreCase("m") && !newSex.equalsIgnoreCase("f"))
-                throw new Exception("Sex must be 'm' or 'f'");
-            userDoc.setSex(newSex);
-            updateBasicInfo = true;
-        }
-
-        if (newOrientation != null) { // orientation validation
-            if (!newOrientation.equalsIgnoreCase("straight") &&
-                    !newOrientation.equalsIgnoreCase("gay") &&
-                    !newOrientation.equalsIgnoreCase("bisexual"))
-                throw new Exception("Orientation must be 'straight', 'gay', or 'bisexual'");
-            userDoc.setOrientation(newOrientation);
-            updateBasicInfo = true;
-        }
-
-        if (inputUser.getStatus() != null) { // status validation
-            if (!inputUser.getStatus().equalsIgnoreCase("available") &&
-                    !inputUser.getStatus().equalsIgnoreCase("single") &&
-                    !inputUser.getStatus().equalsIgnoreCase("seeing someone") &&
-                    !inputUser.getStatus().equalsIgnoreCase("married") &&
-                    !inputUser.getStatus().equalsIgnoreCase("unknown"))
-                throw new Exception("Status must be 'available', 'single', 'seeing someone', 'married' or 'unknown'");
-            userDoc.setStatus(inputUser.getStatus().toLowerCase().trim());
-        }
-
-        // Password update
-        if (inputUser.getPassword() != null && !inputUser.getPassword().isEmpty()) {
-            if (inputUser.getPassword().length() < 4) {
-                throw new Exception("New password must be at least 4 characters long.");
-            }
-            userDoc.setPassword(passwordEncoder.encode(inputUser.getPassword()));
-        }
-
-        // Simple Fields Update (Mongo only)
-        if (inputUser.getBodyType() != null)
-            userDoc.setBodyType(inputUser.getBodyType());
-        if (inputUser.getDiet() != null)
-            userDoc.setDiet(inputUser.getDiet());
-        if (inputUser.getDrinks() != null)
-            userDoc.setDrinks(inputUser.getDrinks());
-        if (inputUser.getEducation() != null)
-            userDoc.setEducation(inputUser.getEducation());
-        if (inputUser.getEthnicity() != null)
-            userDoc.setEthnicity(inputUser.getEthnicity());
-        if (inputUser.getHeight() != null)
-            userDoc.setHeight(inputUser.getHeight());
-        if (inputUser.getIncome() != null)
-            userDoc.setIncome(inputUser.getIncome());
-        if (inputUser.getJob() != null)
-            userDoc.setJob(inputUser.getJob());
-        if (inputUser.getOffspring() != null)
-            userDoc.setOffspring(inputUser.getOffspring());
-        if (inputUser.getPets() != null)
-            userDoc.setPets(inputUser.getPets());
-        if (inputUser.getSmokes() != null)
-            userDoc.setSmokes(inputUser.getSmokes());
-        if (inputUser.getSpeaks() != null)
-            userDoc.setSpeaks(inputUser.getSpeaks());
-
-        // Essay & Interest Matching Logic
-        String newEssay = inputUser.getEssay0();
-        if (newEssay != null && !newEssay.trim().isEmpty()) {
-            userDoc.setEssay0(newEssay); // Essay
-
-            // Extract new interests
-            java.util.List<String> foundInterests = new java.util.ArrayList<>(
-                    interestExtractorService.extractInterestsFromText(newEssay));
-
-            userDoc.setInterests(foundInterests);
-            updateInterests = true;
-        }
-
-        // City & State Logic
-        String newCity = inputUser.getCity();
-        String newState = inputUser.getState();
-        boolean cityChanged = newCity != null && !newCity.trim().isEmpty();
-        boolean stateChanged = newState != null && !newState.trim().isEmpty();
-
-        if (cityChanged || stateChanged) {
-            String targetCityName = cityChanged ? newCity : userDoc.getCity();
-            String targetStateName = stateChanged ? newState : userDoc.getState();
-
-            if (targetCityName == null || targetStateName == null) {
-                throw new Exception("City and State must be both present to update location.");
-            }
-
-            userDoc.setCity(targetCityName);
-            userDoc.setState(targetStateName);
-            updateLocation = true;
-        }
+        // Validation and merge of the new values
+        ProfileUpdateService.ProfileChanges changes = profileUpdateService.merge(userDoc, inputUser);
+        boolean updateBasicInfo = changes.basicInfo();
+        boolean updateInterests = changes.interests();
+        boolean updateLocation = changes.location();
 
         // Update Neo4j first
+        DualWriteEvent syncEvent = new DualWriteEvent();
+        syncEvent.operation = "update";
+        syncEvent.begin();
         try {
             if (updateBasicInfo) {
                 userNeo4jRepository.updateBasicProfile(id, userDoc.getAge(), userDoc.getSex(),
                         userDoc.getOrientation());
             }
             if (updateInterests) {
-                userNeo4jRepository.updateInterests(id, userDoc.getInterests());
+                userNeo4jRepository.updateInterests(id, userDoc.getInterests(), userDoc.getInterestBits());
             }
             if (updateLocation) {
                 userNeo4jRepository.updateLocation(id, userDoc.getCity(), userDoc.getState());
             }
         } catch (Exception e) {
             System.err.println("CRITICAL: Graph Sync Failed. Aborting MongoDB update. Error: " + e.getMessage());
+            meterRegistry.counter("lovemining.dual_write.failures", "operation", "update").increment();
+            syncEvent.commit();
             throw new Exception("Failed to update profile due to Graph Database error.");
         }
+        syncEvent.succeeded = true;
+        syncEvent.commit();
         // Save to Mongo
-        userMongoRepository.save(userDoc);
+        userDoc.setVersion(it.unipi.LoveMining.service.utility.VersionService.nextVersion(userDoc));
+        profileDetailsService.save(userDoc);
+
+        // The match lists of the partners show the profile card of this user
+        boolean cardChanged = updateBasicInfo || updateLocation || inputUser.getStatus() != null
+                || inputUser.getBodyType() != null || inputUser.getHeight() != null || inputUser.getJob() != null;
+        if (cardChanged) {
+            List<String> partnerIds = userNeo4jRepository.findMatchedIds(id);
+            if (!partnerIds.isEmpty()) {
+                userMongoRepository.incrementMatchesGeneration(partnerIds);
+            }
+        }
+        versionService.bumpAnalytics();
     }
 
     // Add a review in MongoDB
@@ -206,8 +193,8 @@ public class UserService {
         }
 
         // Check if target user is already been reviewed
-        UserDocument authorDoc = userMongoRepository.findById(authorId)
-                .orElseThrow(() -> new Exception("MongoDB User profile not found."));
+        UserDocument authorDoc = profileDetailsService.withDetails(userMongoRepository.findById(authorId)
+                .orElseThrow(() -> new Exception("MongoDB User profile not found.")));
 
         if (authorDoc.getReviewsMade() != null) {
             for (UserDocument.ReviewSummary summary : authorDoc.getReviewsMade()) {
@@ -244,7 +231,9 @@ public class UserService {
         authorDoc.getReviewsMade().add(summary);
 
         // Save Mongo
-        userMongoRepository.save(authorDoc);
+        authorDoc.setVersion(it.unipi.LoveMining.service.utility.VersionService.nextVersion(authorDoc));
+        profileDetailsService.save(authorDoc);
+        versionService.bumpAnalytics();
     }
 
     // Likes a User
@@ -253,18 +242,40 @@ public class UserService {
         if (actorId.equals(targetId)) {
             throw new Exception("Cannot like himself.");
         }
-        if (userNeo4jRepository.areMatched(actorId, targetId)) {
-            return "Already matched.";
-        }
+        // Every database call is counted before it is made (a failed call is a round trip too)
+        SwipeEvent event = new SwipeEvent();
+        event.begin();
+        String outcome = "error";
+        try {
+            event.roundTrips++;
+            if (userNeo4jRepository.areMatched(actorId, targetId)) {
+                outcome = "already_matched";
+                return "Already matched.";
+            }
 
-        boolean targetLikesActor = userNeo4jRepository.hasLiked(targetId, actorId); // bi-directional like ?
-        if (targetLikesActor) {
-            // MATCH!
-            userNeo4jRepository.transformLikeToMatch(actorId, targetId);
-            return "It's a Match!";
-        } else {
-            userNeo4jRepository.createLikeRelationship(actorId, targetId);
-            return "Like send.";
+            event.roundTrips++;
+            boolean targetLikesActor = userNeo4jRepository.hasLiked(targetId, actorId); // bi-directional like ?
+            if (targetLikesActor) {
+                // MATCH!
+                event.roundTrips++;
+                userNeo4jRepository.transformLikeToMatch(actorId, targetId);
+                event.roundTrips++;
+                userMongoRepository.incrementMatchesGeneration(List.of(actorId, targetId));
+                versionService.bumpAnalytics();
+                similarUsersService.onSwipe(actorId);
+                similarUsersService.onSwipe(targetId);
+                outcome = "match";
+                return "It's a Match!";
+            } else {
+                event.roundTrips++;
+                userNeo4jRepository.createLikeRelationship(actorId, targetId);
+                versionService.bumpAnalytics();
+                similarUsersService.onSwipe(actorId);
+                outcome = "like";
+                return "Like send.";
+            }
+        } finally {
+            countSwipe(event, outcome);
         }
     }
 
@@ -275,12 +286,213 @@ public class UserService {
             throw new Exception("Cannot dislike himself.");
         }
 
-        userNeo4jRepository.createDislikeRelationship(actorId, targetId);
+        SwipeEvent event = new SwipeEvent();
+        event.begin();
+        String outcome = "error";
+        try {
+            if (dislikeStoreService.isOffGraph()) {
+                event.roundTrips += DislikeStoreService.ADD_DISLIKE_CALLS;
+                dislikeStoreService.addDislike(actorId, targetId);
+            } else {
+                event.roundTrips++;
+                userNeo4jRepository.createDislikeRelationship(actorId, targetId);
+            }
+            outcome = "dislike";
+        } finally {
+            countSwipe(event, outcome);
+        }
+    }
+
+    // Swipe outcomes: metric lovemining.swipes{outcome} and JFR event with the database round trips
+    // counted by the swipe ('error' when it failed)
+    void countSwipe(SwipeEvent event, String outcome) {
+        meterRegistry.counter("lovemining.swipes", "outcome", outcome).increment();
+        event.outcome = outcome;
+        event.commit();
     }
 
     // Recommendations with filters on location ('City' or 'State') and age
     public List<String> getRecommendations(String userId, String filter, int minAge, int maxAge) {
         // We pass the filter string directly ('City' or 'State') to the query
-        return userNeo4jRepository.findRecommendations(userId, filter, minAge, maxAge);
+        RecommendationRankingEvent event = new RecommendationRankingEvent();
+        event.begin();
+        event.filter = filter;
+        List<String> excludedIds = dislikeStoreService.getExcludedIds(userId);
+        boolean blended = coLikeService.isBlended(ranking);
+        if (!"bitset".equalsIgnoreCase(ranking)) {
+            List<String> recommendations = userNeo4jRepository.findRecommendations(userId, filter, minAge, maxAge, excludedIds);
+            event.ranking = "graph";
+            event.candidates = -1;
+            event.results = recommendations.size();
+            event.commit();
+            return recommendations;
+        }
+
+        // In-memory ranking: the graph only filters, the IDF-weighted overlap is computed here
+        UserDocument me = userMongoRepository.findById(userId).orElse(null);
+        long[] myBits = me != null ? me.getInterestBits() : null;
+        List<java.util.Map<String, Object>> candidates = userNeo4jRepository.findRecommendationCandidates(userId,
+                filter, minAge, maxAge, excludedIds, candidateLimit);
+
+        // Co-like blending (users with thin essays are ranked by co-likes only): the best neighbours pass
+        // the same filters and join the candidates
+        java.util.Map<String, Double> coLikeScores = blended
+                ? coLikeService.score(userId) : java.util.Collections.emptyMap();
+        double weight = blended ? coLikeService.getWeight() : 0.0;
+        if (!coLikeScores.isEmpty()) {
+            candidates = mergeCandidates(candidates, userNeo4jRepository.findRecommendationCandidatesAmong(userId,
+                    filter, minAge, maxAge, excludedIds, coLikeService.topScored(coLikeScores)));
+        }
+        List<String> recommendations = rankCandidates(candidates, myBits, interestWeightService, coLikeScores,
+                weight, RECOMMENDATIONS_LIMIT);
+
+        event.ranking = weight > 0 ? "bitset+colike" : "bitset";
+        event.candidates = candidates.size();
+        event.results = recommendations.size();
+        event.commit();
+        return recommendations;
+    }
+
+    // Graph candidates plus the co-like ones not already among them
+    static List<java.util.Map<String, Object>> mergeCandidates(List<java.util.Map<String, Object>> candidates,
+                                                               List<java.util.Map<String, Object>> coLikeCandidates) {
+        java.util.Set<Object> ids = new java.util.HashSet<>();
+        List<java.util.Map<String, Object>> merged = new java.util.ArrayList<>(candidates);
+        for (java.util.Map<String, Object> candidate : candidates) {
+            ids.add(candidate.get("id"));
+        }
+        for (java.util.Map<String, Object> candidate : coLikeCandidates) {
+            if (ids.add(candidate.get("id"))) {
+                merged.add(candidate);
+            }
+        }
+        return merged;
+    }
+
+    // Best 'limit' candidates by score = (1 - w) * interest + w * co-like, both scaled to [0, 1] on the
+    // candidates. No database access: the candidates come from findRecommendationCandidates.
+    public static List<String> rankCandidates(List<java.util.Map<String, Object>> candidates, long[] myBits,
+                                              InterestWeightService interestWeightService,
+                                              java.util.Map<String, Double> coLikeScores, double weight, int limit) {
+        double[] interestScores = new double[candidates.size()];
+        double maxInterestScore = 0.0;
+        for (int i = 0; i < interestScores.length; i++) {
+            interestScores[i] = interestWeightService.score(myBits,
+                    InterestWeightService.toBits(candidates.get(i).get("interestBits")));
+            maxInterestScore = Math.max(maxInterestScore, interestScores[i]);
+        }
+        double maxCoLikeScore = 0.0;
+        for (java.util.Map<String, Object> candidate : candidates) {
+            maxCoLikeScore = Math.max(maxCoLikeScore, coLikeScores.getOrDefault((String) candidate.get("id"), 0.0));
+        }
+
+        // Keep the best 'limit' candidates in a min-heap on the score
+        java.util.PriorityQueue<java.util.Map.Entry<String, Double>> best = new java.util.PriorityQueue<>(
+                java.util.Map.Entry.comparingByValue());
+        for (int i = 0; i < interestScores.length; i++) {
+            String candidateId = (String) candidates.get(i).get("id");
+            double interest = maxInterestScore > 0 ? interestScores[i] / maxInterestScore : 0.0;
+            double coLike = maxCoLikeScore > 0 ? coLikeScores.getOrDefault(candidateId, 0.0) / maxCoLikeScore : 0.0;
+            best.add(java.util.Map.entry(candidateId, (1 - weight) * interest + weight * coLike));
+            if (best.size() > limit) {
+                best.poll();
+            }
+        }
+
+        List<String> recommendations = new java.util.ArrayList<>(best.size());
+        while (!best.isEmpty()) {
+            recommendations.add(0, best.poll().getKey());
+        }
+        return recommendations;
+    }
+
+    // Recommendations in the cities within 'km' from the user's city.
+    // Cities are visited nearest first in bands of growing size (1, 2, 4, ...) and the search
+    // stops as soon as enough compatible candidates are found.
+    public List<String> getRecommendationsByRadius(String userId, String city, double km, int minAge, int maxAge) {
+        RecommendationRankingEvent event = new RecommendationRankingEvent();
+        event.begin();
+        List<String> cities = cityGridIndexService.findCitiesWithin(city, km);
+        List<String> excludedIds = new java.util.ArrayList<>(dislikeStoreService.getExcludedIds(userId));
+        List<String> recommendations = new java.util.ArrayList<>();
+
+        int from = 0;
+        int bandSize = 1;
+        while (from < cities.size() && recommendations.size() < RECOMMENDATIONS_LIMIT) {
+            List<String> band = cities.subList(from, Math.min(from + bandSize, cities.size()));
+            List<String> found = userNeo4jRepository.findRecommendationsInCities(userId, band, minAge, maxAge,
+                    excludedIds, RECOMMENDATIONS_LIMIT - recommendations.size());
+            recommendations.addAll(found);
+            excludedIds.addAll(found);
+            from += band.size();
+            bandSize *= 2;
+        }
+        event.ranking = "radius";
+        event.filter = "Radius";
+        event.candidates = -1;
+        event.results = recommendations.size();
+        event.commit();
+        return recommendations;
+    }
+
+    // Expands recommended ids into cards. The projected '$in' lookup of the profiles and the
+    // average ratings aggregation run in parallel: two round trips in total, whatever the list size.
+    public List<RecommendationCard> getRecommendationCards(UserDocument me, List<String> ids) {
+        if (ids.isEmpty()) {
+            return java.util.Collections.emptyList();
+        }
+        java.util.concurrent.CompletableFuture<List<java.util.Map<String, Object>>> profiles =
+                java.util.concurrent.CompletableFuture.supplyAsync(
+                        () -> userMongoRepository.findRecommendationCards(ids, ESSAY_PREVIEW_LENGTH), lookupExecutor);
+        java.util.concurrent.CompletableFuture<List<java.util.Map<String, Object>>> ratings =
+                java.util.concurrent.CompletableFuture.supplyAsync(
+                        () -> reviewMongoRepository.findAverageRatings(ids), lookupExecutor);
+        return toRecommendationCards(me, ids, profiles.join(), ratings.join());
+    }
+
+    // Same cards, with the two lookups one after the other on the calling thread: for the callers already
+    // running on lookupExecutor, which must not wait for tasks queued on their own bounded pool
+    public List<RecommendationCard> getRecommendationCardsInline(UserDocument me, List<String> ids) {
+        if (ids.isEmpty()) {
+            return java.util.Collections.emptyList();
+        }
+        return toRecommendationCards(me, ids, userMongoRepository.findRecommendationCards(ids, ESSAY_PREVIEW_LENGTH),
+                reviewMongoRepository.findAverageRatings(ids));
+    }
+
+    // Builds the cards from the rows of findRecommendationCards and findAverageRatings, in the order of the ids
+    public static List<RecommendationCard> toRecommendationCards(UserDocument me, List<String> ids,
+                                                                 List<java.util.Map<String, Object>> profiles,
+                                                                 List<java.util.Map<String, Object>> ratings) {
+        java.util.Map<String, Double> ratingById = new java.util.HashMap<>();
+        for (java.util.Map<String, Object> row : ratings) {
+            ratingById.put((String) row.get("_id"), ((Number) row.get("averageRating")).doubleValue());
+        }
+        java.util.Map<String, java.util.Map<String, Object>> profileById = new java.util.HashMap<>();
+        for (java.util.Map<String, Object> row : profiles) {
+            profileById.put((String) row.get("_id"), row);
+        }
+
+        java.util.Set<String> myInterests = me.getInterests() != null
+                ? new java.util.HashSet<>(me.getInterests()) : java.util.Collections.emptySet();
+        List<RecommendationCard> cards = new java.util.ArrayList<>(ids.size());
+        for (String id : ids) { // keep the ranking order
+            java.util.Map<String, Object> profile = profileById.get(id);
+            if (profile == null) continue;
+            List<String> shared = new java.util.ArrayList<>();
+            if (profile.get("interests") instanceof List<?> interests) {
+                for (Object interest : interests) {
+                    if (myInterests.contains(interest)) shared.add((String) interest);
+                }
+            }
+            cards.add(new RecommendationCard(id, (Integer) profile.get("age"), (String) profile.get("city"),
+                    (String) profile.get("essayPreview"), shared, ratingById.get(id)));
+        }
+        return cards;
+    }
+
+    // Recommendations similar to the users liked or matched (approximate nearest neighbours)
+    public List<String> getSimilarRecommendations(String userId, String filter, int minAge, int maxAge) {
+        return similarUsersService.findSimilarToLiked(userId, filter, minAge, maxAge, RECOMMENDATIONS_LIMIT);
     }
-}
+}
\ No newline at end of file
@@ -0,0 +1,115 @@
+package it.unipi.LoveMining.service.utility;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Concurrency limit of the requests in flight that follows the latency of the backing stores (gradient
+// algorithm): for each store a short and a long moving average of the latency are kept, and while the short
+// one stays within 'tolerance' times the long one the limit grows (by its square root), when a store slows
+// down the limit shrinks in proportion. The requests over the limit are rejected at once instead of queueing
+// in the driver pools.
+public class AdaptiveConcurrencyLimit {
+
+    // Weights of the moving averages and of the new limit
+    private static final double SHORT_WEIGHT = 0.1;
+    private static final double LONG_WEIGHT = 0.01;
+    private static final double SMOOTHING = 0.2;
+    // The limit never drops by more than half in one sample
+    private static final double MIN_GRADIENT = 0.5;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder rejected = new LongAdder();
+    // Threads serving an admitted request (their repository calls are the samples of the limit)
+    private final ThreadLocal<Boolean> admitted = new ThreadLocal<>();
+
+    // Updated under the lock, read without it
+    private volatile double limit;
+    private final Map<String, double[]> latencies = new HashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+
+    public AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, double tolerance) {
+        if (minLimit < 1 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("Invalid concurrency limit bounds: " + minLimit + "-" + maxLimit);
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    // false when the requests in flight already reach the limit (nothing to release)
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= (int) limit) {
+                rejected.increment();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                admitted.set(Boolean.TRUE);
+                return true;
+            }
+        }
+    }
+
+    public void release() {
+        admitted.remove();
+        inFlight.decrementAndGet();
+    }
+
+    // true on the thread of a request admitted by tryAcquire and not released yet
+    public boolean isAdmitted() {
+        return admitted.get() != null;
+    }
+
+    // Latency of one call to a store. A sample arriving while another one is being applied is dropped:
+    // the averages do not need every call, and the callers never wait on the lock.
+    public void onSample(String store, long nanos) {
+        if (!lock.tryLock()) {
+            return;
+        }
+        try {
+            double ms = nanos / 1_000_000.0;
+            double[] averages = latencies.get(store);
+            if (averages == null) {
+                latencies.put(store, new double[]{ms, ms});
+                return;
+            }
+            averages[0] += SHORT_WEIGHT * (ms - averages[0]);
+            averages[1] += LONG_WEIGHT * (ms - averages[1]);
+
+            // Gradient of the slowest store (1 = no store slower than its tolerance)
+            double gradient = 1.0;
+            for (double[] averagesOfStore : latencies.values()) {
+                gradient = Math.min(gradient, Math.max(MIN_GRADIENT, tolerance * averagesOfStore[1] / averagesOfStore[0]));
+            }
+            double current = limit;
+            // The limit does not grow while the requests in flight are far from it
+            if (gradient >= 1.0 && inFlight.get() < current / 2) {
+                return;
+            }
+            double target = current * gradient + Math.sqrt(current);
+            limit = Math.max(minLimit, Math.min(maxLimit, current * (1 - SMOOTHING) + target * SMOOTHING));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    public long rejected() {
+        return rejected.sum();
+    }
+}
@@ -0,0 +1,79 @@
+package it.unipi.LoveMining.service.utility;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Semaphore bulkhead in front of a backing store: at most 'permits' calls in flight (the size of the
+// driver pool), the other callers wait in FIFO order up to the timeout and then get a BulkheadFullException.
+// Reentrant: a call made while the thread already holds a permit (e.g. a default repository method
+// calling a query) does not take a second one.
+public class Bulkhead {
+
+    private final String name;
+    private final int permits;
+    private final long timeoutMs;
+    private final Semaphore semaphore;
+    private final ThreadLocal<int[]> held = ThreadLocal.withInitial(() -> new int[1]);
+    private final LongAdder rejected = new LongAdder();
+
+    public Bulkhead(String name, int permits, long timeoutMs) {
+        if (permits < 1) {
+            throw new IllegalArgumentException("Bulkhead " + name + " needs at least one permit");
+        }
+        this.name = name;
+        this.permits = permits;
+        this.timeoutMs = timeoutMs;
+        this.semaphore = new Semaphore(permits, true);
+    }
+
+    public void acquire() {
+        int[] depth = held.get();
+        if (depth[0] > 0) {
+            depth[0]++;
+            return;
+        }
+        boolean acquired;
+        try {
+            acquired = semaphore.tryAcquire(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            held.remove();
+            rejected.increment();
+            throw new BulkheadFullException(name, timeoutMs);
+        }
+        depth[0] = 1;
+    }
+
+    public void release() {
+        int[] depth = held.get();
+        if (--depth[0] <= 0) {
+            held.remove();
+            semaphore.release();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getPermits() {
+        return permits;
+    }
+
+    public int availablePermits() {
+        return semaphore.availablePermits();
+    }
+
+    // Callers waiting for a permit
+    public int waiting() {
+        return semaphore.getQueueLength();
+    }
+
+    public long rejected() {
+        return rejected.sum();
+    }
+}
@@ -0,0 +1,9 @@
+package it.unipi.LoveMining.service.utility;
+
+// No permit of the bulkhead of a backing store within the timeout (answered with 503 + Retry-After)
+public class BulkheadFullException extends RuntimeException {
+
+    public BulkheadFullException(String store, long timeoutMs) {
+        super("Too many concurrent requests to " + store + " (no connection within " + timeoutMs + " ms), retry later.");
+    }
+}
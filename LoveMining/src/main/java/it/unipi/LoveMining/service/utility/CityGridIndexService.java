@@ -0,0 +1,119 @@
+package it.unipi.LoveMining.service.utility;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// In-memory spatial grid over the cities of cities.csv, used by the 'Radius' recommendations
+@Service
+public class CityGridIndexService {
+
+    // Side of a grid cell in degrees (~11 km of latitude)
+    private static final double CELL_DEGREES = 0.1;
+    private static final double EARTH_RADIUS_KM = 6371.0;
+
+    private final Map<String, City> citiesByName = new HashMap<>();
+    private final Map<Long, List<City>> grid = new HashMap<>();
+
+    public record City(String name, String state, double latitude, double longitude) {
+    }
+
+    @PostConstruct
+    public void loadCitiesFromCsv() {
+        try {
+            ClassPathResource resource = new ClassPathResource("cities.csv");
+            BufferedReader reader = new BufferedReader(new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8));
+            String line;
+            // skip header: (City;State;Latitude;Longitude)
+            reader.readLine();
+
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) continue;
+
+                String[] parts = line.split(";");
+                if (parts.length < 4) continue;
+
+                City city = new City(parts[0].trim().toLowerCase(), parts[1].trim().toLowerCase(),
+                        Double.parseDouble(parts[2].trim()), Double.parseDouble(parts[3].trim()));
+                citiesByName.put(city.name(), city);
+                grid.computeIfAbsent(cellKey(cellOf(city.latitude()), cellOf(city.longitude())), k -> new ArrayList<>())
+                        .add(city);
+            }
+
+        } catch (Exception e) {
+            System.err.println("ERROR loading file cities.csv: " + e.getMessage());
+        }
+    }
+
+    public List<City> getAllCities() {
+        return new ArrayList<>(citiesByName.values());
+    }
+
+    // Cities within 'km' from the given city, nearest first (the city itself comes first).
+    // Only the grid cells overlapping the bounding box of the radius are visited.
+    public List<String> findCitiesWithin(String cityName, double km) {
+        City origin = cityName == null ? null : citiesByName.get(cityName.trim().toLowerCase());
+        if (origin == null) {
+            // No coordinates for the city: the radius degrades to the city itself
+            return cityName == null ? Collections.emptyList() : List.of(cityName.trim().toLowerCase());
+        }
+
+        double latSpan = km / 111.0;
+        double lonSpan = km / (111.0 * Math.max(Math.cos(Math.toRadians(origin.latitude())), 0.01));
+        int minLatCell = cellOf(origin.latitude() - latSpan);
+        int maxLatCell = cellOf(origin.latitude() + latSpan);
+        int minLonCell = cellOf(origin.longitude() - lonSpan);
+        int maxLonCell = cellOf(origin.longitude() + lonSpan);
+
+        List<City> inRadius = new ArrayList<>();
+        Map<String, Double> distances = new HashMap<>();
+        for (int latCell = minLatCell; latCell <= maxLatCell; latCell++) {
+            for (int lonCell = minLonCell; lonCell <= maxLonCell; lonCell++) {
+                List<City> cell = grid.get(cellKey(latCell, lonCell));
+                if (cell == null) continue;
+                for (City city : cell) {
+                    double distance = distanceKm(origin, city);
+                    if (distance <= km) {
+                        inRadius.add(city);
+                        distances.put(city.name(), distance);
+                    }
+                }
+            }
+        }
+
+        inRadius.sort(Comparator.comparingDouble(city -> distances.get(city.name())));
+        List<String> names = new ArrayList<>(inRadius.size());
+        for (City city : inRadius) {
+            names.add(city.name());
+        }
+        return names;
+    }
+
+    // Haversine distance
+    private static double distanceKm(City a, City b) {
+        double dLat = Math.toRadians(b.latitude() - a.latitude());
+        double dLon = Math.toRadians(b.longitude() - a.longitude());
+        double h = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(a.latitude())) * Math.cos(Math.toRadians(b.latitude()))
+                * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.sqrt(h));
+    }
+
+    private static int cellOf(double degrees) {
+        return (int) Math.floor(degrees / CELL_DEGREES);
+    }
+
+    private static long cellKey(int latCell, int lonCell) {
+        return ((long) latCell << 32) | (lonCell & 0xffffffffL);
+    }
+}
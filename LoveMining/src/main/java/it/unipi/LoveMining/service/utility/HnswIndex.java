@@ -0,0 +1,280 @@
+package it.unipi.LoveMining.service.utility;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntPredicate;
+
+// Hierarchical Navigable Small World graph for approximate nearest neighbour search.
+// Vectors must be L2-normalized: the similarity is the dot product (cosine).
+// Nodes are never removed: a replaced or deleted node is marked and skipped in the results.
+public class HnswIndex {
+
+    public record Result(int node, float similarity) {
+    }
+
+    private final int dimension;
+    private final int m;
+    private final int maxM0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final Random random;
+
+    private final List<float[]> vectors = new ArrayList<>();
+    // links.get(node)[level] = neighbours of the node on that level
+    private final List<int[][]> links = new ArrayList<>();
+    private final BitSet deleted = new BitSet();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    public HnswIndex(int dimension, int m, int efConstruction, long seed) {
+        this.dimension = dimension;
+        this.m = m;
+        this.maxM0 = 2 * m;
+        this.efConstruction = efConstruction;
+        this.levelMultiplier = 1.0 / Math.log(m);
+        this.random = new Random(seed);
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return vectors.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public float[] getVector(int node) {
+        lock.readLock().lock();
+        try {
+            return vectors.get(node);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean isDeleted(int node) {
+        lock.readLock().lock();
+        try {
+            return deleted.get(node);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void markDeleted(int node) {
+        lock.writeLock().lock();
+        try {
+            deleted.set(node);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Inserts a vector and returns its node id
+    public int add(float[] vector) {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("Vector dimension must be " + dimension);
+        }
+        lock.writeLock().lock();
+        try {
+            int node = vectors.size();
+            int level = (int) (-Math.log(1.0 - random.nextDouble()) * levelMultiplier);
+            int[][] nodeLinks = new int[level + 1][];
+            for (int l = 0; l <= level; l++) {
+                nodeLinks[l] = new int[0];
+            }
+            vectors.add(vector);
+            links.add(nodeLinks);
+
+            if (entryPoint < 0) {
+                entryPoint = node;
+                maxLevel = level;
+                return node;
+            }
+
+            // 1. Greedy descent on the levels above the node's level
+            int current = entryPoint;
+            for (int l = maxLevel; l > level; l--) {
+                current = greedyClosest(vector, current, l);
+            }
+
+            // 2. Connection on every level of the node
+            for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+                List<Result> candidates = searchLayer(vector, current, efConstruction, l);
+                int maxLinks = l == 0 ? maxM0 : m;
+                int[] selected = closest(candidates, m);
+                nodeLinks[l] = selected;
+                for (int neighbour : selected) {
+                    connect(neighbour, node, l, maxLinks);
+                }
+                current = candidates.get(0).node();
+            }
+
+            if (level > maxLevel) {
+                maxLevel = level;
+                entryPoint = node;
+            }
+            return node;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Top k nodes by similarity accepted by the filter. The search list grows (ef doubling)
+    // until k accepted nodes are found or maxEf is reached.
+    public List<Result> search(float[] query, int k, int ef, int maxEf, IntPredicate filter) {
+        lock.readLock().lock();
+        try {
+            List<Result> accepted = new ArrayList<>();
+            if (entryPoint < 0) {
+                return accepted;
+            }
+            int current = entryPoint;
+            for (int l = maxLevel; l > 0; l--) {
+                current = greedyClosest(query, current, l);
+            }
+
+            int searchEf = Math.max(ef, k);
+            while (true) {
+                accepted.clear();
+                for (Result result : searchLayer(query, current, searchEf, 0)) {
+                    if (!deleted.get(result.node()) && filter.test(result.node())) {
+                        accepted.add(result);
+                        if (accepted.size() == k) {
+                            return accepted;
+                        }
+                    }
+                }
+                if (searchEf >= maxEf || searchEf >= vectors.size()) {
+                    return accepted;
+                }
+                searchEf = Math.min(searchEf * 2, maxEf);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Exact top k by scanning every vector (reference for the recall measurements)
+    public List<Result> bruteForce(float[] query, int k, IntPredicate filter) {
+        lock.readLock().lock();
+        try {
+            PriorityQueue<Result> best = new PriorityQueue<>(Comparator.comparingDouble(Result::similarity));
+            for (int node = 0; node < vectors.size(); node++) {
+                if (deleted.get(node) || !filter.test(node)) continue;
+                best.add(new Result(node, dot(query, vectors.get(node))));
+                if (best.size() > k) {
+                    best.poll();
+                }
+            }
+            List<Result> results = new ArrayList<>(best);
+            results.sort(Comparator.comparingDouble(Result::similarity).reversed());
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int greedyClosest(float[] query, int start, int level) {
+        int current = start;
+        float currentSimilarity = dot(query, vectors.get(current));
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            for (int neighbour : neighbours(current, level)) {
+                float similarity = dot(query, vectors.get(neighbour));
+                if (similarity > currentSimilarity) {
+                    current = neighbour;
+                    currentSimilarity = similarity;
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    // Best-first search on one level, results ordered by decreasing similarity
+    private List<Result> searchLayer(float[] query, int start, int ef, int level) {
+        BitSet visited = new BitSet(vectors.size());
+        PriorityQueue<Result> candidates = new PriorityQueue<>(Comparator.comparingDouble(Result::similarity).reversed());
+        PriorityQueue<Result> results = new PriorityQueue<>(Comparator.comparingDouble(Result::similarity));
+
+        Result first = new Result(start, dot(query, vectors.get(start)));
+        visited.set(start);
+        candidates.add(first);
+        results.add(first);
+
+        while (!candidates.isEmpty()) {
+            Result candidate = candidates.poll();
+            if (results.size() >= ef && candidate.similarity() < results.peek().similarity()) {
+                break;
+            }
+            for (int neighbour : neighbours(candidate.node(), level)) {
+                if (visited.get(neighbour)) continue;
+                visited.set(neighbour);
+                float similarity = dot(query, vectors.get(neighbour));
+                if (results.size() < ef || similarity > results.peek().similarity()) {
+                    Result result = new Result(neighbour, similarity);
+                    candidates.add(result);
+                    results.add(result);
+                    if (results.size() > ef) {
+                        results.poll();
+                    }
+                }
+            }
+        }
+
+        List<Result> ordered = new ArrayList<>(results);
+        ordered.sort(Comparator.comparingDouble(Result::similarity).reversed());
+        return ordered;
+    }
+
+    // Adds 'node' to the neighbours of 'target', keeping only the closest maxLinks
+    private void connect(int target, int node, int level, int maxLinks) {
+        int[] current = links.get(target)[level];
+        int[] extended = new int[current.length + 1];
+        System.arraycopy(current, 0, extended, 0, current.length);
+        extended[current.length] = node;
+        if (extended.length <= maxLinks) {
+            links.get(target)[level] = extended;
+            return;
+        }
+        float[] targetVector = vectors.get(target);
+        List<Result> scored = new ArrayList<>(extended.length);
+        for (int neighbour : extended) {
+            scored.add(new Result(neighbour, dot(targetVector, vectors.get(neighbour))));
+        }
+        scored.sort(Comparator.comparingDouble(Result::similarity).reversed());
+        links.get(target)[level] = closest(scored, maxLinks);
+    }
+
+    private int[] neighbours(int node, int level) {
+        int[][] nodeLinks = links.get(node);
+        return level < nodeLinks.length ? nodeLinks[level] : new int[0];
+    }
+
+    private static int[] closest(List<Result> ordered, int count) {
+        int size = Math.min(count, ordered.size());
+        int[] selected = new int[size];
+        for (int i = 0; i < size; i++) {
+            selected[i] = ordered.get(i).node();
+        }
+        return selected;
+    }
+
+    public static float dot(float[] a, float[] b) {
+        float sum = 0f;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+}
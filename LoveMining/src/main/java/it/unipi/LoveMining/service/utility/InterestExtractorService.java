@@ -4,9 +4,12 @@ import jakarta.annotation.PostConstruct;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.stereotype.Service;
 
+import it.unipi.LoveMining.service.profiling.InterestExtractionEvent;
+
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -19,6 +22,9 @@ public class InterestExtractorService {
 
     private final Map<String, String> interestsMap = new HashMap<>();
 
+    // Display_Name -> ordinal in interessi.csv, used as bit position of the interest bitsets
+    private final Map<String, Integer> interestOrdinals = new HashMap<>();
+
     @PostConstruct
     public void loadInterestsFromCsv() {
         try {
@@ -37,6 +43,9 @@ public class InterestExtractorService {
 
                 String displayName = parts[0].trim();
                 String variantsString = parts[1].trim();
+                if (displayName.equals("Display_Name")) continue; // header
+
+                interestOrdinals.putIfAbsent(displayName, interestOrdinals.size());
 
                 // 2. Slit variants by ,
                 String[] variants = variantsString.split(",");
@@ -55,6 +64,30 @@ public class InterestExtractorService {
         }
     }
 
+    public int getInterestCount() {
+        return interestOrdinals.size();
+    }
+
+    // Ordinal of the interest in the dictionary, -1 if unknown
+    public int getOrdinal(String interest) {
+        return interestOrdinals.getOrDefault(interest, -1);
+    }
+
+    // Encodes the interests as a fixed-width bitset (bit i = interest with ordinal i)
+    public long[] encodeInterests(Collection<String> interests) {
+        long[] bits = new long[(interestOrdinals.size() + 63) / 64];
+        if (interests == null) {
+            return bits;
+        }
+        for (String interest : interests) {
+            int ordinal = getOrdinal(interest);
+            if (ordinal >= 0) {
+                bits[ordinal >>> 6] |= 1L << (ordinal & 63);
+            }
+        }
+        return bits;
+    }
+
     public Set<String> extractInterestsFromText(String text) {
         Set<String> foundInterests = new HashSet<>();
 
@@ -62,6 +95,10 @@ public class InterestExtractorService {
             return foundInterests;
         }
 
+        InterestExtractionEvent event = new InterestExtractionEvent();
+        event.begin();
+        int variantHits = 0;
+
         String lowerCaseText = text.toLowerCase();
 
         for (Map.Entry<String, String> entry : interestsMap.entrySet()) {
@@ -76,8 +113,15 @@ public class InterestExtractorService {
 
             if (matcher.find()) {
                 foundInterests.add(displayName);
+                variantHits++;
             }
         }
+
+        event.textLength = text.length();
+        event.variantsChecked = interestsMap.size();
+        event.variantHits = variantHits;
+        event.interestsFound = foundInterests.size();
+        event.commit();
         return foundInterests;
     }
 }
\ No newline at end of file
@@ -0,0 +1,16 @@
+package it.unipi.LoveMining.service.utility;
+
+// No token left in the bucket of the user for this kind of request (answered with 429 + Retry-After)
+public class RateLimitExceededException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public RateLimitExceededException(String kind, long retryAfterSeconds) {
+        super("Too many " + kind + " requests, retry in " + retryAfterSeconds + " s.");
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,90 @@
+package it.unipi.LoveMining.service.utility;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Token buckets of one kind of request, one per key (the user): 'burst' requests at once, then 'perMinute'.
+// The keys are spread over striped maps, each with its own lock, so that the users of different stripes do
+// not contend; every stripe keeps the buckets of at most 'keysPerStripe' users, the least recently used
+// is forgotten (and starts again with a full bucket).
+public class TokenBuckets {
+
+    private static final class Bucket {
+        double tokens;
+        long updatedNanos;
+    }
+
+    private static final class Stripe {
+        final ReentrantLock lock = new ReentrantLock();
+        final LinkedHashMap<String, Bucket> buckets;
+
+        Stripe(int keysPerStripe) {
+            this.buckets = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Bucket> eldest) {
+                    return size() > keysPerStripe;
+                }
+            };
+        }
+    }
+
+    private final String name;
+    private final double burst;
+    private final double tokensPerNano;
+    private final Stripe[] stripes;
+    private final LongAdder rejected = new LongAdder();
+
+    public TokenBuckets(String name, double perMinute, int burst, int stripes, int keysPerStripe) {
+        if (perMinute <= 0 || burst < 1 || stripes < 1 || keysPerStripe < 1) {
+            throw new IllegalArgumentException("Invalid token buckets " + name);
+        }
+        this.name = name;
+        this.burst = burst;
+        this.tokensPerNano = perMinute / 60_000_000_000.0;
+        this.stripes = new Stripe[stripes];
+        for (int i = 0; i < stripes; i++) {
+            this.stripes[i] = new Stripe(keysPerStripe);
+        }
+    }
+
+    // 0 when the request is admitted, otherwise the nanoseconds until the next token of the key
+    public long tryAcquire(String key) {
+        return tryAcquire(key, System.nanoTime());
+    }
+
+    long tryAcquire(String key, long now) {
+        int hash = key.hashCode();
+        Stripe stripe = stripes[((hash ^ (hash >>> 16)) & 0x7fffffff) % stripes.length];
+        stripe.lock.lock();
+        try {
+            Bucket bucket = stripe.buckets.get(key);
+            if (bucket == null) {
+                bucket = new Bucket();
+                bucket.tokens = burst;
+                bucket.updatedNanos = now;
+                stripe.buckets.put(key, bucket);
+            } else {
+                bucket.tokens = Math.min(burst, bucket.tokens + (now - bucket.updatedNanos) * tokensPerNano);
+                bucket.updatedNanos = now;
+            }
+            if (bucket.tokens >= 1) {
+                bucket.tokens -= 1;
+                return 0;
+            }
+            rejected.increment();
+            return Math.max(1, (long) Math.ceil((1 - bucket.tokens) / tokensPerNano));
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long rejected() {
+        return rejected.sum();
+    }
+}
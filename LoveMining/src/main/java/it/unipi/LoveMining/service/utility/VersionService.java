@@ -0,0 +1,75 @@
+package it.unipi.LoveMining.service.utility;
+
+import org.bson.Document;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import it.unipi.LoveMining.model.mongo.UserDocument;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+@Service
+@RequiredArgsConstructor
+// Service class for the ETags of the conditional GETs: built from version numbers only,
+// so that a 304 needs no document load and no serialization
+public class VersionService {
+
+    // Generation of the analytics, in a counter document shared by every instance and kept across restarts
+    private static final String COUNTERS_COLLECTION = "counters";
+    private static final String ANALYTICS_COUNTER = "analytics_generation";
+
+    private final MongoTemplate mongoTemplate;
+
+    // Set by every write that can change the analytics results: the writes are not slowed down by the
+    // counter, the pending bumps are flushed as one $inc (the tag follows within the flush delay)
+    private final AtomicBoolean analyticsChanged = new AtomicBoolean();
+
+    public void bumpAnalytics() {
+        analyticsChanged.set(true);
+    }
+
+    @Scheduled(fixedDelayString = "${lovemining.analytics.generation-flush-ms:1000}")
+    @PreDestroy
+    public void flushAnalytics() {
+        if (analyticsChanged.getAndSet(false)) {
+            try {
+                mongoTemplate.upsert(Query.query(Criteria.where("_id").is(ANALYTICS_COUNTER)),
+                        new Update().inc("value", 1L), COUNTERS_COLLECTION);
+            } catch (Exception e) {
+                analyticsChanged.set(true); // retried at the next flush
+                System.err.println("ERROR saving the analytics generation: " + e.getMessage());
+            }
+        }
+    }
+
+    public String analyticsTag() {
+        Document counter = mongoTemplate.findById(ANALYTICS_COUNTER, Document.class, COUNTERS_COLLECTION);
+        long generation = counter != null && counter.get("value") instanceof Number value ? value.longValue() : 0;
+        return "\"a-" + generation + "\"";
+    }
+
+    // ETag of the profile (the versions document of findVersionsById/findVersionsByEmail is enough)
+    public String userTag(UserDocument versions) {
+        return "\"u-" + versions.getId() + "-" + valueOf(versions.getVersion()) + "\"";
+    }
+
+    // ETag of the matches
+    public String matchesTag(UserDocument versions) {
+        return "\"m-" + versions.getId() + "-" + valueOf(versions.getMatchesGeneration()) + "\"";
+    }
+
+    // Next value of the version of the document (before a save)
+    public static long nextVersion(UserDocument user) {
+        return valueOf(user.getVersion()) + 1;
+    }
+
+    private static long valueOf(Long version) {
+        return version == null ? 0 : version;
+    }
+}
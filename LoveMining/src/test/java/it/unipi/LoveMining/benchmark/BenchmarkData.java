@@ -0,0 +1,108 @@
+package it.unipi.LoveMining.benchmark;
+
+import org.springframework.core.io.ClassPathResource;
+
+import it.unipi.LoveMining.model.mongo.UserDocument;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Deterministic inputs shared by the benchmarks (same seed = same data on every run)
+final class BenchmarkData {
+
+	private static final String[] FILLER = {"i", "am", "a", "pretty", "easy", "going", "person", "who", "likes",
+			"to", "spend", "the", "weekend", "with", "friends", "and", "sometimes", "alone", "really", "into",
+			"looking", "for", "someone", "funny", "honest", "new", "things", "my", "life", "work", "city"};
+
+	private BenchmarkData() {
+	}
+
+	// Display names of interessi.csv, in ordinal order
+	static List<String> interestNames() throws IOException {
+		return column(0);
+	}
+
+	// Essay of about 'length' characters: filler words with one interest variant every ~12 words
+	static String essay(int length, long seed) throws IOException {
+		List<String> variants = column(1);
+		Random random = new Random(seed);
+		StringBuilder essay = new StringBuilder(length + 32);
+		while (essay.length() < length) {
+			String word = random.nextInt(12) == 0
+					? variants.get(random.nextInt(variants.size()))
+					: FILLER[random.nextInt(FILLER.length)];
+			essay.append(word).append(random.nextInt(15) == 0 ? ". " : " ");
+		}
+		return essay.toString();
+	}
+
+	// User with every field set, as returned by UserService.getUser
+	static UserDocument user(String id, long seed) throws IOException {
+		Random random = new Random(seed);
+		List<String> names = interestNames();
+		List<String> interests = new ArrayList<>();
+		for (int i = 0; i < 8; i++) {
+			interests.add(names.get(random.nextInt(names.size())));
+		}
+		List<UserDocument.ReviewSummary> reviews = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			reviews.add(new UserDocument.ReviewSummary(Long.toHexString(random.nextLong()),
+					Long.toHexString(random.nextLong()), 1 + random.nextInt(5)));
+		}
+		UserDocument user = new UserDocument();
+		user.setId(id);
+		user.setEmail(id + "@lovemining.it");
+		user.setPassword("$2a$10$abcdefghijklmnopqrstuv0123456789abcdefghijklmnopqrstu");
+		user.setIsAdmin(false);
+		user.setAge(18 + random.nextInt(50));
+		user.setStatus("single");
+		user.setSex(random.nextBoolean() ? "m" : "f");
+		user.setOrientation("straight");
+		user.setBodyType("athletic");
+		user.setDiet("mostly anything");
+		user.setDrinks("socially");
+		user.setEducation("graduated from college/university");
+		user.setEthnicity("white");
+		user.setHeight(150 + random.nextInt(50));
+		user.setIncome(-1);
+		user.setJob("computer / hardware / software");
+		user.setOffspring("doesn't have kids");
+		user.setPets("likes dogs and likes cats");
+		user.setReligion("agnosticism");
+		user.setSmokes("no");
+		user.setSpeaks("english, italian");
+		user.setCity("san francisco");
+		user.setState("california");
+		user.setEssay0(essay(1000, seed));
+		user.setInterests(interests);
+		user.setReviewsMade(reviews);
+		user.setVersion(1L);
+		return user;
+	}
+
+	private static List<String> column(int index) throws IOException {
+		List<String> values = new ArrayList<>();
+		ClassPathResource resource = new ClassPathResource("interessi.csv");
+		try (BufferedReader reader = new BufferedReader(
+				new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String[] parts = line.split(";");
+				if (parts.length < 2 || parts[0].trim().equals("Display_Name")) continue;
+				if (index == 0) {
+					values.add(parts[0].trim());
+				} else {
+					for (String variant : parts[1].split(",")) {
+						if (!variant.isBlank()) values.add(variant.trim().toLowerCase());
+					}
+				}
+			}
+		}
+		return values;
+	}
+}
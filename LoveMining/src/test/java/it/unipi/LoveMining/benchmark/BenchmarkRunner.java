@@ -0,0 +1,121 @@
+package it.unipi.LoveMining.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Runs the benchmarks (profile 'benchmarks' of the pom) with the GC profiler and compares time/op and
+// allocated bytes/op with the stored baseline. Exits with 1 when a benchmark is slower or allocates
+// more than the threshold, so that the regression shows in the build. Without a baseline (the file, or
+// the entry of a benchmark) nothing can be compared: the run fails until one is stored.
+//   -Dbenchmark.include=<regex>          benchmarks to run (default all)
+//   -Dbenchmark.threshold=0.10           tolerated relative increase
+//   -Dbenchmark.update-baseline=true     stores this run as the new baseline
+public class BenchmarkRunner {
+
+	private static final Path RESULT = Path.of("target", "jmh-result.json");
+	private static final Path BASELINE = Path.of("benchmarks", "baseline.json");
+
+	// Allocation differences below this are noise (escape analysis, TLAB refills)
+	private static final double MIN_ALLOCATION_DELTA = 64.0;
+
+	public static void main(String[] args) throws Exception {
+		String include = System.getProperty("benchmark.include", ".*");
+		double threshold = Double.parseDouble(System.getProperty("benchmark.threshold", "0.10"));
+		boolean updateBaseline = Boolean.parseBoolean(System.getProperty("benchmark.update-baseline", "false"));
+		if (!updateBaseline && !Files.exists(BASELINE)) {
+			System.err.println("No baseline in " + BASELINE + ": run with -Dbenchmark.update-baseline=true"
+					+ " on the reference machine and commit it.");
+			System.exit(1);
+		}
+
+		Files.createDirectories(RESULT.getParent());
+		Options options = new OptionsBuilder()
+				.include(BenchmarkRunner.class.getPackageName() + ".*" + include)
+				.addProfiler(GCProfiler.class)
+				.resultFormat(ResultFormatType.JSON)
+				.result(RESULT.toString())
+				.build();
+		new Runner(options).run();
+
+		if (updateBaseline) {
+			Files.createDirectories(BASELINE.getParent());
+			Files.copy(RESULT, BASELINE, StandardCopyOption.REPLACE_EXISTING);
+			System.out.println("Baseline updated: " + BASELINE);
+			return;
+		}
+
+		ObjectMapper objectMapper = new ObjectMapper();
+		Map<String, JsonNode> baseline = byKey(objectMapper.readTree(BASELINE.toFile()));
+		Map<String, JsonNode> current = byKey(objectMapper.readTree(RESULT.toFile()));
+		List<String> regressions = new ArrayList<>();
+
+		System.out.printf("%n%-70s %12s %12s %8s %12s %12s%n", "Benchmark", "base", "now", "delta", "base B/op", "now B/op");
+		for (Map.Entry<String, JsonNode> entry : current.entrySet()) {
+			JsonNode before = baseline.get(entry.getKey());
+			if (before == null) {
+				System.out.printf("%-70s %12s%n", entry.getKey(), "(new)");
+				regressions.add(entry.getKey() + ": no baseline (run with -Dbenchmark.update-baseline=true)");
+				continue;
+			}
+			JsonNode now = entry.getValue();
+			double baseScore = before.path("primaryMetric").path("score").asDouble();
+			double score = now.path("primaryMetric").path("score").asDouble();
+			// Throughput: higher is better, every other mode is a time per operation
+			boolean higherIsBetter = "thrpt".equals(now.path("mode").asText());
+			double delta = baseScore > 0 ? (score - baseScore) / baseScore : 0.0;
+			double baseAlloc = allocation(before);
+			double alloc = allocation(now);
+
+			System.out.printf("%-70s %12.3f %12.3f %+7.1f%% %12.0f %12.0f%n",
+					entry.getKey(), baseScore, score, delta * 100, baseAlloc, alloc);
+			if (higherIsBetter ? delta < -threshold : delta > threshold) {
+				regressions.add(entry.getKey() + ": score " + String.format("%+.1f%%", delta * 100));
+			}
+			if (baseAlloc >= 0 && alloc - baseAlloc > Math.max(MIN_ALLOCATION_DELTA, baseAlloc * threshold)) {
+				regressions.add(entry.getKey() + ": allocation " + Math.round(baseAlloc) + " -> " + Math.round(alloc) + " B/op");
+			}
+		}
+
+		if (!regressions.isEmpty()) {
+			System.err.println("\nRegressions over " + Math.round(threshold * 100) + "% (or without a baseline):");
+			regressions.forEach(r -> System.err.println("  " + r));
+			System.exit(1);
+		}
+		System.out.println("\nNo regressions over " + Math.round(threshold * 100) + "%.");
+	}
+
+	// Benchmark name + parameters -> result
+	private static Map<String, JsonNode> byKey(JsonNode results) {
+		Map<String, JsonNode> byKey = new TreeMap<>();
+		for (JsonNode result : results) {
+			String name = result.path("benchmark").asText();
+			name = name.substring(name.lastIndexOf('.', name.lastIndexOf('.') - 1) + 1);
+			Map<String, String> params = new TreeMap<>();
+			result.path("params").fields().forEachRemaining(p -> params.put(p.getKey(), p.getValue().asText()));
+			byKey.put(params.isEmpty() ? name : name + params, result);
+		}
+		return byKey;
+	}
+
+	// gc.alloc.rate.norm (bytes per operation), -1 when the profiler did not report it
+	private static double allocation(JsonNode result) {
+		Map<String, JsonNode> secondary = new HashMap<>();
+		result.path("secondaryMetrics").fields().forEachRemaining(m -> secondary.put(m.getKey().replace("·", ""), m.getValue()));
+		JsonNode norm = secondary.get("gc.alloc.rate.norm");
+		return norm != null ? norm.path("score").asDouble() : -1;
+	}
+}
@@ -0,0 +1,48 @@
+package it.unipi.LoveMining.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import it.unipi.LoveMining.service.utility.InterestExtractorService;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// InterestExtractorService.extractInterestsFromText on essays of growing length (register and updateUser path)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InterestExtractionBenchmark {
+
+	// 0 = empty essay, 1000 = typical essay0 of the dataset, 8000 = long essay
+	@Param({"0", "200", "1000", "8000"})
+	public int essayLength;
+
+	private InterestExtractorService interestExtractorService;
+	private String essay;
+
+	@Setup
+	public void setup() throws IOException {
+		interestExtractorService = new InterestExtractorService();
+		interestExtractorService.loadInterestsFromCsv();
+		essay = BenchmarkData.essay(essayLength, 42);
+	}
+
+	@Benchmark
+	public Set<String> extractInterests() {
+		return interestExtractorService.extractInterestsFromText(essay);
+	}
+}
@@ -0,0 +1,66 @@
+package it.unipi.LoveMining.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import it.unipi.LoveMining.model.mongo.UserDocument;
+import it.unipi.LoveMining.service.user.ProfileUpdateService;
+import it.unipi.LoveMining.service.utility.InterestExtractorService;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// Validation and merge of updateUser (ProfileUpdateService.merge), without the database writes.
+// The password is left out: BCrypt would hide everything else.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProfileUpdateBenchmark {
+
+	// basic = matching and card fields, essay = basic + a new essay0 (interest extraction)
+	@Param({"basic", "essay"})
+	public String update;
+
+	private ProfileUpdateService profileUpdateService;
+	private UserDocument stored;
+	private UserDocument input;
+
+	@Setup
+	public void setup() throws IOException {
+		InterestExtractorService interestExtractorService = new InterestExtractorService();
+		interestExtractorService.loadInterestsFromCsv();
+		profileUpdateService = new ProfileUpdateService(interestExtractorService, new BCryptPasswordEncoder());
+		stored = BenchmarkData.user("bench-user", 1);
+
+		input = new UserDocument();
+		input.setAge(31);
+		input.setSex("F");
+		input.setOrientation("bisexual");
+		input.setStatus("Seeing Someone");
+		input.setJob("artistic / musical / writer");
+		input.setHeight(170);
+		input.setCity("oakland");
+		if (update.equals("essay")) {
+			input.setEssay0(BenchmarkData.essay(1000, 2));
+		}
+	}
+
+	// The merge is idempotent: the same input can be applied to the same user at every invocation
+	@Benchmark
+	public ProfileUpdateService.ProfileChanges merge() throws Exception {
+		return profileUpdateService.merge(stored, input);
+	}
+}
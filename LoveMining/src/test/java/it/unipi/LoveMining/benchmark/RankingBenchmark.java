@@ -0,0 +1,101 @@
+package it.unipi.LoveMining.benchmark;
+
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import it.unipi.LoveMining.repository.mongo.UserMongoRepository;
+import it.unipi.LoveMining.service.user.InterestWeightService;
+import it.unipi.LoveMining.service.user.UserService;
+import it.unipi.LoveMining.service.utility.InterestExtractorService;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// In-memory ranking of the 'bitset' recommendations (UserService.rankCandidates): IDF-weighted
+// interest overlap, optional co-like blending and top-10 selection over the graph candidates
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RankingBenchmark {
+
+	// lovemining.recommendations.candidate-limit range
+	@Param({"100", "1000", "5000"})
+	public int candidates;
+
+	// 0 = interest overlap only
+	@Param({"0.0", "0.3"})
+	public double coLikeWeight;
+
+	private InterestWeightService interestWeightService;
+	private List<Map<String, Object>> candidateRows;
+	private long[] myBits;
+	private Map<String, Double> coLikeScores;
+
+	@Setup
+	public void setup() throws IOException {
+		InterestExtractorService interestExtractorService = new InterestExtractorService();
+		interestExtractorService.loadInterestsFromCsv();
+		List<String> names = BenchmarkData.interestNames();
+		Random random = new Random(42);
+
+		// IDF table of a 60k users dataset (the repository is only read by refreshWeights)
+		List<Map<String, Object>> counts = new ArrayList<>();
+		for (String name : names) {
+			counts.add(Map.of("_id", name, "count", 1 + random.nextInt(20000)));
+		}
+		UserMongoRepository userMongoRepository = Mockito.mock(UserMongoRepository.class);
+		Mockito.when(userMongoRepository.count()).thenReturn(60000L);
+		Mockito.when(userMongoRepository.countUsersByInterest()).thenReturn(counts);
+		interestWeightService = new InterestWeightService(userMongoRepository, null, null, interestExtractorService);
+		interestWeightService.refreshWeights();
+
+		myBits = interestExtractorService.encodeInterests(randomInterests(names, random));
+		candidateRows = new ArrayList<>(candidates);
+		coLikeScores = new HashMap<>();
+		for (int i = 0; i < candidates; i++) {
+			String id = "candidate-" + i;
+			// Neo4j returns the bitset as a list of longs
+			List<Long> bits = new ArrayList<>();
+			for (long word : interestExtractorService.encodeInterests(randomInterests(names, random))) {
+				bits.add(word);
+			}
+			candidateRows.add(Map.of("id", id, "interestBits", bits));
+			if (coLikeWeight > 0 && random.nextInt(5) == 0) {
+				coLikeScores.put(id, random.nextDouble());
+			}
+		}
+	}
+
+	private static List<String> randomInterests(List<String> names, Random random) {
+		List<String> interests = new ArrayList<>();
+		int count = random.nextInt(15);
+		for (int i = 0; i < count; i++) {
+			interests.add(names.get(random.nextInt(names.size())));
+		}
+		return interests;
+	}
+
+	@Benchmark
+	public List<String> rankCandidates() {
+		return UserService.rankCandidates(candidateRows, myBits, interestWeightService, coLikeScores,
+				coLikeWeight, 10);
+	}
+}
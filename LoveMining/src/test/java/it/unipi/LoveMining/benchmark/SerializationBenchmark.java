@@ -0,0 +1,65 @@
+package it.unipi.LoveMining.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import it.unipi.LoveMining.model.dto.RecommendationCard;
+import it.unipi.LoveMining.model.mongo.UserDocument;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Jackson serialization of a full profile and of a page of recommendation cards,
+// with the ObjectMapper defaults of Spring Boot
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializationBenchmark {
+
+	private ObjectMapper objectMapper;
+	private UserDocument user;
+	private List<RecommendationCard> cards;
+
+	@Setup
+	public void setup() throws IOException {
+		objectMapper = Jackson2ObjectMapperBuilder.json().build();
+		user = BenchmarkData.user("bench-user", 1);
+
+		Random random = new Random(42);
+		List<String> names = BenchmarkData.interestNames();
+		cards = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			String essay = BenchmarkData.essay(200, i);
+			List<String> shared = List.of(names.get(random.nextInt(names.size())),
+					names.get(random.nextInt(names.size())));
+			cards.add(new RecommendationCard("candidate-" + i, 18 + random.nextInt(50), "san francisco",
+					essay.substring(0, 200), shared, 1 + random.nextDouble() * 4));
+		}
+	}
+
+	@Benchmark
+	public byte[] userDocument() throws IOException {
+		return objectMapper.writeValueAsBytes(user);
+	}
+
+	@Benchmark
+	public byte[] recommendationCards() throws IOException {
+		return objectMapper.writeValueAsBytes(cards);
+	}
+}
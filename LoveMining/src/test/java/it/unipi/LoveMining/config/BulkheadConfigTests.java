@@ -0,0 +1,129 @@
+package it.unipi.LoveMining.config;
+
+import it.unipi.LoveMining.service.utility.Bulkhead;
+import it.unipi.LoveMining.service.utility.BulkheadFullException;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.Advisor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Role;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.annotation.EnableTransactionManagement;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BulkheadConfigTests {
+
+	private static final int PERMITS = 2;
+
+	// Transaction manager counting the open transactions: each one holds a connection of the pool
+	static class ConnectionCountingTransactionManager implements PlatformTransactionManager {
+		final AtomicInteger open = new AtomicInteger();
+		final AtomicInteger maxOpen = new AtomicInteger();
+
+		@Override
+		public TransactionStatus getTransaction(TransactionDefinition definition) {
+			maxOpen.accumulateAndGet(open.incrementAndGet(), Math::max);
+			return new SimpleTransactionStatus();
+		}
+
+		@Override
+		public void commit(TransactionStatus status) {
+			open.decrementAndGet();
+		}
+
+		@Override
+		public void rollback(TransactionStatus status) {
+			open.decrementAndGet();
+		}
+	}
+
+	@Service
+	static class SwipeService {
+		@Transactional
+		public void swipe(CountDownLatch release) throws InterruptedException {
+			release.await();
+		}
+	}
+
+	@Configuration
+	@EnableTransactionManagement
+	static class TestConfig {
+		@Bean
+		Bulkhead neo4jBulkhead() {
+			return new Bulkhead("neo4j", PERMITS, 200);
+		}
+
+		@Bean
+		@Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+		static Advisor transactionalBulkhead(@Qualifier("neo4jBulkhead") ObjectProvider<Bulkhead> neo4jBulkhead) {
+			return BulkheadConfig.transactionalBulkhead(neo4jBulkhead);
+		}
+
+		@Bean
+		ConnectionCountingTransactionManager transactionManager() {
+			return new ConnectionCountingTransactionManager();
+		}
+
+		@Bean
+		SwipeService swipeService() {
+			return new SwipeService();
+		}
+	}
+
+	@Test
+	void transactionalCallersCannotHoldMoreConnectionsThanPermits() throws Exception {
+		try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(TestConfig.class);
+			 ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			SwipeService swipeService = context.getBean(SwipeService.class);
+			ConnectionCountingTransactionManager transactionManager = context.getBean(ConnectionCountingTransactionManager.class);
+
+			// 5 concurrent swipes, the first ones hold their transaction until released
+			int callers = PERMITS + 3;
+			CountDownLatch release = new CountDownLatch(1);
+			CountDownLatch rejected = new CountDownLatch(callers - PERMITS);
+			List<Future<?>> swipes = new ArrayList<>();
+			for (int i = 0; i < callers; i++) {
+				swipes.add(executor.submit(() -> {
+					try {
+						swipeService.swipe(release);
+					} catch (BulkheadFullException e) {
+						rejected.countDown();
+					}
+					return null;
+				}));
+			}
+
+			// The excess waits for a permit outside the transaction, then is rejected without opening one
+			assertTrue(rejected.await(5, TimeUnit.SECONDS));
+			assertEquals(PERMITS, transactionManager.open.get());
+			release.countDown();
+			for (Future<?> swipe : swipes) {
+				swipe.get(5, TimeUnit.SECONDS);
+			}
+
+			assertEquals(PERMITS, transactionManager.maxOpen.get());
+			assertEquals(0, transactionManager.open.get());
+			assertEquals(PERMITS, context.getBean(Bulkhead.class).availablePermits());
+		}
+	}
+}
@@ -0,0 +1,525 @@
+package it.unipi.LoveMining.datagen;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.core.io.ClassPathResource;
+
+import it.unipi.LoveMining.service.utility.InterestExtractorService;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.TreeSet;
+
+// Seeded generator of a LoveMining dataset at any scale (profile 'datagen' of the pom).
+// Same seed and options = same files, byte for byte. The output is in the formats of the bulk loaders:
+//   users.json, profile_details.json, reviews.json   mongoimport (JSON lines, extended JSON dates)
+//   *_nodes.csv and the relationship CSVs             neo4j-admin database import full
+//   matches.csv, likes.csv, dislikes.csv, reviews.csv also readable by the load-test harness
+// Distributions: cities Zipf-skewed over cities.csv (plus a few out-of-state users), interests
+// Zipf-skewed over interessi.csv, swipes per user and popularity (hence likes received) power-law.
+//   -Ddatagen.users=600000  -Ddatagen.seed=42  -Ddatagen.output=target/dataset
+//   -Ddatagen.swipes-min=5  -Ddatagen.swipes-alpha=2.2  -Ddatagen.swipes-max=2000
+//   -Ddatagen.popularity-alpha=2.5  -Ddatagen.reciprocity=0.05  -Ddatagen.review-rate=0.3
+public class DatasetGenerator {
+
+	// Password of every generated user, stored as this precomputed BCrypt hash (cost 10, fixed salt):
+	// encoding it at every run would use a random salt and change users.json
+	static final String PASSWORD = "datagen";
+	static final String PASSWORD_HASH = "$2a$10$LoveMiningDatagenSalt.cDoF/Mv6yFwxw78RTmK0uOP9QT0W2Nm";
+
+	private static final String[] SEXES = {"m", "f"};
+	private static final String[] ORIENTATIONS = {"straight", "gay", "bisexual"};
+	private static final String[][] OUT_OF_STATE = {{"new york", "new york"}, {"seattle", "washington"},
+			{"portland", "oregon"}, {"chicago", "illinois"}, {"boston", "massachusetts"}};
+	private static final String[] FILLER = {"i", "am", "a", "pretty", "easy", "going", "person", "who", "likes",
+			"to", "spend", "the", "weekend", "with", "friends", "and", "sometimes", "alone", "really", "into",
+			"looking", "for", "someone", "funny", "honest", "new", "things", "my", "life"};
+	private static final Map<Integer, List<String>> DEFAULT_COMMENTS = Map.of(
+			1, List.of("Please stop sending matches like this."),
+			2, List.of("Not compatible. The system needs to learn better."),
+			3, List.of("Average match. We share interests, but that's about it."),
+			4, List.of("Solid recommendation. We get along well."),
+			5, List.of("Spot on recommendation. We just clicked instantly."));
+
+	private final int users;
+	private final long seed;
+	private final Path output;
+	private final int swipesMin;
+	private final double swipesAlpha;
+	private final int swipesMax;
+	private final double popularityAlpha;
+	private final double reciprocity;
+	private final double reviewRate;
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final InterestExtractorService interestExtractorService = new InterestExtractorService();
+
+	// Reference data
+	private final List<String[]> locations = new ArrayList<>();
+	private final List<String> interestNames = new ArrayList<>();
+	private final List<List<String>> interestVariants = new ArrayList<>();
+	private final List<String> filler = new ArrayList<>();
+	private Map<Integer, List<String>> comments = DEFAULT_COMMENTS;
+
+	// Per-user attributes kept for the edge pass (about 16 bytes per user)
+	private int[] location;
+	private byte[] sex;
+	private byte[] orientation;
+	private byte[] age;
+	private float[] popularity;
+
+	// Candidate pools: users of each location with their cumulative popularity (weighted sampling)
+	private int[][] poolUsers;
+	private double[][] poolWeights;
+	private int[][] statePoolUsers;
+	private double[][] statePoolWeights;
+	private int[] stateOfLocation;
+
+	private long likes;
+	private long dislikes;
+	private long matches;
+	private long reviews;
+
+	DatasetGenerator(int users, long seed, Path output, int swipesMin, double swipesAlpha, int swipesMax,
+					 double popularityAlpha, double reciprocity, double reviewRate) {
+		this.users = users;
+		this.seed = seed;
+		this.output = output;
+		this.swipesMin = swipesMin;
+		this.swipesAlpha = swipesAlpha;
+		this.swipesMax = swipesMax;
+		this.popularityAlpha = popularityAlpha;
+		this.reciprocity = reciprocity;
+		this.reviewRate = reviewRate;
+	}
+
+	public static void main(String[] args) throws Exception {
+		DatasetGenerator generator = new DatasetGenerator(
+				Integer.getInteger("datagen.users", 600_000),
+				Long.getLong("datagen.seed", 42L),
+				Path.of(System.getProperty("datagen.output", "target/dataset")),
+				Integer.getInteger("datagen.swipes-min", 5),
+				Double.parseDouble(System.getProperty("datagen.swipes-alpha", "2.2")),
+				Integer.getInteger("datagen.swipes-max", 2000),
+				Double.parseDouble(System.getProperty("datagen.popularity-alpha", "2.5")),
+				Double.parseDouble(System.getProperty("datagen.reciprocity", "0.05")),
+				Double.parseDouble(System.getProperty("datagen.review-rate", "0.3")));
+		Path dataset = Path.of(System.getProperty("datagen.dataset", "../Dataset"));
+		generator.generate(dataset);
+	}
+
+	void generate(Path dataset) throws IOException {
+		long start = System.nanoTime();
+		loadReferenceData(dataset);
+		generateAttributes();
+		buildPools();
+		Files.createDirectories(output);
+		writeReferenceNodes();
+		writeUsersAndEdges();
+		System.out.printf("Generated %d users, %d likes, %d dislikes, %d matches, %d reviews in %.1f s into %s%n",
+				users, likes, dislikes, matches, reviews, (System.nanoTime() - start) / 1e9, output.toAbsolutePath());
+		printImportCommands();
+	}
+
+	private void loadReferenceData(Path dataset) throws IOException {
+		interestExtractorService.loadInterestsFromCsv();
+		for (String[] row : resourceRows("interessi.csv")) {
+			if (row.length < 2 || row[0].equals("Display_Name")) continue;
+			interestNames.add(row[0].trim());
+			List<String> variants = new ArrayList<>();
+			for (String variant : row[1].split(",")) {
+				if (!variant.isBlank()) variants.add(variant.trim().toLowerCase());
+			}
+			interestVariants.add(variants);
+		}
+		// Filler words are never interest variants: the interests of a user are exactly the ones drawn
+		Set<String> allVariants = new HashSet<>();
+		interestVariants.forEach(allVariants::addAll);
+		for (String word : FILLER) {
+			if (!allVariants.contains(word)) filler.add(word);
+		}
+		for (String[] row : resourceRows("cities.csv")) {
+			if (row.length < 2 || row[0].equals("City")) continue;
+			locations.add(new String[]{row[0].trim(), row[1].trim()});
+		}
+		locations.addAll(List.of(OUT_OF_STATE));
+
+		// Review comments of the shipped dataset by rating, when available
+		Path reviewsFile = dataset.resolve("reviews.csv");
+		if (Files.exists(reviewsFile)) {
+			Map<Integer, List<String>> byRating = new HashMap<>();
+			try (BufferedReader reader = Files.newBufferedReader(reviewsFile, StandardCharsets.UTF_8)) {
+				reader.readLine();
+				String line;
+				while ((line = reader.readLine()) != null) {
+					List<String> fields = splitCsv(line);
+					if (fields.size() < 4) continue;
+					byRating.computeIfAbsent(Integer.parseInt(fields.get(2)), k -> new ArrayList<>()).add(fields.get(3));
+				}
+			}
+			if (byRating.keySet().containsAll(DEFAULT_COMMENTS.keySet())) {
+				comments = byRating;
+			}
+		}
+	}
+
+	// Pass 1: the attributes the edges depend on
+	private void generateAttributes() {
+		Random random = new Random(seed);
+		location = new int[users];
+		sex = new byte[users];
+		orientation = new byte[users];
+		age = new byte[users];
+		popularity = new float[users];
+		int californian = locations.size() - OUT_OF_STATE.length;
+		ZipfSampler cities = new ZipfSampler(californian, 1.1);
+		for (int u = 0; u < users; u++) {
+			location[u] = random.nextDouble() < 0.01
+					? californian + random.nextInt(OUT_OF_STATE.length)
+					: cities.sample(random);
+			sex[u] = (byte) (random.nextDouble() < 0.6 ? 0 : 1);
+			double o = random.nextDouble();
+			orientation[u] = (byte) (o < 0.86 ? 0 : o < 0.95 ? 1 : 2);
+			// Right-skewed ages (mode in the late twenties), 18..69
+			age[u] = (byte) Math.min(69, 18 + (int) Math.round(Math.abs(random.nextGaussian()) * 12 + random.nextInt(6)));
+			popularity[u] = (float) pareto(random.nextDouble(), 1.0, popularityAlpha);
+		}
+	}
+
+	private void buildPools() {
+		Map<String, Integer> stateIndex = new LinkedHashMap<>();
+		stateOfLocation = new int[locations.size()];
+		for (int l = 0; l < locations.size(); l++) {
+			stateOfLocation[l] = stateIndex.computeIfAbsent(locations.get(l)[1], k -> stateIndex.size());
+		}
+		int[] locationCount = new int[locations.size()];
+		int[] stateCount = new int[stateIndex.size()];
+		for (int u = 0; u < users; u++) {
+			locationCount[location[u]]++;
+			stateCount[stateOfLocation[location[u]]]++;
+		}
+		poolUsers = new int[locations.size()][];
+		poolWeights = new double[locations.size()][];
+		for (int l = 0; l < locations.size(); l++) {
+			poolUsers[l] = new int[locationCount[l]];
+			poolWeights[l] = new double[locationCount[l]];
+		}
+		statePoolUsers = new int[stateIndex.size()][];
+		statePoolWeights = new double[stateIndex.size()][];
+		for (int s = 0; s < stateIndex.size(); s++) {
+			statePoolUsers[s] = new int[stateCount[s]];
+			statePoolWeights[s] = new double[stateCount[s]];
+		}
+		int[] locationFill = new int[locations.size()];
+		int[] stateFill = new int[stateIndex.size()];
+		for (int u = 0; u < users; u++) {
+			int l = location[u];
+			int s = stateOfLocation[l];
+			addToPool(poolUsers[l], poolWeights[l], locationFill[l]++, u);
+			addToPool(statePoolUsers[s], statePoolWeights[s], stateFill[s]++, u);
+		}
+	}
+
+	private void addToPool(int[] members, double[] cumulative, int i, int u) {
+		members[i] = u;
+		cumulative[i] = (i == 0 ? 0.0 : cumulative[i - 1]) + popularity[u];
+	}
+
+	private void writeReferenceNodes() throws IOException {
+		try (BufferedWriter cities = writer("city_nodes.csv", "name:ID(City)");
+			 BufferedWriter states = writer("state_nodes.csv", "name:ID(State)");
+			 BufferedWriter locatedIn = writer("located_in.csv", ":START_ID(City),:END_ID(State)");
+			 BufferedWriter interests = writer("interest_nodes.csv", "name:ID(Interest)")) {
+			Set<String> writtenStates = new HashSet<>();
+			for (String[] l : locations) {
+				line(cities, csv(l[0]));
+				line(locatedIn, csv(l[0]) + "," + csv(l[1]));
+				if (writtenStates.add(l[1])) line(states, csv(l[1]));
+			}
+			for (String name : interestNames) line(interests, csv(name));
+		}
+	}
+
+	// Pass 2: for every user its documents, node, outgoing swipes and the reviews it wrote
+	private void writeUsersAndEdges() throws IOException {
+		Instant now = Instant.parse("2025-06-01T00:00:00Z");
+		ZipfSampler interestSampler = new ZipfSampler(interestNames.size(), 0.9);
+		int[] interestOrder = shuffledOrdinals(new Random(seed + 1));
+
+		try (BufferedWriter usersJson = writer("users.json", null);
+			 BufferedWriter detailsJson = writer("profile_details.json", null);
+			 BufferedWriter reviewsJson = writer("reviews.json", null);
+			 BufferedWriter reviewsCsv = writer("reviews.csv", "\"_id\",\"target_id\",\"rating\",\"comment\",\"review_date\"");
+			 BufferedWriter userNodes = writer("user_nodes.csv", "_id:ID(User),age:int,sex,orientation,interestBits:long[]");
+			 BufferedWriter livesIn = writer("lives_in.csv", ":START_ID(User),:END_ID(City)");
+			 BufferedWriter hasInterest = writer("has_interest.csv", ":START_ID(User),:END_ID(Interest)");
+			 BufferedWriter likesCsv = writer("likes.csv", ":START_ID(User),:END_ID(User)");
+			 BufferedWriter dislikesCsv = writer("dislikes.csv", ":START_ID(User),:END_ID(User)");
+			 BufferedWriter matchesCsv = writer("matches.csv", ":START_ID(User),:END_ID(User),matchedAt:datetime")) {
+
+			Set<Integer> swiped = new HashSet<>();
+			for (int u = 0; u < users; u++) {
+				SplittableRandom random = new SplittableRandom(seed * 0x9E3779B97F4A7C15L + u);
+				String id = userId(u);
+				String[] where = locations.get(location[u]);
+
+				// Interests (Zipf over a seeded permutation of interessi.csv) and an essay mentioning them
+				Set<String> interests = new TreeSet<>();
+				StringBuilder essay = new StringBuilder();
+				int interestCount = random.nextInt(12);
+				for (int i = 0; i < interestCount; i++) {
+					int ordinal = interestOrder[interestSampler.sample(random)];
+					interests.add(interestNames.get(ordinal));
+					List<String> variants = interestVariants.get(ordinal);
+					for (int w = random.nextInt(6); w > 0; w--) essay.append(filler.get(random.nextInt(filler.size()))).append(' ');
+					essay.append(variants.get(random.nextInt(variants.size()))).append(random.nextInt(4) == 0 ? ". " : " ");
+				}
+				long[] bits = interestExtractorService.encodeInterests(interests);
+
+				// Swipes: power-law count, targets drawn by popularity in the city (state for small cities)
+				List<Map<String, Object>> reviewsMade = new ArrayList<>();
+				int[] members = poolUsers[location[u]];
+				double[] weights = poolWeights[location[u]];
+				if (members.length < 100) {
+					members = statePoolUsers[stateOfLocation[location[u]]];
+					weights = statePoolWeights[stateOfLocation[location[u]]];
+				}
+				int swipes = Math.min(swipesMax, (int) pareto(random.nextDouble(), swipesMin, swipesAlpha));
+				swiped.clear();
+				for (int attempt = 0; attempt < swipes * 4 && swiped.size() < swipes; attempt++) {
+					int v = members[weightedIndex(weights, random.nextDouble() * weights[weights.length - 1])];
+					if (v == u || !compatible(u, v) || !swiped.add(v)) continue;
+					double likeProbability = Math.min(0.9, 0.15 + 0.1 * Math.log(popularity[v])
+							+ (location[u] == location[v] ? 0.1 : 0.0));
+					if (random.nextDouble() >= likeProbability) {
+						line(dislikesCsv, id + "," + userId(v));
+						dislikes++;
+					} else if (random.nextDouble() < reciprocity) {
+						Instant matchedAt = now.minus(random.nextInt(730 * 24), ChronoUnit.HOURS);
+						line(matchesCsv, id + "," + userId(v) + "," + matchedAt);
+						matches++;
+						if (random.nextDouble() < reviewRate) {
+							reviewsMade.add(writeReview(reviewsJson, reviewsCsv, random, userId(v), matchedAt, now));
+						}
+					} else {
+						line(likesCsv, id + "," + userId(v));
+						likes++;
+					}
+				}
+
+				// Documents (hot 'users' + cold 'profile_details') and node
+				Map<String, Object> user = new LinkedHashMap<>();
+				user.put("_id", id);
+				user.put("Email", "user" + u + "@datagen.local");
+				user.put("Password", PASSWORD_HASH);
+				user.put("is_admin", false);
+				user.put("age", (int) age[u]);
+				user.put("status", status(random));
+				user.put("sex", SEXES[sex[u]]);
+				user.put("orientation", ORIENTATIONS[orientation[u]]);
+				user.put("city", where[0]);
+				user.put("state", where[1]);
+				user.put("interests", interests);
+				user.put("interest_bits", bits);
+				user.put("version", 1);
+				line(usersJson, objectMapper.writeValueAsString(user));
+
+				Map<String, Object> details = new LinkedHashMap<>();
+				details.put("_id", id);
+				details.put("height", 150 + random.nextInt(50));
+				details.put("essay0", essay.toString().trim());
+				details.put("reviews_made", reviewsMade);
+				line(detailsJson, objectMapper.writeValueAsString(details));
+
+				StringBuilder bitList = new StringBuilder();
+				for (long word : bits) bitList.append(bitList.isEmpty() ? "" : ";").append(word);
+				line(userNodes, id + "," + age[u] + "," + SEXES[sex[u]] + "," + ORIENTATIONS[orientation[u]] + "," + bitList);
+				line(livesIn, id + "," + csv(where[0]));
+				for (String interest : interests) line(hasInterest, id + "," + csv(interest));
+
+				if ((u + 1) % 100_000 == 0) {
+					System.out.printf("%d users written%n", u + 1);
+				}
+			}
+		}
+	}
+
+	private Map<String, Object> writeReview(BufferedWriter reviewsJson, BufferedWriter reviewsCsv, SplittableRandom random,
+											String targetId, Instant matchedAt, Instant now) throws IOException {
+		String reviewId = String.format("%08x%016x", 0x6a000000L, reviews++);
+		int rating = 1 + random.nextInt(5);
+		List<String> pool = comments.get(rating);
+		String comment = pool.get(random.nextInt(pool.size()));
+		long window = Math.max(1, ChronoUnit.HOURS.between(matchedAt, now));
+		Instant date = matchedAt.plus(random.nextLong(window), ChronoUnit.HOURS);
+
+		Map<String, Object> review = new LinkedHashMap<>();
+		review.put("_id", reviewId);
+		review.put("target_id", targetId);
+		review.put("rating", rating);
+		review.put("comment", comment);
+		review.put("review_date", Map.of("$date", date.toString()));
+		line(reviewsJson, objectMapper.writeValueAsString(review));
+		line(reviewsCsv, csv(reviewId) + "," + csv(targetId) + "," + rating + "," + csv(comment) + ","
+				+ csv(date.toString().substring(0, 19)));
+
+		Map<String, Object> summary = new LinkedHashMap<>();
+		summary.put("review_id", reviewId);
+		summary.put("target_id", targetId);
+		summary.put("rating", rating);
+		return summary;
+	}
+
+	// Same rule as the recommendations: each one is interested in the other's sex
+	private boolean compatible(int u, int v) {
+		return interested(orientation[u], sex[u], sex[v]) && interested(orientation[v], sex[v], sex[u]);
+	}
+
+	private static boolean interested(byte orientation, byte sex, byte other) {
+		return orientation == 2 || (orientation == 0) == (sex != other);
+	}
+
+	private static String status(SplittableRandom random) {
+		double s = random.nextDouble();
+		return s < 0.93 ? "single" : s < 0.96 ? "seeing someone" : s < 0.99 ? "available" : "married";
+	}
+
+	// 24 hex chars like a Mongo ObjectId, stable for the same user index
+	static String userId(int u) {
+		return String.format("%08x%016x", 0x69000000L, u);
+	}
+
+	// Pareto (power-law) value >= min with exponent alpha
+	private static double pareto(double uniform, double min, double alpha) {
+		return min * Math.pow(1.0 - uniform, -1.0 / (alpha - 1.0));
+	}
+
+	// First index whose cumulative weight exceeds the target
+	private static int weightedIndex(double[] cumulative, double target) {
+		int low = 0;
+		int high = cumulative.length - 1;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (cumulative[mid] <= target) low = mid + 1;
+			else high = mid;
+		}
+		return low;
+	}
+
+	private int[] shuffledOrdinals(Random random) {
+		int[] order = new int[interestNames.size()];
+		for (int i = 0; i < order.length; i++) order[i] = i;
+		for (int i = order.length - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int swap = order[i];
+			order[i] = order[j];
+			order[j] = swap;
+		}
+		return order;
+	}
+
+	private void printImportCommands() {
+		String dir = output.toAbsolutePath().toString();
+		System.out.println("\nMongoDB (database LoveMining):");
+		for (String collection : List.of("users", "profile_details", "reviews")) {
+			System.out.printf("  mongoimport --db LoveMining --collection %s --file %s/%s.json --numInsertionWorkers 8%n",
+					collection, dir, collection);
+		}
+		System.out.println("\nNeo4j (empty database, server stopped):");
+		System.out.printf("  neo4j-admin database import full --overwrite-destination"
+				+ " --nodes=User=%1$s/user_nodes.csv --nodes=City=%1$s/city_nodes.csv --nodes=State=%1$s/state_nodes.csv"
+				+ " --nodes=Interest=%1$s/interest_nodes.csv --relationships=LOCATED_IN=%1$s/located_in.csv"
+				+ " --relationships=LIVES_IN=%1$s/lives_in.csv --relationships=HAS_INTEREST=%1$s/has_interest.csv"
+				+ " --relationships=LIKES=%1$s/likes.csv --relationships=DISLIKES=%1$s/dislikes.csv"
+				+ " --relationships=MATCHED=%1$s/matches.csv neo4j%n", dir);
+	}
+
+	private BufferedWriter writer(String name, String header) throws IOException {
+		BufferedWriter writer = Files.newBufferedWriter(output.resolve(name), StandardCharsets.UTF_8);
+		if (header != null) line(writer, header);
+		return writer;
+	}
+
+	private static void line(BufferedWriter writer, String line) throws IOException {
+		writer.write(line);
+		writer.newLine();
+	}
+
+	private static String csv(String value) {
+		return "\"" + value.replace("\"", "\"\"") + "\"";
+	}
+
+	private static List<String[]> resourceRows(String name) throws IOException {
+		List<String[]> rows = new ArrayList<>();
+		ClassPathResource resource = new ClassPathResource(name);
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (!line.isBlank()) rows.add(line.split(";"));
+			}
+		}
+		return rows;
+	}
+
+	private static List<String> splitCsv(String line) {
+		List<String> fields = new ArrayList<>();
+		StringBuilder field = new StringBuilder();
+		boolean quoted = false;
+		for (int i = 0; i < line.length(); i++) {
+			char c = line.charAt(i);
+			if (c == '"') {
+				if (quoted && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+					field.append('"');
+					i++;
+				} else {
+					quoted = !quoted;
+				}
+			} else if (c == ',' && !quoted) {
+				fields.add(field.toString());
+				field.setLength(0);
+			} else {
+				field.append(c);
+			}
+		}
+		fields.add(field.toString());
+		return fields;
+	}
+
+	// Zipf sampler over ranks 0..n-1 (inverse CDF by binary search)
+	private static final class ZipfSampler {
+
+		private final double[] cumulative;
+
+		ZipfSampler(int n, double exponent) {
+			cumulative = new double[n];
+			double sum = 0.0;
+			for (int k = 0; k < n; k++) {
+				sum += 1.0 / Math.pow(k + 1, exponent);
+				cumulative[k] = sum;
+			}
+		}
+
+		int sample(Random random) {
+			return weightedIndex(cumulative, random.nextDouble() * cumulative[cumulative.length - 1]);
+		}
+
+		int sample(SplittableRandom random) {
+			return weightedIndex(cumulative, random.nextDouble() * cumulative[cumulative.length - 1]);
+		}
+	}
+}
@@ -0,0 +1,54 @@
+package it.unipi.LoveMining.loadtest;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Latencies and outcomes of one endpoint. Every latency is kept (8 bytes per request) so that the
+// percentiles are exact, also in the p999 tail.
+final class LatencyRecorder {
+
+	private long[] latencies = new long[1024];
+	private int count;
+	private int errors;
+	private final Map<String, Integer> outcomes = new TreeMap<>();
+
+	synchronized void record(long latencyNanos, String outcome, boolean error) {
+		if (count == latencies.length) {
+			latencies = Arrays.copyOf(latencies, count * 2);
+		}
+		latencies[count++] = latencyNanos;
+		if (error) errors++;
+		outcomes.merge(outcome, 1, Integer::sum);
+	}
+
+	synchronized int count() {
+		return count;
+	}
+
+	synchronized Map<String, Object> summary() {
+		long[] sorted = Arrays.copyOf(latencies, count);
+		Arrays.sort(sorted);
+		Map<String, Object> summary = new LinkedHashMap<>();
+		summary.put("count", count);
+		summary.put("errors", errors);
+		summary.put("p50Ms", millis(percentile(sorted, 0.50)));
+		summary.put("p99Ms", millis(percentile(sorted, 0.99)));
+		summary.put("p999Ms", millis(percentile(sorted, 0.999)));
+		summary.put("maxMs", millis(sorted.length > 0 ? sorted[sorted.length - 1] : 0));
+		summary.put("outcomes", new TreeMap<>(outcomes));
+		return summary;
+	}
+
+	// Nearest-rank percentile
+	private static long percentile(long[] sorted, double quantile) {
+		if (sorted.length == 0) return 0;
+		int rank = (int) Math.ceil(quantile * sorted.length);
+		return sorted[Math.max(0, rank - 1)];
+	}
+
+	private static double millis(long nanos) {
+		return Math.round(nanos / 1_000.0) / 1_000.0;
+	}
+}
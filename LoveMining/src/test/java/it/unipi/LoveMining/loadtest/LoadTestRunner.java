@@ -0,0 +1,254 @@
+package it.unipi.LoveMining.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+// Replays the Dataset/ interactions against a running instance (profile 'loadtest' of the pom):
+// registration of the replayed users, then recommendations, likes and dislikes, then reviews.
+// Open loop: request i is due at start + i / rate whatever the previous responses, and its latency is
+// measured from that instant, so a saturated server shows up in the percentiles instead of slowing the load.
+//   -Dloadtest.base-url=http://localhost:8080   -Dloadtest.dataset=../Dataset
+//   -Dloadtest.users=2000   -Dloadtest.rate=200 (requests/s)   -Dloadtest.duration=300 (s, 0 = whole plan)
+//   -Dloadtest.recommend-every=10   -Dloadtest.max-in-flight=5000   -Dloadtest.seed=42
+//   -Dloadtest.label=virtual (report in target/loadtest-report-virtual.json)
+//   -Dloadtest.compare-with=target/loadtest-report-platform.json (side by side with a previous run)
+// Platform vs virtual threads: one run per mode of the server (spring.threads.virtual.enabled), same
+// seed and rate, the second one compared with the first.
+public class LoadTestRunner {
+
+	private static final String PASSWORD = "loadtest";
+
+	private final HttpClient httpClient;
+	private final String baseUrl;
+	private final Duration timeout;
+	private final Semaphore inFlight;
+	private final String runId = Long.toString(System.currentTimeMillis(), 36);
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	// Mongo id of every replayed user (null until registered)
+	private final String[] userIds;
+	private final Map<ReplayPlan.Endpoint, LatencyRecorder> recorders = new EnumMap<>(ReplayPlan.Endpoint.class);
+	private final LatencyRecorder profileRecorder = new LatencyRecorder();
+	private final AtomicInteger skipped = new AtomicInteger();
+
+	private LoadTestRunner(String baseUrl, int users, Duration timeout, int maxInFlight) {
+		this.baseUrl = baseUrl;
+		this.timeout = timeout;
+		this.inFlight = new Semaphore(maxInFlight);
+		this.userIds = new String[users];
+		this.httpClient = HttpClient.newBuilder()
+				.executor(Executors.newVirtualThreadPerTaskExecutor())
+				.connectTimeout(timeout)
+				.build();
+		for (ReplayPlan.Endpoint endpoint : ReplayPlan.Endpoint.values()) {
+			recorders.put(endpoint, new LatencyRecorder());
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		String baseUrl = System.getProperty("loadtest.base-url", "http://localhost:8080");
+		Path dataset = Path.of(System.getProperty("loadtest.dataset", "../Dataset"));
+		int users = Integer.getInteger("loadtest.users", 2000);
+		double rate = Double.parseDouble(System.getProperty("loadtest.rate", "200"));
+		long duration = Long.getLong("loadtest.duration", 300L);
+		int recommendEvery = Integer.getInteger("loadtest.recommend-every", 10);
+		int maxInFlight = Integer.getInteger("loadtest.max-in-flight", 5000);
+		long seed = Long.getLong("loadtest.seed", 42L);
+		String label = System.getProperty("loadtest.label", "");
+		String compareWith = System.getProperty("loadtest.compare-with", "");
+
+		ReplayPlan plan = ReplayPlan.load(dataset, users, recommendEvery, seed);
+		System.out.printf("Plan: %d users, %d registrations, %d swipe-phase requests, %d reviews%n",
+				plan.users, plan.registrations.size(), plan.swipes.size(), plan.reviews.size());
+
+		LoadTestRunner runner = new LoadTestRunner(baseUrl, plan.users, Duration.ofSeconds(30), maxInFlight);
+		long deadline = duration > 0 ? System.nanoTime() + TimeUnit.SECONDS.toNanos(duration) : Long.MAX_VALUE;
+		long start = System.nanoTime();
+		runner.replay("register", plan.registrations, rate, deadline);
+		runner.replay("swipe", plan.swipes, rate, deadline);
+		runner.replay("review", plan.reviews, rate, deadline);
+		Path report = Path.of("target", label.isBlank() ? "loadtest-report.json" : "loadtest-report-" + label + ".json");
+		runner.report(rate, (System.nanoTime() - start) / 1e9, report);
+		if (!compareWith.isBlank()) {
+			runner.compare(Path.of(compareWith), report);
+		}
+	}
+
+	// Issues the operations at the given rate on virtual threads; waits for the last responses
+	private void replay(String phase, List<ReplayPlan.Operation> operations, double rate, long deadline)
+			throws InterruptedException {
+		System.out.printf("Phase %s: %d requests at %.0f/s%n", phase, operations.size(), rate);
+		long interval = (long) (1e9 / rate);
+		long start = System.nanoTime();
+		try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			for (int i = 0; i < operations.size(); i++) {
+				long due = start + i * interval;
+				long wait = due - System.nanoTime();
+				if (wait > 0) LockSupport.parkNanos(wait);
+				if (System.nanoTime() > deadline) {
+					System.out.println("Duration reached, " + (operations.size() - i) + " " + phase + " requests not sent");
+					break;
+				}
+				// Bounds the memory when the server stalls (the wait still counts in the latency)
+				inFlight.acquire();
+				ReplayPlan.Operation operation = operations.get(i);
+				executor.submit(() -> {
+					try {
+						execute(operation, due);
+					} finally {
+						inFlight.release();
+					}
+				});
+			}
+		}
+	}
+
+	private void execute(ReplayPlan.Operation operation, long due) {
+		String actorId = userIds[operation.actor()];
+		String targetId = operation.target() >= 0 ? userIds[operation.target()] : null;
+		if (operation.endpoint() != ReplayPlan.Endpoint.REGISTER
+				&& (actorId == null || (operation.target() >= 0 && targetId == null))) {
+			skipped.incrementAndGet(); // registration of one of the users failed
+			return;
+		}
+		String auth = basicAuth(operation.actor());
+		HttpRequest request = switch (operation.endpoint()) {
+			case REGISTER -> json("/api/authentication/register", null,
+					ReplayPlan.registration(operation.actor(), runId, PASSWORD));
+			case RECOMMEND -> get("/api/users/recommendations/filters?locationFilter=City&minAge=18&maxAge=99", auth);
+			case LIKE -> post("/api/users/" + targetId + "/like", auth);
+			case DISLIKE -> post("/api/users/" + targetId + "/dislike", auth);
+			case REVIEW -> json("/api/users/" + targetId + "/review", auth,
+					Map.of("rating", operation.rating(), "comment", operation.comment()));
+		};
+		HttpResponse<String> response = send(request, due, recorders.get(operation.endpoint()));
+		if (operation.endpoint() == ReplayPlan.Endpoint.REGISTER && response != null && response.statusCode() == 200) {
+			// The id of the new user is read from its profile
+			HttpResponse<String> profile = send(get("/api/users?fields=id", auth), System.nanoTime(), profileRecorder);
+			if (profile != null && profile.statusCode() == 200) {
+				try {
+					userIds[operation.actor()] = objectMapper.readTree(profile.body()).path("id").asText(null);
+				} catch (Exception e) {
+					System.err.println("Unreadable profile of user " + operation.actor() + ": " + e.getMessage());
+				}
+			}
+		}
+	}
+
+	// Sends the request and records its latency from 'due' (null on I/O errors and timeouts)
+	private HttpResponse<String> send(HttpRequest request, long due, LatencyRecorder recorder) {
+		try {
+			HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+			int status = response.statusCode();
+			recorder.record(System.nanoTime() - due, Integer.toString(status), status >= 400);
+			return response;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		} catch (Exception e) {
+			recorder.record(System.nanoTime() - due, e.getClass().getSimpleName(), true);
+			return null;
+		}
+	}
+
+	private HttpRequest get(String path, String auth) {
+		return builder(path, auth).GET().build();
+	}
+
+	private HttpRequest post(String path, String auth) {
+		return builder(path, auth).POST(HttpRequest.BodyPublishers.noBody()).build();
+	}
+
+	private HttpRequest json(String path, String auth, Map<String, Object> body) {
+		try {
+			return builder(path, auth)
+					.header("Content-Type", "application/json")
+					.POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(body)))
+					.build();
+		} catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private HttpRequest.Builder builder(String path, String auth) {
+		HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(timeout);
+		if (auth != null) builder.header("Authorization", auth);
+		return builder;
+	}
+
+	private String basicAuth(int user) {
+		String credentials = ReplayPlan.email(user, runId) + ":" + PASSWORD;
+		return "Basic " + Base64.getEncoder().encodeToString(credentials.getBytes(StandardCharsets.UTF_8));
+	}
+
+	// Percentiles per endpoint on stdout and in the report file
+	private void report(double rate, double seconds, Path reportFile) throws Exception {
+		Map<String, Object> endpoints = new LinkedHashMap<>();
+		int total = 0;
+		for (Map.Entry<ReplayPlan.Endpoint, LatencyRecorder> entry : recorders.entrySet()) {
+			endpoints.put(entry.getKey().name().toLowerCase(), entry.getValue().summary());
+			total += entry.getValue().count();
+		}
+		endpoints.put("profile", profileRecorder.summary());
+		total += profileRecorder.count();
+
+		System.out.printf("%n%-10s %8s %8s %10s %10s %10s %10s%n", "endpoint", "count", "errors", "p50 ms", "p99 ms",
+				"p999 ms", "max ms");
+		for (Map.Entry<String, Object> entry : endpoints.entrySet()) {
+			@SuppressWarnings("unchecked")
+			Map<String, Object> s = (Map<String, Object>) entry.getValue();
+			System.out.printf("%-10s %8d %8d %10.1f %10.1f %10.1f %10.1f   %s%n", entry.getKey(), s.get("count"),
+					s.get("errors"), s.get("p50Ms"), s.get("p99Ms"), s.get("p999Ms"), s.get("maxMs"), s.get("outcomes"));
+		}
+		System.out.printf("%d requests in %.1f s (%.1f/s achieved, %.0f/s target), %d skipped%n",
+				total, seconds, total / seconds, rate, skipped.get());
+
+		Map<String, Object> report = new LinkedHashMap<>();
+		report.put("baseUrl", baseUrl);
+		report.put("targetRate", rate);
+		report.put("achievedRate", total / seconds);
+		report.put("seconds", seconds);
+		report.put("skipped", skipped.get());
+		report.put("endpoints", endpoints);
+		Files.createDirectories(reportFile.getParent());
+		objectMapper.writerWithDefaultPrettyPrinter().writeValue(reportFile.toFile(), report);
+		System.out.println("Report written to " + reportFile);
+	}
+
+	// Achieved rate, errors and percentiles of this run next to the ones of a previous report
+	private void compare(Path baseFile, Path reportFile) throws Exception {
+		JsonNode base = objectMapper.readTree(baseFile.toFile());
+		JsonNode now = objectMapper.readTree(reportFile.toFile());
+		System.out.printf("%nCompared with %s: %.1f/s -> %.1f/s achieved%n", baseFile,
+				base.path("achievedRate").asDouble(), now.path("achievedRate").asDouble());
+		System.out.printf("%-10s %17s %21s %21s%n", "endpoint", "errors", "p50 ms", "p99 ms");
+		now.path("endpoints").fields().forEachRemaining(entry -> {
+			JsonNode before = base.path("endpoints").path(entry.getKey());
+			JsonNode after = entry.getValue();
+			System.out.printf("%-10s %8d -> %-6d %9.1f -> %-9.1f %9.1f -> %-9.1f%n", entry.getKey(),
+					before.path("errors").asInt(), after.path("errors").asInt(),
+					before.path("p50Ms").asDouble(), after.path("p50Ms").asDouble(),
+					before.path("p99Ms").asDouble(), after.path("p99Ms").asDouble());
+		});
+	}
+}
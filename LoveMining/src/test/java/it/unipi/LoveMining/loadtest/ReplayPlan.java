@@ -0,0 +1,202 @@
+package it.unipi.LoveMining.loadtest;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+// Traffic built from the interaction files of Dataset/: the dataset users taking part in the
+// interactions are mapped to users registered by the harness (their passwords are only stored as
+// BCrypt hashes), then their swipes and reviews are replayed between the registered users.
+final class ReplayPlan {
+
+	enum Endpoint { REGISTER, RECOMMEND, LIKE, DISLIKE, REVIEW }
+
+	record Operation(Endpoint endpoint, int actor, int target, int rating, String comment) {
+	}
+
+	// City/state of the registered users, weighted like the dataset (mostly bay area)
+	private static final String[][] LOCATIONS = {
+			{"san francisco", "california"}, {"san francisco", "california"}, {"san francisco", "california"},
+			{"oakland", "california"}, {"oakland", "california"}, {"berkeley", "california"},
+			{"san mateo", "california"}, {"palo alto", "california"}, {"new york", "new york"}};
+
+	private static final String[] ESSAYS = {
+			"i love hiking, cooking and live music. looking for someone to travel with.",
+			"software engineer by day, guitar player by night. coffee addict and dog lover.",
+			"i read a lot, run on weekends and i am always up for a good movie.",
+			"yoga, photography and art galleries. i make a mean pizza.",
+			"i like sports, video games and beer with friends."};
+
+	final List<Operation> registrations = new ArrayList<>();
+	final List<Operation> swipes = new ArrayList<>();
+	final List<Operation> reviews = new ArrayList<>();
+	final int users;
+
+	private ReplayPlan(int users) {
+		this.users = users;
+	}
+
+	// maxUsers bounds the replayed users (edges with both ends among them); one recommendation
+	// request is issued before every 'recommendEvery' swipes of a user
+	static ReplayPlan load(Path dataset, int maxUsers, int recommendEvery, long seed) throws IOException {
+		Map<String, Integer> userIndex = new LinkedHashMap<>();
+		List<String[]> matches = pairs(dataset.resolve("matches.csv"), userIndex, maxUsers);
+		List<String[]> likes = pairs(dataset.resolve("likes.csv"), userIndex, maxUsers);
+		List<String[]> dislikes = pairs(dataset.resolve("dislikes.csv"), userIndex, maxUsers);
+
+		ReplayPlan plan = new ReplayPlan(userIndex.size());
+		for (int u = 0; u < plan.users; u++) {
+			plan.registrations.add(new Operation(Endpoint.REGISTER, u, -1, 0, null));
+		}
+
+		// Swipes of every user, a match being a like in both directions
+		List<List<Operation>> sessions = new ArrayList<>();
+		for (int u = 0; u < plan.users; u++) sessions.add(new ArrayList<>());
+		Map<Integer, List<Integer>> partners = new HashMap<>();
+		for (String[] match : matches) {
+			int a = userIndex.get(match[0]);
+			int b = userIndex.get(match[1]);
+			sessions.get(a).add(new Operation(Endpoint.LIKE, a, b, 0, null));
+			sessions.get(b).add(new Operation(Endpoint.LIKE, b, a, 0, null));
+			partners.computeIfAbsent(a, k -> new ArrayList<>()).add(b);
+			partners.computeIfAbsent(b, k -> new ArrayList<>()).add(a);
+		}
+		for (String[] like : likes) {
+			int a = userIndex.get(like[0]);
+			sessions.get(a).add(new Operation(Endpoint.LIKE, a, userIndex.get(like[1]), 0, null));
+		}
+		for (String[] dislike : dislikes) {
+			int a = userIndex.get(dislike[0]);
+			sessions.get(a).add(new Operation(Endpoint.DISLIKE, a, userIndex.get(dislike[1]), 0, null));
+		}
+
+		// Sessions interleaved round-robin (in a seeded order) so that the users swipe concurrently
+		Random random = new Random(seed);
+		List<Integer> order = new ArrayList<>();
+		for (int u = 0; u < plan.users; u++) {
+			Collections.shuffle(sessions.get(u), random);
+			if (!sessions.get(u).isEmpty()) order.add(u);
+		}
+		Collections.shuffle(order, random);
+		for (int step = 0; !order.isEmpty(); step++) {
+			List<Integer> next = new ArrayList<>();
+			for (int u : order) {
+				List<Operation> session = sessions.get(u);
+				int from = step * recommendEvery;
+				if (from >= session.size()) continue;
+				plan.swipes.add(new Operation(Endpoint.RECOMMEND, u, -1, 0, null));
+				plan.swipes.addAll(session.subList(from, Math.min(from + recommendEvery, session.size())));
+				next.add(u);
+			}
+			order = next;
+		}
+
+		// Reviews of reviews.csv on the replayed users, written by one of their match partners
+		Set<Long> reviewed = new HashSet<>();
+		for (String[] row : rows(dataset.resolve("reviews.csv"))) {
+			if (row.length < 4) continue;
+			Integer target = userIndex.get(row[1]);
+			if (target == null || !partners.containsKey(target)) continue;
+			for (int author : partners.get(target)) {
+				if (reviewed.add((long) author * plan.users + target)) {
+					plan.reviews.add(new Operation(Endpoint.REVIEW, author, target, Integer.parseInt(row[2]), row[3]));
+					break;
+				}
+			}
+		}
+		return plan;
+	}
+
+	// Registration body of the harness user 'u' (deterministic for the same run id)
+	static Map<String, Object> registration(int u, String runId, String password) {
+		Random random = new Random(u);
+		String[] location = LOCATIONS[random.nextInt(LOCATIONS.length)];
+		int orientation = random.nextInt(20);
+		Map<String, Object> user = new LinkedHashMap<>();
+		user.put("email", email(u, runId));
+		user.put("password", password);
+		user.put("age", 18 + random.nextInt(45));
+		user.put("sex", random.nextBoolean() ? "m" : "f");
+		user.put("orientation", orientation < 17 ? "straight" : orientation < 19 ? "gay" : "bisexual");
+		user.put("status", "single");
+		user.put("city", location[0]);
+		user.put("state", location[1]);
+		user.put("essay0", ESSAYS[random.nextInt(ESSAYS.length)]);
+		return user;
+	}
+
+	static String email(int u, String runId) {
+		return "loadtest-" + runId + "-" + u + "@loadtest.local";
+	}
+
+	// source/target pairs of the file (missing file = no pairs); new ids are mapped while maxUsers allows
+	private static List<String[]> pairs(Path file, Map<String, Integer> userIndex, int maxUsers) throws IOException {
+		List<String[]> pairs = new ArrayList<>();
+		for (String[] row : rows(file)) {
+			if (row.length < 2) continue;
+			if (map(row[0], userIndex, maxUsers) && map(row[1], userIndex, maxUsers)) {
+				pairs.add(row);
+			}
+		}
+		return pairs;
+	}
+
+	private static boolean map(String id, Map<String, Integer> userIndex, int maxUsers) {
+		if (userIndex.containsKey(id)) return true;
+		if (userIndex.size() >= maxUsers) return false;
+		userIndex.put(id, userIndex.size());
+		return true;
+	}
+
+	// Rows of a CSV file with a header line (quoted fields may contain commas)
+	private static List<String[]> rows(Path file) throws IOException {
+		List<String[]> rows = new ArrayList<>();
+		if (!Files.exists(file)) {
+			System.out.println("Skipping " + file + " (not found)");
+			return rows;
+		}
+		try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			reader.readLine();
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (!line.isBlank()) rows.add(split(line));
+			}
+		}
+		return rows;
+	}
+
+	private static String[] split(String line) {
+		List<String> fields = new ArrayList<>();
+		StringBuilder field = new StringBuilder();
+		boolean quoted = false;
+		for (int i = 0; i < line.length(); i++) {
+			char c = line.charAt(i);
+			if (c == '"') {
+				if (quoted && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+					field.append('"');
+					i++;
+				} else {
+					quoted = !quoted;
+				}
+			} else if (c == ',' && !quoted) {
+				fields.add(field.toString());
+				field.setLength(0);
+			} else {
+				field.append(c);
+			}
+		}
+		fields.add(field.toString());
+		return fields.toArray(new String[0]);
+	}
+}
@@ -0,0 +1,433 @@
+package it.unipi.LoveMining.repository;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import it.unipi.LoveMining.model.mongo.PurgeJobDocument;
+import org.bson.BsonBoolean;
+import org.bson.BsonDocument;
+import org.bson.BsonInt64;
+import org.bson.BsonString;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.TestFactory;
+import org.junit.jupiter.api.TestInstance;
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.Record;
+import org.neo4j.driver.Session;
+import org.neo4j.driver.Transaction;
+import org.neo4j.driver.summary.Plan;
+import org.neo4j.driver.summary.ProfiledPlan;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.repository.Meta;
+import org.springframework.data.mongodb.repository.Update;
+import org.springframework.data.repository.query.Param;
+import org.springframework.util.ClassUtils;
+import reactor.core.publisher.Flux;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Parameter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+// Plans of every query declared in the repositories, on local instances loaded with the datagen dataset
+// (./mvnw -Pquery-plans test, see the profile for the options). Excluded from the default build.
+//   Neo4j: EXPLAIN (no AllNodesScan, no NodeByLabelScan on User), then PROFILE in a rolled-back transaction
+//   MongoDB: the commands sent by the repository method are captured and explained with executionStats
+//            (no COLLSCAN, also inside $lookup/$unionWith); the read preference, allowDiskUse and maxTimeMS
+//            declared on the method must be in the command (the URI is a single-host replica set: a
+//            standalone server receives no read preference)
+// The work of every query (db hits / docs examined) is compared with query-plans/baseline.json, a query
+// without a baseline fails (and every query when the file is missing): record it with
+// -Dqueryplan.update-baseline=true.
+@Tag("query-plan")
+@SpringBootTest(properties = {
+		"lovemining.mongodb.uri=${queryplan.mongo.uri:mongodb://localhost:27017/?replicaSet=rs0}",
+		"spring.neo4j.uri=${queryplan.neo4j.uri:bolt://localhost:7687}",
+		"spring.neo4j.authentication.password=${queryplan.neo4j.password:LoveMining}",
+		"lovemining.indexes.ensure-on-startup=true"
+})
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class QueryPlanTests {
+
+	private static final Path REPORT = Path.of("target", "query-plans.json");
+	private static final Path BASELINE = Path.of("query-plans", "baseline.json");
+
+	// Tolerated increase of the work, relative and absolute (small queries)
+	private static final double THRESHOLD = Double.parseDouble(System.getProperty("queryplan.threshold", "0.25"));
+	private static final long MIN_SLACK = 100;
+
+	// Queries reading every User of a State (or every DISLIKES edge) by design, still within their budget
+	private static final Set<String> USER_SCAN_ALLOWED = Set.of(
+			"UserNeo4jRepository.findRecommendations",
+			"UserNeo4jRepository.findRecommendationCandidates",
+			"UserNeo4jRepository.findDislikeBatch",
+			"ReactiveUserNeo4jRepository.findRecommendations",
+			"ReactiveUserNeo4jRepository.findRecommendationCandidates");
+
+	// Analytics starting with $unwind/$group on the whole collection
+	private static final Set<String> COLLSCAN_ALLOWED = Set.of(
+			"UserMongoRepository.countUsersByInterest",
+			"ReviewMongoRepository.findGlowUpRaw");
+
+	// Commands with a query plan, the other fields of the captured command are driver metadata
+	private static final Set<String> EXPLAINABLE = Set.of("find", "aggregate", "count", "distinct", "update", "delete", "findAndModify");
+	private static final Set<String> GENERIC_FIELDS = Set.of("$db", "lsid", "$clusterTime", "txnNumber", "$readPreference",
+			"readConcern", "writeConcern", "apiVersion", "apiStrict", "apiDeprecationErrors", "maxTimeMS");
+
+	// Writes are invoked on an id that does not exist: the plan is the same, the seeded data is not touched
+	private static final String MISSING_ID = "query-plan-missing-id";
+
+	private static final CommandCapture CAPTURE = new CommandCapture();
+
+	@TestConfiguration
+	static class CaptureConfig {
+		@Bean
+		MongoClientSettingsBuilderCustomizer commandCapture() {
+			return builder -> builder.addCommandListener(CAPTURE);
+		}
+	}
+
+	// Commands sent while recording
+	static class CommandCapture implements CommandListener {
+		private final List<BsonDocument> commands = Collections.synchronizedList(new ArrayList<>());
+		private volatile boolean recording;
+
+		@Override
+		public void commandStarted(CommandStartedEvent event) {
+			if (recording && EXPLAINABLE.contains(event.getCommandName())) {
+				commands.add(event.getCommand().clone());
+			}
+		}
+
+		List<BsonDocument> record(Runnable action) {
+			commands.clear();
+			recording = true;
+			try {
+				action.run();
+			} finally {
+				recording = false;
+			}
+			return new ArrayList<>(commands);
+		}
+	}
+
+	@Autowired
+	private ApplicationContext applicationContext;
+
+	@Autowired
+	private Driver driver;
+
+	@Autowired
+	private MongoTemplate mongoTemplate;
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final Map<String, Long> measured = Collections.synchronizedMap(new TreeMap<>());
+	private final Map<String, Object> samples = new HashMap<>();
+	private Map<String, Long> baseline;
+	private boolean updateBaseline;
+
+	@BeforeAll
+	void loadSamples() throws Exception {
+		updateBaseline = Boolean.parseBoolean(System.getProperty("queryplan.update-baseline", "false"));
+		baseline = Files.exists(BASELINE) && !updateBaseline
+				? objectMapper.readValue(BASELINE.toFile(), new TypeReference<TreeMap<String, Long>>() {})
+				: null;
+		if (baseline == null && !updateBaseline) {
+			fail("No baseline in " + BASELINE + ": record it on the datagen dataset with -Dqueryplan.update-baseline=true and commit it.");
+		}
+
+		// The first matched user (by _id) and the first of its matches: same samples on every run of the same dataset
+		String userId;
+		String partnerId;
+		String city;
+		String state;
+		String interest;
+		try (Session session = driver.session()) {
+			Record couple = session.run("MATCH (u:User) WHERE u._id > '' WITH u ORDER BY u._id " +
+					"MATCH (u)-[:MATCHED]-(m:User) WITH u, m ORDER BY u._id, m._id " +
+					"RETURN u._id AS user, m._id AS partner LIMIT 1").single();
+			userId = couple.get("user").asString();
+			partnerId = couple.get("partner").asString();
+			Record location = session.run("MATCH (u:User {_id: $id})-[:LIVES_IN]->(c:City)-[:LOCATED_IN]->(s:State) " +
+					"OPTIONAL MATCH (u)-[:HAS_INTEREST]->(i:Interest) " +
+					"RETURN c.name AS city, s.name AS state, min(i.name) AS interest", Map.of("id", userId)).single();
+			city = location.get("city").asString();
+			state = location.get("state").asString();
+			interest = location.get("interest").isNull() ? "music" : location.get("interest").asString();
+		}
+		Document user = mongoTemplate.findById(userId, Document.class, "users");
+		assertNotNull(user, "User " + userId + " of the graph not found in MongoDB: load the same dataset in both databases");
+
+		// Samples by parameter name (a new parameter name needs a sample here)
+		samples.put("id", userId);
+		samples.put("userId", userId);
+		samples.put("actorId", userId);
+		samples.put("fromId", userId);
+		samples.put("targetId", partnerId);
+		samples.put("toId", partnerId);
+		samples.put("ids", List.of(userId, partnerId));
+		samples.put("targetIds", List.of(userId, partnerId));
+		samples.put("actorIds", List.of(userId));
+		samples.put("email", user.getString("Email"));
+		samples.put("fields", List.of("age", "city", "interests"));
+		samples.put("age", 30);
+		samples.put("sex", "m");
+		samples.put("orientation", "straight");
+		samples.put("interestBits", new long[]{1L, 0L});
+		samples.put("bits", List.of(List.of(1L, 0L)));
+		samples.put("cityName", city);
+		samples.put("stateName", state);
+		samples.put("cityNames", List.of(city));
+		samples.put("names", List.of(city));
+		samples.put("latitudes", List.of(37.77));
+		samples.put("longitudes", List.of(-122.42));
+		samples.put("interestNames", List.of(interest));
+		samples.put("rows", List.of(Map.of("id", userId, "age", 30, "sex", "m", "orientation", "straight",
+				"interestBits", List.of(1L, 0L), "city", city, "state", state, "interests", List.of(interest))));
+		samples.put("filter", "City");
+		samples.put("minAge", 18);
+		samples.put("maxAge", 99);
+		samples.put("excludedIds", List.of());
+		samples.put("after", "");
+		samples.put("skip", 0L);
+		samples.put("limit", 500);
+		samples.put("batchSize", 5000);
+		samples.put("essayPreviewLength", 200);
+		samples.put("cutoffDate", Date.from(LocalDateTime.now().minusMonths(6).atZone(ZoneId.systemDefault()).toInstant()));
+		samples.put("statuses", List.of(PurgeJobDocument.Status.PENDING, PurgeJobDocument.Status.RUNNING));
+	}
+
+	@AfterAll
+	void writeReport() throws Exception {
+		Files.createDirectories(REPORT.getParent());
+		objectMapper.writerWithDefaultPrettyPrinter().writeValue(REPORT.toFile(), measured);
+		if (updateBaseline) {
+			Files.createDirectories(BASELINE.getParent());
+			objectMapper.writerWithDefaultPrettyPrinter().writeValue(BASELINE.toFile(), measured);
+			System.out.println("Baseline updated: " + BASELINE);
+		}
+	}
+
+	@TestFactory
+	Stream<DynamicTest> neo4jQueries() {
+		return queryMethods("neo4j").stream().map(method -> DynamicTest.dynamicTest(key(method), () -> checkCypher(method)));
+	}
+
+	@TestFactory
+	Stream<DynamicTest> mongoQueries() {
+		return queryMethods("mongo").stream().map(method -> DynamicTest.dynamicTest(key(method), () -> checkMongo(method)));
+	}
+
+	private void checkCypher(Method method) {
+		org.springframework.data.neo4j.repository.query.Query query =
+				method.getAnnotation(org.springframework.data.neo4j.repository.query.Query.class);
+		if (query == null) {
+			fail(key(method) + ": derived Neo4j queries are not checked, write the Cypher with @Query");
+		}
+		String cypher = query.value();
+		Map<String, Object> parameters = new HashMap<>();
+		for (Parameter parameter : method.getParameters()) {
+			Param param = parameter.getAnnotation(Param.class);
+			String name = param != null ? param.value() : parameter.getName();
+			parameters.put(name, sample(method, name, false));
+		}
+
+		try (Session session = driver.session(); Transaction tx = session.beginTransaction()) {
+			// EXPLAIN first: a scan of the whole graph fails without being executed
+			Plan plan = tx.run("EXPLAIN " + cypher, parameters).consume().plan();
+			List<String> scans = new ArrayList<>();
+			collectScans(plan, scans);
+			if (USER_SCAN_ALLOWED.contains(key(method))) {
+				scans.removeIf(scan -> scan.startsWith("NodeByLabelScan"));
+			}
+			assertTrue(scans.isEmpty(), key(method) + " scans: " + scans);
+
+			ProfiledPlan profile = tx.run("PROFILE " + cypher, parameters).consume().profile();
+			tx.rollback();
+			checkBudget(key(method), "db hits", dbHits(profile));
+		}
+	}
+
+	private void checkMongo(Method method) throws Exception {
+		boolean write = method.isAnnotationPresent(Update.class) || method.getName().startsWith("delete")
+				|| method.getName().startsWith("remove") || method.getName().startsWith("increment");
+		Object[] args = Arrays.stream(method.getParameters()).map(p -> sample(method, p.getName(), write)).toArray();
+		Object repository = repositories().get(method.getDeclaringClass());
+
+		List<BsonDocument> commands = CAPTURE.record(() -> {
+			try {
+				Object result = method.invoke(repository, args);
+				// Reactive repositories send the command only when subscribed
+				if (result instanceof Publisher<?> publisher) {
+					Flux.from(publisher).blockLast();
+				}
+			} catch (InvocationTargetException e) {
+				throw new IllegalStateException(key(method) + " failed: " + e.getCause(), e.getCause());
+			} catch (IllegalAccessException e) {
+				throw new IllegalStateException(e);
+			}
+		});
+		assertTrue(!commands.isEmpty(), key(method) + " sent no query to MongoDB");
+		checkRouting(method, commands);
+
+		long docsExamined = 0;
+		long collectionScans = 0;
+		for (BsonDocument command : commands) {
+			BsonDocument explained = command.clone();
+			GENERIC_FIELDS.forEach(explained::remove);
+			Document explain = mongoTemplate.getDb().runCommand(
+					new BsonDocument("explain", explained).append("verbosity", new BsonString("executionStats")));
+			long[] stats = new long[2];
+			collectStats(explain, stats);
+			docsExamined += stats[0];
+			collectionScans += stats[1];
+		}
+		if (!COLLSCAN_ALLOWED.contains(key(method))) {
+			assertTrue(collectionScans == 0, key(method) + " scans the collection (" + collectionScans + " COLLSCAN)");
+		}
+		checkBudget(key(method), "docs examined", docsExamined);
+	}
+
+	// Options of @ReadPreference and @Meta as sent by the driver (no $readPreference means primary)
+	private static void checkRouting(Method method, List<BsonDocument> commands) {
+		org.springframework.data.mongodb.repository.ReadPreference readPreference =
+				method.getAnnotation(org.springframework.data.mongodb.repository.ReadPreference.class);
+		Meta meta = method.getAnnotation(Meta.class);
+		for (BsonDocument command : commands) {
+			if (readPreference != null) {
+				BsonDocument sent = command.getDocument("$readPreference", new BsonDocument("mode", new BsonString("primary")));
+				assertEquals(readPreference.value(), sent.getString("mode").getValue(), key(method) + " read preference");
+			}
+			if (meta != null && meta.allowDiskUse()) {
+				assertTrue(command.getBoolean("allowDiskUse", BsonBoolean.FALSE).getValue(), key(method) + " sent without allowDiskUse");
+			}
+			if (meta != null && meta.maxExecutionTimeMs() > 0) {
+				assertEquals(meta.maxExecutionTimeMs(), command.getNumber("maxTimeMS", new BsonInt64(0)).longValue(),
+						key(method) + " maxTimeMS");
+			}
+		}
+	}
+
+	private void checkBudget(String key, String unit, long work) {
+		measured.put(key, work);
+		Long base = baseline != null ? baseline.get(key) : null;
+		System.out.printf("%-65s %12d %-13s %12s%n", key, work, unit, base != null ? "base " + base : "");
+		if (updateBaseline) {
+			return;
+		}
+		if (base == null) {
+			fail(key + " has no budget in " + BASELINE + ": record it with -Dqueryplan.update-baseline=true");
+		}
+		long budget = Math.max(Math.round(base * (1 + THRESHOLD)), base + MIN_SLACK);
+		assertTrue(work <= budget, key + ": " + work + " " + unit + " over the budget of " + budget);
+	}
+
+	// Operators reading every node (or every node of the User label)
+	private static void collectScans(Plan plan, List<String> scans) {
+		String operator = plan.operatorType().split("@")[0];
+		String details = plan.arguments().containsKey("Details") ? plan.arguments().get("Details").asString() : "";
+		if (operator.equals("AllNodesScan")
+				|| (operator.equals("NodeByLabelScan") && details.matches(".*:User\\b.*"))) {
+			scans.add(operator + " " + details);
+		}
+		for (Plan child : plan.children()) {
+			collectScans(child, scans);
+		}
+	}
+
+	private static long dbHits(ProfiledPlan plan) {
+		long hits = plan.dbHits();
+		for (ProfiledPlan child : plan.children()) {
+			hits += dbHits(child);
+		}
+		return hits;
+	}
+
+	// stats[0] = documents examined, stats[1] = collection scans (the rejected plans are not executed)
+	private static void collectStats(Object node, long[] stats) {
+		if (node instanceof Map<?, ?> map) {
+			for (Map.Entry<?, ?> entry : map.entrySet()) {
+				String field = String.valueOf(entry.getKey());
+				Object value = entry.getValue();
+				if (field.equals("rejectedPlans")) continue;
+				if (field.equals("totalDocsExamined") && value instanceof Number n) stats[0] += n.longValue();
+				if (field.equals("collectionScans") && value instanceof Number n) stats[1] += n.longValue();
+				if (field.equals("stage") && "COLLSCAN".equals(value)) stats[1]++;
+				collectStats(value, stats);
+			}
+		} else if (node instanceof List<?> list) {
+			for (Object item : list) {
+				collectStats(item, stats);
+			}
+		}
+	}
+
+	private Object sample(Method method, String name, boolean write) {
+		if (write && (name.equals("id") || name.equals("targetId"))) return MISSING_ID;
+		if (write && (name.equals("ids") || name.equals("targetIds"))) return List.of(MISSING_ID);
+		if (!samples.containsKey(name)) {
+			fail(key(method) + ": no sample value for the parameter '" + name + "'");
+		}
+		return samples.get(name);
+	}
+
+	// Repository interfaces of the application -> bean
+	private Map<Class<?>, Object> repositories() {
+		Map<Class<?>, Object> repositories = new HashMap<>();
+		for (Object bean : applicationContext.getBeansOfType(org.springframework.data.repository.Repository.class).values()) {
+			for (Class<?> type : ClassUtils.getAllInterfacesForClassAsSet(bean.getClass())) {
+				if (type.getPackageName().startsWith(getClass().getPackageName())) {
+					repositories.put(type, bean);
+				}
+			}
+		}
+		return repositories;
+	}
+
+	// Abstract methods declared by the repositories of the package (the default methods only delegate)
+	private List<Method> queryMethods(String store) {
+		String packageName = getClass().getPackageName() + "." + store;
+		return repositories().keySet().stream()
+				.filter(type -> type.getPackageName().equals(packageName))
+				.flatMap(type -> Arrays.stream(type.getDeclaredMethods()))
+				.filter(method -> !method.isDefault() && !method.isSynthetic() && !Modifier.isStatic(method.getModifiers()))
+				.sorted(Comparator.comparing(QueryPlanTests::key))
+				.toList();
+	}
+
+	private static String key(Method method) {
+		return method.getDeclaringClass().getSimpleName() + "." + method.getName();
+	}
+}
@@ -0,0 +1,56 @@
+package it.unipi.LoveMining.service.admin;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import it.unipi.LoveMining.model.dto.AnalyticsJob;
+import it.unipi.LoveMining.service.utility.VersionService;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AnalyticsJobServiceTests {
+
+	@Test
+	void identicalRequestsShareOneComputationUntilTheTtl() throws Exception {
+		AdminService adminService = mock(AdminService.class);
+		CountDownLatch release = new CountDownLatch(1);
+		when(adminService.getLovePointsStats("CA")).thenAnswer(invocation -> {
+			release.await();
+			return List.of(Map.of("city", "Oakland"));
+		});
+
+		ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+		executor.setCorePoolSize(1);
+		executor.initialize();
+		AnalyticsJobService service = new AnalyticsJobService(adminService, mock(VersionService.class),
+				new SimpleMeterRegistry(), executor);
+		ReflectionTestUtils.setField(service, "cacheTtlMs", 60_000L);
+
+		// Collapsed while in flight
+		AnalyticsJob first = service.submit("love-points", "CA");
+		assertSame(first, service.submit("love-points", "CA"));
+		AnalyticsJob other = service.submit("love-points", "NY");
+		assertNotSame(first, other);
+
+		release.countDown();
+		executor.shutdown();
+		executor.getThreadPoolExecutor().awaitTermination(5, TimeUnit.SECONDS);
+
+		// Served from the cache once done
+		assertEquals(AnalyticsJob.Status.DONE, first.getStatus());
+		assertSame(first, service.submit("love-points", "CA"));
+		verify(adminService, times(1)).getLovePointsStats("CA");
+	}
+}
@@ -0,0 +1,182 @@
+package it.unipi.LoveMining.service.admin;
+
+import it.unipi.LoveMining.model.mongo.PurgeJobDocument;
+import it.unipi.LoveMining.model.mongo.UserDocument;
+import it.unipi.LoveMining.repository.neo4j.UserNeo4jRepository;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// Merge-join of the reconciler over in-memory data: the Mongo cursor is a list of users, the graph pages
+// are lists of rows, and the re-reads of the repair are answered from a map of the current users
+class ConsistencyReconcilerServiceTests {
+
+	private MongoTemplate mongoTemplate;
+	private UserNeo4jRepository userNeo4jRepository;
+	private ConsistencyReconcilerService service;
+
+	// Users in MongoDB at the time of the repair (the scan can see users deleted since)
+	private final Map<String, UserDocument> currentUsers = new LinkedHashMap<>();
+	private final List<PurgeJobDocument> purgeJobs = new ArrayList<>();
+
+	@BeforeEach
+	void setUp() {
+		mongoTemplate = mock(MongoTemplate.class);
+		userNeo4jRepository = mock(UserNeo4jRepository.class);
+		service = new ConsistencyReconcilerService(mongoTemplate, userNeo4jRepository);
+		ReflectionTestUtils.setField(service, "pageSize", 2);
+		ReflectionTestUtils.setField(service, "pauseMs", 0L);
+		ReflectionTestUtils.setField(service, "relationshipChunk", 10);
+
+		when(mongoTemplate.find(any(Query.class), eq(UserDocument.class))).thenAnswer(invocation -> {
+			Collection<?> ids = inIds(invocation.getArgument(0));
+			return currentUsers.values().stream().filter(user -> ids.contains(user.getId())).toList();
+		});
+		when(mongoTemplate.find(any(Query.class), eq(PurgeJobDocument.class))).thenAnswer(invocation -> {
+			Document criteria = ((Query) invocation.getArgument(0)).getQueryObject();
+			Collection<?> ids = (Collection<?>) criteria.get("userIds", Document.class).get("$in");
+			return purgeJobs.stream().filter(job -> job.getUserIds().stream().anyMatch(ids::contains)).toList();
+		});
+	}
+
+	@Test
+	void reportsMissingOrphanAndDriftedNodes() throws Exception {
+		scan(List.of(user("a", "Austin"), user("b", "Boston"), user("c", "Chicago")),
+				List.of(row("a", "Austin"), row("c", "Denver")),
+				List.of(row("d", "Dallas")));
+
+		Map<String, Object> report = service.reconcile(false);
+
+		assertEquals(3L, report.get("mongoUsers"));
+		assertEquals(3L, report.get("graphUsers"));
+		assertEquals(1L, report.get("missingInGraph"));
+		assertEquals(1L, report.get("orphanNodes"));
+		assertEquals(1L, report.get("drifted"));
+		assertEquals(Map.of("city", 1L), report.get("driftByField"));
+		assertEquals(0L, report.get("repaired"));
+		assertEquals(List.of("missing node: b", "drift c: [city]", "orphan node: d"), report.get("samples"));
+		verify(userNeo4jRepository, never()).upsertSyncedFields(anyList());
+		verify(userNeo4jRepository, never()).deleteUserNode(any());
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void repairRereadsTheUsersAndSkipsTheDeletedAndPurgingOnes() throws Exception {
+		UserDocument b = user("b", "Boston");
+		UserDocument c = user("c", "Chicago");
+		UserDocument e = user("e", "El Paso");
+		UserDocument f = user("f", "Fresno");
+		scan(List.of(user("a", "Austin"), b, c, e, f),
+				List.of(row("a", "Austin"), row("c", "Denver")),
+				List.of(row("d", "Dallas"), row("e", "Eugene")));
+
+		// Since the scan: b moved, f was deleted, e is in a purge job not completed yet
+		UserDocument movedB = user("b", "Buffalo");
+		currentUsers.put("a", user("a", "Austin"));
+		currentUsers.put("b", movedB);
+		currentUsers.put("c", c);
+		currentUsers.put("e", e);
+		purgeJobs.add(new PurgeJobDocument("job", PurgeJobDocument.Status.FAILED, List.of("e"), 0, 0, 0L, null,
+				new Date(), new Date()));
+
+		// The orphan has 13 relationships, one of them a match with a
+		when(userNeo4jRepository.findMatchedIds("d")).thenReturn(List.of("a"));
+		when(userNeo4jRepository.deleteRelationshipsChunk("d", 10)).thenReturn(10L, 3L, 0L);
+
+		Map<String, Object> report = service.reconcile(true);
+
+		assertEquals(2L, report.get("missingInGraph"));
+		assertEquals(1L, report.get("orphanNodes"));
+		assertEquals(2L, report.get("drifted"));
+
+		// Upserted: b (with the current city) and c; skipped: e (purging) and f (deleted)
+		ArgumentCaptor<List<Map<String, Object>>> rows = ArgumentCaptor.forClass(List.class);
+		verify(userNeo4jRepository, times(1)).upsertSyncedFields(rows.capture());
+		Map<String, String> upserted = new HashMap<>();
+		rows.getValue().forEach(row -> upserted.put((String) row.get("id"), (String) row.get("city")));
+		assertEquals(Map.of("b", "Buffalo", "c", "Chicago"), upserted);
+
+		// The orphan is deleted in bounded chunks, then the node; the matches of its partner change
+		verify(userNeo4jRepository, times(3)).deleteRelationshipsChunk("d", 10);
+		verify(userNeo4jRepository).deleteUserNode("d");
+		verify(mongoTemplate).updateMulti(any(Query.class), any(Update.class), eq(UserDocument.class));
+		assertEquals(3L, report.get("repaired"));
+	}
+
+	@Test
+	void orphanRegisteredDuringTheScanIsNotDeleted() throws Exception {
+		scan(List.of(), List.of(row("d", "Dallas")));
+		currentUsers.put("d", user("d", "Dallas"));
+
+		Map<String, Object> report = service.reconcile(true);
+
+		assertEquals(1L, report.get("orphanNodes"));
+		assertEquals(0L, report.get("repaired"));
+		verify(userNeo4jRepository, never()).deleteRelationshipsChunk(any(), anyInt());
+		verify(userNeo4jRepository, never()).deleteUserNode(any());
+	}
+
+	// Mongo cursor and graph pages (pageSize 2) of one scan
+	@SafeVarargs
+	private void scan(List<UserDocument> mongo, List<Map<String, Object>>... pages) {
+		when(mongoTemplate.stream(any(Query.class), eq(UserDocument.class))).thenReturn(mongo.stream());
+		String after = "";
+		for (List<Map<String, Object>> page : pages) {
+			when(userNeo4jRepository.findSyncedFieldsPage(after, 2)).thenReturn(page);
+			after = (String) page.get(page.size() - 1).get("id");
+		}
+		when(userNeo4jRepository.findSyncedFieldsPage(after, 2)).thenReturn(List.of());
+	}
+
+	private static Collection<?> inIds(Query query) {
+		return (Collection<?>) query.getQueryObject().get("_id", Document.class).get("$in");
+	}
+
+	private static UserDocument user(String id, String city) {
+		UserDocument user = new UserDocument();
+		user.setId(id);
+		user.setAge(30);
+		user.setSex("f");
+		user.setOrientation("straight");
+		user.setCity(city);
+		user.setState("TX");
+		user.setInterests(List.of("hiking"));
+		return user;
+	}
+
+	private static Map<String, Object> row(String id, String city) {
+		Map<String, Object> row = new HashMap<>();
+		row.put("id", id);
+		row.put("age", 30L);
+		row.put("sex", "f");
+		row.put("orientation", "straight");
+		row.put("city", city);
+		row.put("state", "TX");
+		row.put("interests", List.of("hiking"));
+		return row;
+	}
+}
@@ -0,0 +1,91 @@
+package it.unipi.LoveMining.service.user;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import it.unipi.LoveMining.model.dto.Dashboard;
+import it.unipi.LoveMining.model.dto.RecommendationCard;
+import it.unipi.LoveMining.model.mongo.UserDocument;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DashboardServiceTests {
+
+	@Test
+	void lateSectionIsLeftOutAndCancelled() throws Exception {
+		UserService userService = mock(UserService.class);
+		UserDocument user = new UserDocument();
+		user.setId("u1");
+		when(userService.getUser("u1")).thenReturn(user);
+		when(userService.getUserMatchesPage("u1", 0, 20)).thenReturn(List.of());
+
+		// The recommendations never answer within the deadline
+		CountDownLatch interrupted = new CountDownLatch(1);
+		when(userService.getRecommendations("u1", "City", 18, 99)).thenAnswer(invocation -> {
+			try {
+				Thread.sleep(10_000);
+			} catch (InterruptedException e) {
+				interrupted.countDown();
+			}
+			return List.of("late");
+		});
+
+		DashboardService dashboardService = new DashboardService(userService, new SimpleMeterRegistry(),
+				new SimpleAsyncTaskExecutor("test-"));
+		ReflectionTestUtils.setField(dashboardService, "profileTimeoutMs", 1000L);
+		ReflectionTestUtils.setField(dashboardService, "matchesTimeoutMs", 1000L);
+		ReflectionTestUtils.setField(dashboardService, "recommendationsTimeoutMs", 100L);
+
+		Dashboard dashboard = dashboardService.getDashboard(user, "City", 18, 99, 20, false);
+
+		assertNotNull(dashboard.getProfile());
+		assertNotNull(dashboard.getReviews());
+		assertEquals(List.of(), dashboard.getMatches());
+		assertNull(dashboard.getRecommendations());
+		assertEquals(List.of("recommendations"), dashboard.getMissing());
+		// The late branch does not outlive the request
+		assertTrue(interrupted.await(1, TimeUnit.SECONDS));
+	}
+
+	@Test
+	void cardsAreLoadedOnTheBranchThread() {
+		UserService userService = mock(UserService.class);
+		UserDocument user = new UserDocument();
+		user.setId("u1");
+		when(userService.getUser("u1")).thenReturn(user);
+		when(userService.getUserMatchesPage("u1", 0, 20)).thenReturn(List.of());
+		when(userService.getRecommendations("u1", "City", 18, 99)).thenReturn(List.of("u2"));
+		List<RecommendationCard> cards = List.of(new RecommendationCard("u2", 30, "Austin", "", List.of(), null));
+		when(userService.getRecommendationCardsInline(user, List.of("u2"))).thenReturn(cards);
+
+		// One thread: a branch waiting for a card lookup queued on the same pool would never complete
+		ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+		executor.setCorePoolSize(1);
+		executor.initialize();
+		DashboardService dashboardService = new DashboardService(userService, new SimpleMeterRegistry(), executor);
+		ReflectionTestUtils.setField(dashboardService, "profileTimeoutMs", 1000L);
+		ReflectionTestUtils.setField(dashboardService, "matchesTimeoutMs", 1000L);
+		ReflectionTestUtils.setField(dashboardService, "recommendationsTimeoutMs", 1000L);
+
+		Dashboard dashboard = dashboardService.getDashboard(user, "City", 18, 99, 20, true);
+		executor.shutdown();
+
+		assertEquals(cards, dashboard.getRecommendations());
+		assertEquals(List.of(), dashboard.getMissing());
+		verify(userService, never()).getRecommendationCards(any(), any());
+	}
+}
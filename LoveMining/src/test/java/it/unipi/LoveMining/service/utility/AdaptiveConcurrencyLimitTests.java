@@ -0,0 +1,76 @@
+package it.unipi.LoveMining.service.utility;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdaptiveConcurrencyLimitTests {
+
+	@Test
+	void rejectsOverTheLimit() {
+		AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(2, 1, 10, 2.0);
+		assertTrue(limit.tryAcquire());
+		assertTrue(limit.tryAcquire());
+		assertFalse(limit.tryAcquire());
+		assertEquals(1, limit.rejected());
+
+		limit.release();
+		assertTrue(limit.tryAcquire());
+		assertEquals(2, limit.inFlight());
+	}
+
+	@Test
+	void marksTheThreadOfAnAdmittedRequest() throws Exception {
+		AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(2, 1, 10, 2.0);
+		assertFalse(limit.isAdmitted());
+		assertTrue(limit.tryAcquire());
+		assertTrue(limit.isAdmitted());
+
+		// Background threads (analytics, purge, ...) are never admitted
+		AtomicBoolean otherAdmitted = new AtomicBoolean(true);
+		Thread other = Thread.ofVirtual().start(() -> otherAdmitted.set(limit.isAdmitted()));
+		other.join();
+		assertFalse(otherAdmitted.get());
+
+		limit.release();
+		assertFalse(limit.isAdmitted());
+	}
+
+	@Test
+	void shrinksWhenAStoreSlowsDownAndGrowsBackWhenItRecovers() {
+		AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(100, 5, 1000, 2.0);
+		for (int i = 0; i < 100; i++) {
+			assertTrue(limit.tryAcquire());
+		}
+		limit.onSample("neo4j", TimeUnit.MILLISECONDS.toNanos(10));
+		limit.onSample("mongodb", TimeUnit.MILLISECONDS.toNanos(5));
+
+		// Neo4j ten times slower: the limit drops, the requests in flight are over it
+		for (int i = 0; i < 30; i++) {
+			limit.onSample("neo4j", TimeUnit.MILLISECONDS.toNanos(100));
+		}
+		int shrunk = limit.getLimit();
+		assertTrue(shrunk < 50, "limit " + shrunk);
+		assertFalse(limit.tryAcquire());
+
+		// Back to the usual latency
+		for (int i = 0; i < 30; i++) {
+			limit.onSample("neo4j", TimeUnit.MILLISECONDS.toNanos(10));
+		}
+		assertTrue(limit.getLimit() > shrunk, "limit " + limit.getLimit());
+	}
+
+	@Test
+	void doesNotGrowWhileTheRequestsInFlightAreFarFromTheLimit() {
+		AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(100, 5, 1000, 2.0);
+		for (int i = 0; i < 30; i++) {
+			limit.onSample("mongodb", TimeUnit.MILLISECONDS.toNanos(5));
+		}
+		assertEquals(100, limit.getLimit());
+	}
+}
@@ -0,0 +1,52 @@
+package it.unipi.LoveMining.service.utility;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BulkheadTests {
+
+	@Test
+	void rejectsAfterTheTimeoutWhenAllPermitsAreTaken() throws Exception {
+		Bulkhead bulkhead = new Bulkhead("test", 1, 50);
+		CountDownLatch taken = new CountDownLatch(1);
+		CountDownLatch done = new CountDownLatch(1);
+		try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			Future<?> holder = executor.submit(() -> {
+				bulkhead.acquire();
+				taken.countDown();
+				done.await();
+				bulkhead.release();
+				return null;
+			});
+			taken.await();
+			assertThrows(BulkheadFullException.class, bulkhead::acquire);
+			assertEquals(1, bulkhead.rejected());
+
+			done.countDown();
+			holder.get();
+		}
+		bulkhead.acquire();
+		assertEquals(0, bulkhead.availablePermits());
+		bulkhead.release();
+		assertEquals(1, bulkhead.availablePermits());
+	}
+
+	@Test
+	void nestedCallsOfTheSameThreadTakeOnePermit() {
+		Bulkhead bulkhead = new Bulkhead("test", 2, 50);
+		bulkhead.acquire();
+		bulkhead.acquire();
+		assertEquals(1, bulkhead.availablePermits());
+		bulkhead.release();
+		assertEquals(1, bulkhead.availablePermits());
+		bulkhead.release();
+		assertEquals(2, bulkhead.availablePermits());
+	}
+}
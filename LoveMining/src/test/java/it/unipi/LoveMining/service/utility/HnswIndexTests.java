@@ -0,0 +1,69 @@
+package it.unipi.LoveMining.service.utility;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HnswIndexTests {
+
+	private static float[] randomUnitVector(Random random, int dimension) {
+		float[] vector = new float[dimension];
+		double norm = 0.0;
+		for (int i = 0; i < dimension; i++) {
+			vector[i] = (float) random.nextGaussian();
+			norm += vector[i] * vector[i];
+		}
+		for (int i = 0; i < dimension; i++) {
+			vector[i] /= (float) Math.sqrt(norm);
+		}
+		return vector;
+	}
+
+	@Test
+	void searchRecallAgainstBruteForce() {
+		Random random = new Random(7);
+		HnswIndex index = new HnswIndex(32, 16, 100, 42);
+		for (int i = 0; i < 5000; i++) {
+			index.add(randomUnitVector(random, 32));
+		}
+
+		double recall = 0.0;
+		for (int q = 0; q < 50; q++) {
+			float[] query = randomUnitVector(random, 32);
+			Set<Integer> exact = new HashSet<>();
+			for (HnswIndex.Result result : index.bruteForce(query, 10, node -> true)) {
+				exact.add(result.node());
+			}
+			int hits = 0;
+			for (HnswIndex.Result result : index.search(query, 10, 64, 1024, node -> true)) {
+				if (exact.contains(result.node())) hits++;
+			}
+			recall += hits / 10.0;
+		}
+		assertTrue(recall / 50 > 0.9);
+	}
+
+	@Test
+	void searchSkipsDeletedAndFilteredNodes() {
+		Random random = new Random(7);
+		HnswIndex index = new HnswIndex(8, 8, 50, 42);
+		for (int i = 0; i < 500; i++) {
+			index.add(randomUnitVector(random, 8));
+		}
+		index.markDeleted(3);
+
+		List<HnswIndex.Result> results = index.search(index.getVector(3), 20, 16, 512, node -> node % 2 == 1);
+		assertEquals(20, results.size());
+		for (HnswIndex.Result result : results) {
+			assertFalse(result.node() == 3);
+			assertEquals(1, result.node() % 2);
+		}
+	}
+}
@@ -0,0 +1,52 @@
+package it.unipi.LoveMining.service.utility;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenBucketsTests {
+
+	private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+	@Test
+	void admitsTheBurstThenOneRequestPerInterval() {
+		// 60 per minute: one token per second
+		TokenBuckets buckets = new TokenBuckets("like", 60, 3, 4, 16);
+		long now = 0;
+		for (int i = 0; i < 3; i++) {
+			assertEquals(0, buckets.tryAcquire("alice", now));
+		}
+		long wait = buckets.tryAcquire("alice", now);
+		assertTrue(wait > 0 && wait <= SECOND, "wait " + wait);
+		assertEquals(1, buckets.rejected());
+
+		// Other users have their own bucket
+		assertEquals(0, buckets.tryAcquire("bob", now));
+
+		now += SECOND;
+		assertEquals(0, buckets.tryAcquire("alice", now));
+		assertTrue(buckets.tryAcquire("alice", now) > 0);
+
+		// Never more than the burst, however long the user was idle
+		now += 60 * SECOND;
+		for (int i = 0; i < 3; i++) {
+			assertEquals(0, buckets.tryAcquire("alice", now));
+		}
+		assertTrue(buckets.tryAcquire("alice", now) > 0);
+	}
+
+	@Test
+	void forgetsTheLeastRecentlyUsedUsersOfAFullStripe() {
+		TokenBuckets buckets = new TokenBuckets("review", 1, 1, 1, 2);
+		assertEquals(0, buckets.tryAcquire("alice", 0));
+		assertTrue(buckets.tryAcquire("alice", 0) > 0);
+
+		// Two other users in the only stripe: alice is evicted and starts again with a full bucket
+		assertEquals(0, buckets.tryAcquire("bob", 0));
+		assertEquals(0, buckets.tryAcquire("carol", 0));
+		assertEquals(0, buckets.tryAcquire("alice", 0));
+	}
+}